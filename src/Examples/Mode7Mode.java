@@ -5,10 +5,14 @@
  */
 package Examples;
 
+import GameView.AffineBuilder;
+import GameView.GameMode.TripleBuffer;
 import GameView.ImageOp;
 import GameView.MatrixFunction;
+import GameView.ScanlineTable;
 import GameView.ViewMode;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.io.File;
 import java.io.IOException;
 import javax.imageio.ImageIO;
@@ -25,13 +29,19 @@ import javax.imageio.ImageIO;
  * <p>Mode 7 is complex stuff. The best solution, rather than the one provided
  * here, would be to develop an equation which would take the viewer's X-Y-Z
  * position, as well as their roll, pitch, and yaw, and convert it into
- * the appropriate positioning. This would allow you to have complete control
- * over the "camera", although it may be out of the scope of your needs.
+ * the appropriate positioning. GameView.GameMode.Mode7 does exactly that,
+ * giving complete control over the "camera"; this class remains as an
+ * example of using a MatrixFunction.
+ * <p>Each frame is drawn straight into a TripleBuffer with
+ * ImageOp.applyTo(), so no new images are made per frame.
  * @author Justis
  */
 public class Mode7Mode implements ViewMode
 {
     private final ViewMode view;
+    private final MatrixFunction perspective = new Mode7Function();
+    private ScanlineTable lines = null;
+    private TripleBuffer frames = null;
     
     public Mode7Mode(ViewMode view)
     {
@@ -41,20 +51,39 @@ public class Mode7Mode implements ViewMode
     @Override
     public BufferedImage getFrame()
     {
-        BufferedImage timg = new ImageOp(view.getFrame())
-                .apply(new Mode7Function());
-        return timg;
+        BufferedImage frame = view.getFrame();
+        //The perspective never changes, so it's only worked out once.
+        if(lines == null || lines.getLineCount() < frame.getHeight())
+        {
+            lines = new ScanlineTable(frame.getHeight(), perspective);
+        }
+        if(frames == null || frames.getBack().getWidth() != frame.getWidth()
+                || frames.getBack().getHeight() != frame.getHeight())
+        {
+            frames = new TripleBuffer(frame.getWidth(), frame.getHeight());
+        }
+        //Anything the perspective doesn't reach is left transparent, as apply() would.
+        Arrays.fill(frames.getBackRaster().getData(), 0);
+        new ImageOp(frame).applyTo(frames.getBack(), 0, 0, null, lines);
+        frames.publish();
+        return frames.acquireFront();
     }
     
-    private class Mode7Function implements MatrixFunction
+    private static class Mode7Function implements MatrixFunction
     {
 
         @Override
         public double[][] apply(int index)
         {
-            double[][] translate = MatrixFunction.translateAffine(80 - index / 2f, 1);
-            double[][] scale = MatrixFunction.scaleAffine(0.5 + index / 240f, 1);
-            return MatrixFunction.multiplyAffine(translate, scale);
+            AffineBuilder affine = new AffineBuilder();
+            apply(index, affine);
+            return affine.toArray();
+        }
+        
+        @Override
+        public void apply(int index, AffineBuilder out)
+        {
+            out.translate(80 - index / 2f, 1).scale(0.5 + index / 240f, 1);
         }
         
     }
@@ -5,18 +5,19 @@
  */
 package GameModel;
 
-import GameView.GameMode.SortedList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A skeleton to facilitate game creation.
  * <p>Most importantly, this class utilizes GameTasks to create game logic.
  * On each call to onFrame(), which is typically done by the GameMode, each
- * task is iterated through, one after the next. Tasks can be assigned a name, 
+ * task is iterated through, one after the next. Tasks can be assigned a name,
  * which can then be used in place of the task
  * when methods require a task parameter.
  * <p>Like in the Mode0 class, this internally gives each task its own
@@ -32,73 +33,455 @@ import java.util.Map;
  * priority as well; oftentimes animations need to play and finish before other
  * tasks are taken care of, so the priority bound could be used to halt everything
  * except animation, sound, and any other important tasks.
+ * <p>Adding a task gives back a TaskHandle, which can be used to enable,
+ * disable or remove that task directly, without needing a name. Tasks are
+ * kept in buckets, one per priority, each a linked list with the newest task
+ * first, so adding a task only has to find its bucket, and removing one is
+ * immediate. When a task finishes or is removed, its name is freed, so games
+ * that create many short-lived tasks don't build up old names.
+ * <p>Tasks that only touch their own state, like many AI or animation tasks,
+ * can be marked as parallel-safe through their TaskHandle. Parallel-safe
+ * tasks next to each other in the same priority are run at the same time on
+ * the task pool, and all of them finish before anything after them runs.
+ * Changes they make to the task pool, such as adding, scheduling or removing
+ * tasks, are held back until they've all finished, and then made in the
+ * order the tasks are in the pool, so the outcome is the same every time.
+ * If one of them throws, the rest of the batch is still waited on, none of
+ * the batch's changes are made, and the exception is passed on.
+ * <p>Tasks can also be run later, or over and over, through runAfter() and
+ * runEvery(). Until they're due, these wait on a timing wheel rather than in
+ * the pool, so a waiting task costs nothing at all on each frame. When one
+ * comes due, it joins the pool for that frame, ahead of older tasks of the
+ * same priority, as if it had just been added. A disabled task's timer is
+ * paused, and a task that comes due while cut off by the priority bound
+ * waits in the pool until the bound lets it run. A WaitTask is an ordinary
+ * task, which counts its own frames each time it's called, so it only
+ * counts frames it isn't cut off on.
  * @author Justis
  */
 public abstract class AbstractGame implements GameModel
 {
-    private class GameTaskPrio implements GameTask, Comparable
+    /**
+     * A task in the task pool.
+     * <p>This is given back when a task is added, and stays tied to that task.
+     * Once the task finishes or is removed, the handle is no longer active,
+     * and changing it does nothing.
+     * @param <T> The type of the task.
+     */
+    public static final class TaskHandle<T extends GameTask>
     {
-        private final GameTask task;
+        private static final int PENDING = 0;
+        private static final int ACTIVE = 1;
+        private static final int RETIRED = 2;
+        private static final int TIMED = 3;
+
+        private final AbstractGame game;
+        private final T task;
+        private final String name;
         private final double priority;
-        private boolean disable;
-        
-        private GameTaskPrio(GameTask task, double priority)
+        private boolean disable = false;
+        private boolean parallel = false;
+        private int state = PENDING;
+
+        //Position in the task pool.
+        private Bucket bucket;
+        private TaskHandle<?> prev, next;
+        private long order;
+
+        //Timing, for tasks run later. A period of zero means it isn't timed.
+        private long period = 0;
+        private long delay;
+        private boolean once;
+        private long due;
+        private boolean ran;
+        //Position on the timing wheel; a level of -1 means it isn't on it.
+        private int level = -1;
+        private int slot;
+        private TaskHandle<?> wheelPrev, wheelNext;
+
+        private TaskHandle(AbstractGame game, T task, String name, double priority)
         {
+            this.game = game;
             this.task = task;
+            this.name = name;
             this.priority = priority;
-            disable = false;
         }
-        
-        @Override
-        public int compareTo(Object o)
-        {
-            GameTaskPrio other = (GameTaskPrio)o;
-            return Double.compare(priority, other.priority);
-        }
-        
-        @Override
-        public boolean onFrame(AbstractGame game)
+
+        private TaskHandle<T> timed(long delay, long period, boolean once)
         {
-            return disable ? false : task.onFrame(game);
+            this.delay = delay;
+            this.period = period;
+            this.once = once;
+            return this;
         }
-        
+
+        /**
+         * Get the task.
+         * @return The task this handle is for.
+         */
+        public T getTask(){return task;}
+
+        /**
+         * Get the name of the task.
+         * @return The name given when it was added, or null if it has none.
+         */
+        public String getName(){return name;}
+
+        /**
+         * Get the priority of the task.
+         * @return The priority.
+         */
+        public double getPriority(){return priority;}
+
+        /**
+         * Checks if the task is still in the pool, or scheduled to be.
+         * @return False once the task has finished or been removed.
+         */
+        public boolean isActive(){return state != RETIRED;}
+
+        /**
+         * Checks if the task is enabled.
+         * @return True if the task is run on each frame.
+         */
+        public boolean isEnabled(){return !disable;}
+
+        /**
+         * Enable or disable the task.
+         * @param enable True to enable the task, false to disable.
+         * @return The instance of this TaskHandle.
+         */
+        public TaskHandle<T> setEnabled(boolean enable){game.setEnabled(this, enable); return this;}
+
+        /**
+         * Checks if the task may run alongside others.
+         * @return True if the task is parallel-safe.
+         */
+        public boolean isParallelSafe(){return parallel;}
+
+        /**
+         * Marks the task as safe to run alongside others of its priority.
+         * <p>A parallel-safe task must only change its own state, and must not
+         * read anything another parallel-safe task changes. Changes it makes to
+         * the task pool are safe, and are applied once its batch finishes.
+         * By default, tasks are not parallel-safe.
+         * @param safe True to allow the task to run in parallel.
+         * @return The instance of this TaskHandle.
+         */
+        public TaskHandle<T> setParallelSafe(boolean safe){parallel = safe; return this;}
+
+        /**
+         * Remove the task from the task pool.
+         * If it has already finished or been removed, nothing happens.
+         */
+        public void remove(){game.removeTask(this);}
+
         @Override
         public String toString()
         {
             return String.format("%s%s (%f)", disable ? "-" : "", task.getClass(), priority);
         }
     }
-    
-    private final List<GameTaskPrio> tasks = new SortedList<>();
-    private final List<GameTaskPrio> scheduledTasks = new ArrayList<>();
-    private final Map<String, GameTaskPrio> taskMap = new HashMap<>();
+
+    /*
+    All the tasks of one priority, newest first. Buckets are linked to each
+    other in priority order, so a frame can walk them without the map.
+    */
+    private static final class Bucket
+    {
+        private final double priority;
+        private TaskHandle<?> head, tail;
+        private Bucket prev, next;
+        private boolean linked = true;
+
+        private Bucket(double priority)
+        {
+            this.priority = priority;
+        }
+    }
+
+    private final TreeMap<Double, Bucket> buckets = new TreeMap<>();
+    private Bucket first = null;
+    private final List<TaskHandle<?>> scheduledTasks = new ArrayList<>();
+    private final Map<String, TaskHandle<?>> taskMap = new HashMap<>();
+    private int taskCount = 0;
     private double priorityRange = Double.NaN;
-    
+
+    //While running tasks, the task to run next, and buckets that ran dry.
+    private boolean running = false;
+    private TaskHandle<?> cursor = null;
+    private final List<Bucket> emptied = new ArrayList<>();
+
+    //The timing wheel: LEVELS levels of SLOTS slots, each a list of tasks.
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6;
+    private final TaskHandle<?>[][] wheel = new TaskHandle<?>[LEVELS][SLOTS];
+    private long frame = 0;
+    private long nextOrder = 0;
+    private final List<TaskHandle<?>> dueTasks = new ArrayList<>();
+
+    //Parallel-safe tasks being run, their results, and their held-back changes.
+    private ForkJoinPool taskPool = ForkJoinPool.commonPool();
+    private final List<TaskHandle<?>> batch = new ArrayList<>();
+    private boolean[] batchDone = new boolean[0];
+    private final List<List<Runnable>> batchChanges = new ArrayList<>();
+    //The changes held back for the parallel task running on this thread.
+    private static final ThreadLocal<List<Runnable>> heldChanges = new ThreadLocal<>();
+
+    /*
+    Runs a batch of parallel-safe tasks, split in half until the pieces are
+    small enough.
+    */
+    @SuppressWarnings("serial")
+    private final class TaskBatch extends RecursiveAction
+    {
+        private final int lo, hi, grain;
+
+        private TaskBatch(int lo, int hi, int grain)
+        {
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(hi - lo <= grain)
+            {
+                /*
+                A task that waits on other fork/join work can have this
+                thread steal another piece of the batch meanwhile, so
+                whatever list was being held into before is put back after.
+                */
+                List<Runnable> outer = heldChanges.get();
+                try
+                {
+                    for(int index = lo; index < hi; index++)
+                    {
+                        heldChanges.set(batchChanges.get(index));
+                        TaskHandle<?> task = batch.get(index);
+                        task.ran = true;
+                        batchDone[index] = task.task.onFrame(AbstractGame.this);
+                    }
+                }
+                finally
+                {
+                    if(outer == null){heldChanges.remove();} else {heldChanges.set(outer);}
+                }
+                return;
+            }
+            /*
+            invokeAll() stops waiting as soon as one half throws, which would
+            leave the other half running into the next frame. Both halves
+            are always waited on, so nothing is still running once the
+            exception gets out.
+            */
+            int mid = (lo + hi) >>> 1;
+            TaskBatch right = new TaskBatch(mid, hi, grain);
+            right.fork();
+            try
+            {
+                new TaskBatch(lo, mid, grain).compute();
+            }
+            finally
+            {
+                right.quietlyJoin();
+            }
+            right.join();
+        }
+    }
+
+    /**
+     * Set the pool parallel-safe tasks are run on.
+     * By default, this is the common ForkJoinPool.
+     * @param pool The pool to run tasks on.
+     * @throws NullPointerException The pool is null.
+     */
+    public void setTaskPool(ForkJoinPool pool)
+    {
+        if(pool == null){
+            throw new NullPointerException("Null pool specified.");
+        }
+        taskPool = pool;
+    }
+
+    /*
+    If a parallel task is running on this thread, holds a change back until
+    its batch finishes, and returns true.
+    */
+    private static boolean holdBack(Runnable change)
+    {
+        List<Runnable> held = heldChanges.get();
+        if(held == null){return false;}
+        held.add(change);
+        return true;
+    }
+
     /**
      * Add a task to the task pool.
-     * <p>If the task or the name provided is null, nothing happens.
+     * <p>If the task or the name provided is null, nothing happens. If
+     * another task already has this name, it keeps running, but the name now
+     * refers to the new task.
+     * @param <T> The type of the task.
      * @param name The name of the task.
      * @param task The task to add to the pool.
      * @param priority The priority of the task.
+     * @return The handle of the task, or null if nothing was added.
      */
-    public void addTask(String name, GameTask task, double priority)
+    public <T extends GameTask> TaskHandle<T> addTask(String name, T task, double priority)
     {
-        if(task != null && name != null){
-            GameTaskPrio pTask = new GameTaskPrio(task, priority);
-            tasks.add(pTask);
-            taskMap.put(name, pTask);
+        if(task == null || name == null){return null;}
+        TaskHandle<T> handle = new TaskHandle<>(this, task, name, priority);
+        if(holdBack(() -> addNamed(handle))){return handle;}
+        addNamed(handle);
+        return handle;
+    }
+
+    /**
+     * Add a task to the task pool, without a name.
+     * The task can only be reached through the handle returned.
+     * @param <T> The type of the task.
+     * @param task The task to add to the pool.
+     * @param priority The priority of the task.
+     * @return The handle of the task.
+     * @throws NullPointerException The task is null.
+     */
+    public <T extends GameTask> TaskHandle<T> addTask(T task, double priority)
+    {
+        if(task == null){
+            throw new NullPointerException("Task can't be null.");
+        }
+        TaskHandle<T> handle = new TaskHandle<>(this, task, null, priority);
+        if(holdBack(() -> insertPending(handle))){return handle;}
+        insert(handle);
+        return handle;
+    }
+
+    /**
+     * Runs a task once, a number of frames from now.
+     * <p>With a delay of 1, the task runs on the next frame. Until then, it
+     * waits on the timing wheel, and costs nothing. It's then removed, no
+     * matter what it returns.
+     * <p>If the task or the name provided is null, nothing happens.
+     * @param <T> The type of the task.
+     * @param name The name of the task.
+     * @param frames The number of frames to wait, at least 1.
+     * @param task The task to run.
+     * @param priority The priority of the task.
+     * @return The handle of the task, or null if nothing was added.
+     * @throws IllegalArgumentException The number of frames is less than 1.
+     */
+    public <T extends GameTask> TaskHandle<T> runAfter(String name, long frames, T task, double priority)
+    {
+        checkFrames(frames);
+        if(task == null || name == null){return null;}
+        TaskHandle<T> handle = new TaskHandle<>(this, task, name, priority).timed(frames, frames, true);
+        if(holdBack(() -> addNamed(handle))){return handle;}
+        addNamed(handle);
+        return handle;
+    }
+
+    /**
+     * Runs a task once, a number of frames from now, without a name.
+     * @param <T> The type of the task.
+     * @param frames The number of frames to wait, at least 1.
+     * @param task The task to run.
+     * @param priority The priority of the task.
+     * @return The handle of the task.
+     * @throws NullPointerException The task is null.
+     * @throws IllegalArgumentException The number of frames is less than 1.
+     */
+    public <T extends GameTask> TaskHandle<T> runAfter(long frames, T task, double priority)
+    {
+        checkFrames(frames);
+        if(task == null){
+            throw new NullPointerException("Task can't be null.");
+        }
+        TaskHandle<T> handle = new TaskHandle<>(this, task, null, priority).timed(frames, frames, true);
+        if(holdBack(() -> insertPending(handle))){return handle;}
+        insert(handle);
+        return handle;
+    }
+
+    /**
+     * Runs a task every so many frames.
+     * <p>The task first runs the given number of frames from now, then again
+     * each time that many more frames pass, until it returns true or is
+     * removed. In between, it waits on the timing wheel, and costs nothing.
+     * <p>If the task or the name provided is null, nothing happens.
+     * @param <T> The type of the task.
+     * @param name The name of the task.
+     * @param frames The number of frames between runs, at least 1.
+     * @param task The task to run.
+     * @param priority The priority of the task.
+     * @return The handle of the task, or null if nothing was added.
+     * @throws IllegalArgumentException The number of frames is less than 1.
+     */
+    public <T extends GameTask> TaskHandle<T> runEvery(String name, long frames, T task, double priority)
+    {
+        checkFrames(frames);
+        if(task == null || name == null){return null;}
+        TaskHandle<T> handle = new TaskHandle<>(this, task, name, priority).timed(frames, frames, false);
+        if(holdBack(() -> addNamed(handle))){return handle;}
+        addNamed(handle);
+        return handle;
+    }
+
+    /**
+     * Runs a task every so many frames, without a name.
+     * @param <T> The type of the task.
+     * @param frames The number of frames between runs, at least 1.
+     * @param task The task to run.
+     * @param priority The priority of the task.
+     * @return The handle of the task.
+     * @throws NullPointerException The task is null.
+     * @throws IllegalArgumentException The number of frames is less than 1.
+     */
+    public <T extends GameTask> TaskHandle<T> runEvery(long frames, T task, double priority)
+    {
+        checkFrames(frames);
+        if(task == null){
+            throw new NullPointerException("Task can't be null.");
         }
+        TaskHandle<T> handle = new TaskHandle<>(this, task, null, priority).timed(frames, frames, false);
+        if(holdBack(() -> insertPending(handle))){return handle;}
+        insert(handle);
+        return handle;
     }
-    
+
+    private static void checkFrames(long frames)
+    {
+        if(frames < 1){
+            throw new IllegalArgumentException("Frames must be at least 1.");
+        }
+    }
+
     /**
      * Remove a task from the task pool.
      * @param taskName The name of the task to remove.
      */
     public void removeTask(String taskName)
     {
-        tasks.remove(taskMap.get(taskName));
+        if(holdBack(() -> removeTask(taskName))){return;}
+        TaskHandle<?> handle = taskMap.get(taskName);
+        if(handle != null){retire(handle);}
     }
-    
+
+    /**
+     * Remove a task from the task pool.
+     * If it has already finished or been removed, nothing happens.
+     * @param handle The handle of the task to remove.
+     */
+    public void removeTask(TaskHandle<?> handle)
+    {
+        if(handle != null && handle.game == this)
+        {
+            if(holdBack(() -> retire(handle))){return;}
+            retire(handle);
+        }
+    }
+
     /**
      * Schedules a task to be added to the task pool.
      * <p>When tasks are being executed, it can be a little iffy adding
@@ -106,19 +489,40 @@ public abstract class AbstractGame implements GameModel
      * this method, it is added to the pool after all the tasks in the pool
      * have been run through.
      * <p>If a null task is provided, nothing happens.
+     * @param <T> The type of the task.
      * @param name The name of the task.
      * @param task The task to schedule.
      * @param priority The priority of the task.
+     * @return The handle of the task, or null if nothing was scheduled.
+     */
+    public <T extends GameTask> TaskHandle<T> scheduleTask(String name, T task, double priority)
+    {
+        if(task == null || name == null){return null;}
+        TaskHandle<T> handle = new TaskHandle<>(this, task, name, priority);
+        if(holdBack(() -> scheduleNamed(handle))){return handle;}
+        scheduleNamed(handle);
+        return handle;
+    }
+
+    /**
+     * Schedules a task to be added to the task pool, without a name.
+     * @param <T> The type of the task.
+     * @param task The task to schedule.
+     * @param priority The priority of the task.
+     * @return The handle of the task.
+     * @throws NullPointerException The task is null.
      */
-    public void scheduleTask(String name, GameTask task, double priority)
+    public <T extends GameTask> TaskHandle<T> scheduleTask(T task, double priority)
     {
-        if(task != null && name != null){
-            GameTaskPrio pTask = new GameTaskPrio(task, priority);
-            scheduledTasks.add(pTask);
-            taskMap.put(name, pTask);
+        if(task == null){
+            throw new NullPointerException("Task can't be null.");
         }
+        TaskHandle<T> handle = new TaskHandle<>(this, task, null, priority);
+        if(holdBack(() -> scheduledTasks.add(handle))){return handle;}
+        scheduledTasks.add(handle);
+        return handle;
     }
-    
+
     /**
      * Enable or disable a task.
      * @param name The name of the task to enable/disable.
@@ -126,13 +530,36 @@ public abstract class AbstractGame implements GameModel
      */
     public void setTaskEnabled(String name, boolean enable)
     {
-        GameTaskPrio task = taskMap.get(name);
+        if(holdBack(() -> setTaskEnabled(name, enable))){return;}
+        TaskHandle<?> task = taskMap.get(name);
         if(task != null)
         {
-            task.disable = !enable;
+            task.setEnabled(enable);
         }
     }
-    
+
+    /*
+    Enables or disables a task. A timed task that's waiting has its timer
+    paused, by taking it off the wheel and remembering how long it had left.
+    */
+    private void setEnabled(TaskHandle<?> handle, boolean enable)
+    {
+        if(holdBack(() -> setEnabled(handle, enable))){return;}
+        if(handle.disable == !enable){return;}
+        handle.disable = !enable;
+        if(handle.state != TaskHandle.TIMED){return;}
+        if(enable)
+        {
+            handle.due = frame + handle.delay;
+            place(handle);
+        }
+        else
+        {
+            unplace(handle);
+            handle.delay = handle.due - frame;
+        }
+    }
+
     /**
      * Get the task associated with a name.
      * @param name The name of the task.
@@ -140,9 +567,28 @@ public abstract class AbstractGame implements GameModel
      */
     public GameTask getTask(String name)
     {
-        return taskMap.get(name).task;
+        TaskHandle<?> handle = taskMap.get(name);
+        return (handle == null) ? null : handle.task;
     }
-    
+
+    /**
+     * Get the handle of the task associated with a name.
+     * @param name The name of the task.
+     * @return The task's handle, or null if there is no such task.
+     */
+    public TaskHandle<?> getTaskHandle(String name)
+    {
+        return taskMap.get(name);
+    }
+
+    /**
+     * Get the number of tasks in the task pool.
+     * Tasks waiting to run later are counted. Tasks scheduled, but not yet
+     * added, aren't.
+     * @return The number of tasks.
+     */
+    public int getTaskCount(){return taskCount;}
+
     /**
      * Set the priority bound on the task pool.
      * All tasks with priority less than or equal to this bound will be
@@ -154,31 +600,365 @@ public abstract class AbstractGame implements GameModel
      */
     public void setTaskBound(double bound)
     {
+        if(holdBack(() -> setTaskBound(bound))){return;}
         priorityRange = bound;
     }
-    
+
     /**
      * Runs through all the tasks in the pool.
      * The controller's state is updated through its update() method, and
      * the tasks are then run through, from lowest to highest priority, until
-     * hitting the priority range.
+     * hitting the priority range. Scheduled tasks are then added to the pool.
+     * <p>Before that, the timing wheel is moved on by a frame, and any tasks
+     * that are now due join the pool.
      */
     @Override
     public void onFrame()
     {
-        Iterator<GameTaskPrio> iter = tasks.iterator();
-        while(iter.hasNext())
+        tick();
+        running = true;
+        try
         {
-            GameTaskPrio task = iter.next();
-            if(task.priority > priorityRange){return;}
-            if(task.onFrame(this)){
-                iter.remove();
+            for(Bucket bucket = first; bucket != null; bucket = bucket.next)
+            {
+                if(isBounded(bucket.priority)){break;}
+                TaskHandle<?> task = bucket.head;
+                while(task != null)
+                {
+                    if(task.parallel && !task.disable)
+                    {
+                        task = runBatch(task);
+                        continue;
+                    }
+                    //If this task removes the next one, the cursor moves past it.
+                    cursor = task.next;
+                    if(!task.disable)
+                    {
+                        task.ran = true;
+                        if(task.task.onFrame(this)){
+                            retire(task);
+                        }
+                    }
+                    task = cursor;
+                }
             }
         }
-        scheduledTasks.forEach(tasks::add);
+        finally
+        {
+            running = false;
+            cursor = null;
+            rearm();
+            for(Bucket bucket : emptied){
+                dropIfEmpty(bucket);
+            }
+            emptied.clear();
+        }
+        for(TaskHandle<?> task : scheduledTasks)
+        {
+            if(task.state == TaskHandle.PENDING){insert(task);}
+        }
         scheduledTasks.clear();
     }
-    
+
+    /*
+    Runs the parallel-safe tasks starting from this one, up to the next task
+    that isn't, then makes the changes they held back, in list order.
+    Disabled tasks in between are skipped, since they do nothing anyway.
+    Returns the task to run next.
+    */
+    private TaskHandle<?> runBatch(TaskHandle<?> start)
+    {
+        TaskHandle<?> after = start;
+        while(after != null && (after.parallel || after.disable))
+        {
+            if(!after.disable){batch.add(after);}
+            after = after.next;
+        }
+        cursor = after;
+        final int count = batch.size();
+        if(count == 1)
+        {
+            //Nothing to run alongside; run it like any other task.
+            TaskHandle<?> only = batch.get(0);
+            batch.clear();
+            only.ran = true;
+            if(only.task.onFrame(this)){
+                retire(only);
+            }
+            return cursor;
+        }
+        if(batchDone.length < count){
+            batchDone = new boolean[count];
+        }
+        while(batchChanges.size() < count){
+            batchChanges.add(new ArrayList<>());
+        }
+        try
+        {
+            int grain = Math.max(1, count / (taskPool.getParallelism() * 4));
+            taskPool.invoke(new TaskBatch(0, count, grain));
+            for(int index = 0; index < count; index++)
+            {
+                for(Runnable change : batchChanges.get(index)){
+                    change.run();
+                }
+                if(batchDone[index]){
+                    retire(batch.get(index));
+                }
+            }
+        }
+        finally
+        {
+            for(int index = 0; index < count; index++){
+                batchChanges.get(index).clear();
+            }
+            batch.clear();
+        }
+        return cursor;
+    }
+
+    /*
+    Checks if a priority is past the bound. A NaN bound lets everything run,
+    and NaN priorities count as the highest of all.
+    */
+    private boolean isBounded(double priority)
+    {
+        if(Double.isNaN(priorityRange)){return false;}
+        return priority > priorityRange || Double.isNaN(priority);
+    }
+
+    private void addNamed(TaskHandle<?> handle)
+    {
+        if(handle.state != TaskHandle.PENDING){return;}
+        taskMap.put(handle.name, handle);
+        insert(handle);
+    }
+
+    private void scheduleNamed(TaskHandle<?> handle)
+    {
+        if(handle.state != TaskHandle.PENDING){return;}
+        taskMap.put(handle.name, handle);
+        scheduledTasks.add(handle);
+    }
+
+    private void insertPending(TaskHandle<?> handle)
+    {
+        if(handle.state == TaskHandle.PENDING){insert(handle);}
+    }
+
+    /*
+    Adds a task to the pool, or, if it's timed, to the timing wheel.
+    */
+    private void insert(TaskHandle<?> handle)
+    {
+        handle.order = nextOrder++;
+        taskCount++;
+        if(handle.period > 0)
+        {
+            handle.state = TaskHandle.TIMED;
+            if(!handle.disable)
+            {
+                handle.due = frame + handle.delay;
+                place(handle);
+            }
+            return;
+        }
+        link(handle);
+    }
+
+    /*
+    Puts a task at the front of its priority's bucket, making the bucket if
+    there isn't one.
+    */
+    private void link(TaskHandle<?> handle)
+    {
+        Bucket bucket = buckets.get(handle.priority);
+        if(bucket == null)
+        {
+            bucket = new Bucket(handle.priority);
+            Map.Entry<Double, Bucket> before = buckets.lowerEntry(handle.priority);
+            bucket.prev = (before == null) ? null : before.getValue();
+            bucket.next = (bucket.prev == null) ? first : bucket.prev.next;
+            if(bucket.prev == null){first = bucket;} else {bucket.prev.next = bucket;}
+            if(bucket.next != null){bucket.next.prev = bucket;}
+            buckets.put(handle.priority, bucket);
+        }
+        handle.bucket = bucket;
+        handle.prev = null;
+        handle.next = bucket.head;
+        if(bucket.head == null){bucket.tail = handle;} else {bucket.head.prev = handle;}
+        bucket.head = handle;
+        handle.state = TaskHandle.ACTIVE;
+    }
+
+    /*
+    Takes a task out of the pool, or out of the schedule, and frees its name.
+    */
+    private void retire(TaskHandle<?> handle)
+    {
+        if(handle.state == TaskHandle.ACTIVE)
+        {
+            unlink(handle);
+            taskCount--;
+        }
+        else if(handle.state == TaskHandle.TIMED)
+        {
+            unplace(handle);
+            taskCount--;
+        }
+        if(handle.state != TaskHandle.RETIRED && handle.name != null
+                && taskMap.get(handle.name) == handle)
+        {
+            taskMap.remove(handle.name);
+        }
+        handle.state = TaskHandle.RETIRED;
+    }
+
+    /*
+    Takes a task out of its bucket.
+    */
+    private void unlink(TaskHandle<?> handle)
+    {
+        if(handle == cursor){cursor = handle.next;}
+        Bucket bucket = handle.bucket;
+        if(handle.prev == null){bucket.head = handle.next;} else {handle.prev.next = handle.next;}
+        if(handle.next == null){bucket.tail = handle.prev;} else {handle.next.prev = handle.prev;}
+        handle.prev = handle.next = null;
+        handle.bucket = null;
+        if(bucket.head == null)
+        {
+            //Buckets are only unlinked between frames, so the walk isn't disturbed.
+            if(running){emptied.add(bucket);} else {dropIfEmpty(bucket);}
+        }
+    }
+
+    /*
+    Puts a timed task on the wheel. Level 0 holds tasks due within the
+    current block of SLOTS frames, one slot per frame. Each level up, slots
+    cover SLOTS times as many frames. A task goes on the level of the highest
+    block its due frame doesn't share with the current frame, so it's moved
+    down a level each time the current frame reaches its block, and is in
+    level 0 by the time it's due. Tasks due past the top level wait in it,
+    and are put back each time their slot comes up, until they fit.
+    */
+    private void place(TaskHandle<?> handle)
+    {
+        long differ = handle.due ^ frame;
+        int level = 0;
+        while(level < LEVELS - 1 && (differ >>> (SLOT_BITS * (level + 1))) != 0){
+            level++;
+        }
+        int slot = (int)((handle.due >>> (SLOT_BITS * level)) & (SLOTS - 1));
+        TaskHandle<?> head = wheel[level][slot];
+        handle.level = level;
+        handle.slot = slot;
+        handle.wheelPrev = null;
+        handle.wheelNext = head;
+        if(head != null){head.wheelPrev = handle;}
+        wheel[level][slot] = handle;
+    }
+
+    /*
+    Takes a timed task off the wheel, if it's on it.
+    */
+    private void unplace(TaskHandle<?> handle)
+    {
+        if(handle.level < 0){return;}
+        if(handle.wheelPrev == null){
+            wheel[handle.level][handle.slot] = handle.wheelNext;
+        }
+        else{
+            handle.wheelPrev.wheelNext = handle.wheelNext;
+        }
+        if(handle.wheelNext != null){handle.wheelNext.wheelPrev = handle.wheelPrev;}
+        handle.wheelPrev = handle.wheelNext = null;
+        handle.level = -1;
+    }
+
+    /*
+    Moves the wheel on a frame. Blocks that are starting are moved down a
+    level, from the top down, then the tasks in this frame's slot join the
+    pool, oldest first, so the newest ends up at the front of its bucket.
+    */
+    private void tick()
+    {
+        frame++;
+        for(int level = LEVELS - 1; level > 0; level--)
+        {
+            if((frame & ((1L << (SLOT_BITS * level)) - 1)) != 0){continue;}
+            int slot = (int)((frame >>> (SLOT_BITS * level)) & (SLOTS - 1));
+            TaskHandle<?> handle = wheel[level][slot];
+            wheel[level][slot] = null;
+            while(handle != null)
+            {
+                TaskHandle<?> next = handle.wheelNext;
+                place(handle);
+                handle = next;
+            }
+        }
+        int slot = (int)(frame & (SLOTS - 1));
+        TaskHandle<?> handle = wheel[0][slot];
+        if(handle == null){return;}
+        wheel[0][slot] = null;
+        int start = dueTasks.size();
+        while(handle != null)
+        {
+            TaskHandle<?> next = handle.wheelNext;
+            handle.wheelPrev = handle.wheelNext = null;
+            handle.level = -1;
+            dueTasks.add(handle);
+            handle = next;
+        }
+        List<TaskHandle<?>> now = dueTasks.subList(start, dueTasks.size());
+        now.sort((first, second) -> Long.compare(first.order, second.order));
+        for(TaskHandle<?> task : now)
+        {
+            task.ran = false;
+            link(task);
+        }
+    }
+
+    /*
+    After a frame, takes the due tasks that ran back out of the pool, and
+    puts them back on the wheel, or removes them if they only run once.
+    Those that didn't get to run, because they were disabled or cut off by
+    the priority bound, wait in the pool until they do.
+    */
+    private void rearm()
+    {
+        int kept = 0;
+        for(int index = 0; index < dueTasks.size(); index++)
+        {
+            TaskHandle<?> task = dueTasks.get(index);
+            if(task.state != TaskHandle.ACTIVE){continue;}
+            if(!task.ran)
+            {
+                dueTasks.set(kept++, task);
+                continue;
+            }
+            if(task.once)
+            {
+                retire(task);
+                continue;
+            }
+            unlink(task);
+            task.state = TaskHandle.TIMED;
+            task.due = frame + task.period;
+            place(task);
+        }
+        dueTasks.subList(kept, dueTasks.size()).clear();
+    }
+
+    private void dropIfEmpty(Bucket bucket)
+    {
+        if(bucket.head != null || !bucket.linked){return;}
+        if(bucket.prev == null){first = bucket.next;} else {bucket.prev.next = bucket.next;}
+        if(bucket.next != null){bucket.next.prev = bucket.prev;}
+        bucket.prev = bucket.next = null;
+        bucket.linked = false;
+        buckets.remove(bucket.priority);
+    }
+
     /**
      * Shows the list of tasks in the pool.
      * @return All the tasks in the pool.
@@ -186,6 +966,15 @@ public abstract class AbstractGame implements GameModel
     @Override
     public String toString()
     {
-        return tasks.toString();
+        StringBuilder builder = new StringBuilder("[");
+        for(Bucket bucket = first; bucket != null; bucket = bucket.next)
+        {
+            for(TaskHandle<?> task = bucket.head; task != null; task = task.next)
+            {
+                if(builder.length() > 1){builder.append(", ");}
+                builder.append(task);
+            }
+        }
+        return builder.append(']').toString();
     }
 }
@@ -0,0 +1,297 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a game on its own thread, at a fixed rate.
+ * <p>Driving the game from a Swing Timer ties the game's speed to painting:
+ * a slow paint delays the next frame, and the game logic ends up running on
+ * the event thread. Instead, this runs the GameModel's onFrame() on a
+ * dedicated thread, exactly once per step, with the steps kept on a fixed
+ * schedule measured with System.nanoTime(). If a step runs late, the next
+ * ones run back to back until the game has caught up, so the game always
+ * runs at the same speed no matter how quickly it's drawn.
+ * <p>Drawing is done by a Renderer, called from the same thread, so the
+ * renderer can read the game freely. By default it's called once after
+ * every step, but it can be called more often, in which case it is given how
+ * far along it is towards the next step, for smoothing movement between
+ * steps.
+ * <p>If the game falls so far behind that catching up would take more than
+ * a set number of steps, the missed steps are skipped instead, and the game
+ * slows down rather than freezing to catch up.
+ * <p>How late each step starts is recorded, to see how steady the timing is.
+ * @author Justis
+ */
+public class GameLoop
+{
+    /**
+     * Draws the game.
+     */
+    @FunctionalInterface
+    public interface Renderer
+    {
+        /**
+         * Draws the game.
+         * @param alpha How far the loop is between the last step and the next,
+         * from 0 (just stepped) to 1 (about to step).
+         */
+        void render(double alpha);
+    }
+
+    private final GameModel game;
+    private final long stepNanos;
+    private volatile long renderNanos;
+    private volatile Renderer renderer = null;
+    private volatile int maxCatchUp = 5;
+    private volatile boolean running = false;
+    private volatile Thread thread = null;
+
+    //Timing statistics. Written by the loop thread only.
+    private volatile long steps = 0;
+    private volatile long skipped = 0;
+    private volatile long totalJitter = 0;
+    private volatile long maxJitter = 0;
+
+    /**
+     * Creates a GameLoop.
+     * @param game The game to run.
+     * @param stepNanos The length of a step, in nanoseconds.
+     * @throws NullPointerException The game is null.
+     * @throws IllegalArgumentException The step length isn't positive.
+     */
+    public GameLoop(GameModel game, long stepNanos)
+    {
+        if(game == null){
+            throw new NullPointerException("Game can't be null.");
+        }
+        if(stepNanos <= 0){
+            throw new IllegalArgumentException("Step length must be positive.");
+        }
+        this.game = game;
+        this.stepNanos = stepNanos;
+        this.renderNanos = stepNanos;
+    }
+
+    /**
+     * Creates a GameLoop.
+     * @param game The game to run.
+     * @param step The length of a step.
+     * @param unit The unit of the step length.
+     * @throws NullPointerException The game or unit is null.
+     * @throws IllegalArgumentException The step length isn't positive.
+     */
+    public GameLoop(GameModel game, long step, TimeUnit unit)
+    {
+        this(game, unit.toNanos(step));
+    }
+
+    /**
+     * Set what draws the game.
+     * @param newRenderer The Renderer to call, or null to only run the game.
+     */
+    public void setRenderer(Renderer newRenderer)
+    {
+        renderer = newRenderer;
+    }
+
+    /**
+     * Set how often the Renderer is called.
+     * <p>By default, this is the same as the step length, so the game is
+     * drawn once after every step. Shorter intervals draw between steps as
+     * well.
+     * @param nanos The time between draws, in nanoseconds.
+     * @throws IllegalArgumentException The interval isn't positive.
+     */
+    public void setRenderInterval(long nanos)
+    {
+        if(nanos <= 0){
+            throw new IllegalArgumentException("Render interval must be positive.");
+        }
+        renderNanos = nanos;
+    }
+
+    /**
+     * Set the most steps run back to back when catching up.
+     * <p>Past this, the remaining missed steps are skipped. The default is 5.
+     * @param steps The most steps to run at once, at least one.
+     * @throws IllegalArgumentException Less than one step specified.
+     */
+    public void setMaxCatchUp(int steps)
+    {
+        if(steps < 1){
+            throw new IllegalArgumentException("At least one step is required.");
+        }
+        maxCatchUp = steps;
+    }
+
+    /**
+     * Get the length of a step.
+     * @return The length of a step, in nanoseconds.
+     */
+    public long getStepNanos(){return stepNanos;}
+
+    /**
+     * Starts running the game.
+     * If the loop is already running, nothing happens.
+     */
+    public synchronized void start()
+    {
+        if(running){return;}
+        running = true;
+        thread = new Thread(this::run, "GameLoop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops running the game.
+     * The step or draw in progress is finished first. If called from any
+     * other thread, this waits for the loop to end.
+     * <p>If the game or Renderer threw an exception, the loop has already
+     * stopped, and this does nothing.
+     * @throws InterruptedException Interrupted while waiting.
+     */
+    public void stop() throws InterruptedException
+    {
+        Thread stopping;
+        synchronized(this)
+        {
+            if(!running){return;}
+            running = false;
+            stopping = thread;
+            thread = null;
+        }
+        //Joined outside the lock, since the loop takes it on the way out.
+        LockSupport.unpark(stopping);
+        if(Thread.currentThread() != stopping){
+            stopping.join();
+        }
+    }
+
+    /**
+     * Checks if the loop is running.
+     * <p>An exception thrown by the game or the Renderer stops the loop, and
+     * goes to the thread's uncaught exception handler. The loop can then be
+     * started again.
+     * @return True if the game is being run.
+     */
+    public boolean isRunning(){return running;}
+
+    /**
+     * Get the number of steps run.
+     * @return The number of steps.
+     */
+    public long getStepCount(){return steps;}
+
+    /**
+     * Get the number of steps skipped because the game fell too far behind.
+     * @return The number of skipped steps.
+     */
+    public long getSkippedSteps(){return skipped;}
+
+    /**
+     * Get how late steps start, on average.
+     * @return The average lateness, in nanoseconds.
+     */
+    public long getAverageJitter()
+    {
+        long count = steps;
+        return (count == 0) ? 0 : totalJitter / count;
+    }
+
+    /**
+     * Get how late the slowest step started.
+     * @return The largest lateness, in nanoseconds.
+     */
+    public long getMaxJitter(){return maxJitter;}
+
+    /**
+     * Sets the timing statistics back to zero.
+     * This should be called while the loop is stopped, or the counts may be
+     * slightly off.
+     */
+    public void resetStatistics()
+    {
+        steps = skipped = totalJitter = maxJitter = 0;
+    }
+
+    /*
+    Runs the loop. If the game or renderer throws, the loop is marked as
+    stopped, unless stop() or start() has already moved on to another thread.
+    */
+    private void run()
+    {
+        try
+        {
+            loop();
+        }
+        finally
+        {
+            synchronized(this)
+            {
+                if(thread == Thread.currentThread())
+                {
+                    running = false;
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    /*
+    The loop itself. Steps are scheduled at fixed times, so a late step
+    doesn't push the ones after it back. The thread sleeps until either the
+    next step or the next draw is due.
+    */
+    private void loop()
+    {
+        long nextStep = System.nanoTime();
+        long nextRender = nextStep;
+        while(running && thread == Thread.currentThread())
+        {
+            long now = System.nanoTime();
+            if(now - nextStep >= 0)
+            {
+                int batch = 0;
+                while(now - nextStep >= 0 && batch < maxCatchUp)
+                {
+                    long late = now - nextStep;
+                    totalJitter += late;
+                    if(late > maxJitter){maxJitter = late;}
+                    steps++;
+                    game.onFrame();
+                    nextStep += stepNanos;
+                    batch++;
+                    now = System.nanoTime();
+                }
+                if(now - nextStep >= 0)
+                {
+                    //Too far behind; give up on the missed steps.
+                    long missed = (now - nextStep) / stepNanos + 1;
+                    skipped += missed;
+                    nextStep += missed * stepNanos;
+                }
+            }
+            Renderer current = renderer;
+            if(current != null && now - nextRender >= 0)
+            {
+                double alpha = 1 - (double)(nextStep - now) / stepNanos;
+                current.render(Math.max(0, Math.min(1, alpha)));
+                nextRender += renderNanos;
+                now = System.nanoTime();
+                if(now - nextRender >= 0){nextRender = now + renderNanos;}
+            }
+            long wake = (current == null || nextStep - nextRender < 0) ? nextStep : nextRender;
+            long wait = wake - System.nanoTime();
+            if(wait > 0){
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+}
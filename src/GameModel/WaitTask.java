@@ -10,6 +10,8 @@ package GameModel;
  * <p>It is typically useful to have a task that runs often, yet not at one
  * frame per second. This allows you to specify a task to run one every
  * set number of frames.
+ * <p>The task is run on the (timeToWait + 2)th frame, and every timeToWait + 2
+ * frames after that, or every frame if timeToWait is -1 or less.
  * @author Justis
  */
 public class WaitTask implements GameTask
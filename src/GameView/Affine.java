@@ -0,0 +1,232 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.util.Arrays;
+
+/**
+ * An affine matrix.
+ * <p>An affine matrix always has 0, 0, 1 as its bottom row, so only the top
+ * two rows need to be stored:
+ * <pre>
+ * |A B C|
+ * |D E F|
+ * |0 0 1|
+ * </pre>
+ * A point (X, Y) is moved to (AX + BY + C, DX + EY + F).
+ * <p>An Affine can't be changed once created, so it can be shared and used as
+ * a map key freely. To build one up step by step without creating a new
+ * Affine at every step, use an AffineBuilder.
+ * @author Justis
+ */
+public final class Affine
+{
+    /**
+     * The neutral matrix, which doesn't move anything.
+     */
+    public static final Affine IDENTITY = new Affine(1, 0, 0, 0, 1, 0);
+
+    private final double a;
+    private final double b;
+    private final double c;
+    private final double d;
+    private final double e;
+    private final double f;
+
+    /**
+     * Creates an Affine from its six coefficients.
+     * @param a The X scale.
+     * @param b The X shear.
+     * @param c The X translation.
+     * @param d The Y shear.
+     * @param e The Y scale.
+     * @param f The Y translation.
+     */
+    public Affine(double a, double b, double c, double d, double e, double f)
+    {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+        this.e = e;
+        this.f = f;
+    }
+
+    /**
+     * Creates an Affine from a 3x3 matrix.
+     * The bottom row of the matrix is ignored.
+     * @param matrix The matrix to copy.
+     * @return The Affine holding the top two rows of the matrix.
+     * @throws NullPointerException The matrix is null.
+     * @throws IllegalArgumentException The matrix is not 3x3.
+     */
+    public static Affine of(double[][] matrix)
+    {
+        checkMatrix(matrix);
+        return new Affine(
+                matrix[0][0], matrix[0][1], matrix[0][2],
+                matrix[1][0], matrix[1][1], matrix[1][2]);
+    }
+
+    static void checkMatrix(double[][] matrix)
+    {
+        if(matrix == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        if(matrix.length != 3 || matrix[0].length != 3 || matrix[1].length != 3){
+            throw new IllegalArgumentException("Matrix must be 3x3.");
+        }
+    }
+
+    /**
+     * Creates a translation matrix.
+     * @param dx The number of pixels to shift in the X direction.
+     * @param dy The number of pixels to shift in the Y direction.
+     * @return The translation matrix.
+     */
+    public static Affine translate(double dx, double dy)
+    {
+        return new Affine(1, 0, dx, 0, 1, dy);
+    }
+
+    /**
+     * Creates a scaling matrix.
+     * @param dx The amount to expand in the X direction, with 1 being no change.
+     * @param dy The amount to expand in the Y direction, with 1 being no change.
+     * @return The scaling matrix.
+     */
+    public static Affine scale(double dx, double dy)
+    {
+        return new Affine(dx, 0, 0, 0, dy, 0);
+    }
+
+    /**
+     * Creates a rotation matrix.
+     * @param theta The amount to rotate, in radians.
+     * @return The rotation matrix.
+     */
+    public static Affine rotate(double theta)
+    {
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        return new Affine(cos, sin, 0, -sin, cos, 0);
+    }
+
+    /**
+     * Creates a shear matrix.
+     * @param thetaX The angle between the Y axis, and the left edge of the image.
+     * @param thetaY The angle between the X axis, and the upper edge of the image.
+     * @return The shear matrix.
+     */
+    public static Affine shear(double thetaX, double thetaY)
+    {
+        return new Affine(1, Math.tan(thetaX), 0, Math.tan(thetaY), 1, 0);
+    }
+
+    /**
+     * Multiplies this matrix by another.
+     * The result applies the other matrix first, then this one.
+     * @param right The matrix on the right side of the multiplication.
+     * @return The product of the two matrices.
+     * @throws NullPointerException The matrix supplied is null.
+     */
+    public Affine multiply(Affine right)
+    {
+        if(right == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return new Affine(
+                (a * right.a) + (b * right.d),
+                (a * right.b) + (b * right.e),
+                (a * right.c) + (b * right.f) + c,
+                (d * right.a) + (e * right.d),
+                (d * right.b) + (e * right.e),
+                (d * right.c) + (e * right.f) + f);
+    }
+
+    /**
+     * Get the determinant of this matrix.
+     * This is how much the matrix scales areas by. If it is zero, the matrix
+     * flattens everything onto a line, and can't be reversed.
+     * @return AE - BD.
+     */
+    public double determinant(){return (e * a) - (b * d);}
+
+    /**
+     * Get the X scale.
+     * @return Coefficient A.
+     */
+    public double getA(){return a;}
+
+    /**
+     * Get the X shear.
+     * @return Coefficient B.
+     */
+    public double getB(){return b;}
+
+    /**
+     * Get the X translation.
+     * @return Coefficient C.
+     */
+    public double getC(){return c;}
+
+    /**
+     * Get the Y shear.
+     * @return Coefficient D.
+     */
+    public double getD(){return d;}
+
+    /**
+     * Get the Y scale.
+     * @return Coefficient E.
+     */
+    public double getE(){return e;}
+
+    /**
+     * Get the Y translation.
+     * @return Coefficient F.
+     */
+    public double getF(){return f;}
+
+    /**
+     * Converts this into a 3x3 matrix.
+     * @return A new 3x3 array holding this matrix.
+     */
+    public double[][] toArray()
+    {
+        return new double[][]{{a, b, c}, {d, e, f}, {0, 0, 1}};
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if(o instanceof Affine)
+        {
+            Affine other = (Affine)o;
+            return Double.compare(a, other.a) == 0 && Double.compare(b, other.b) == 0
+                    && Double.compare(c, other.c) == 0 && Double.compare(d, other.d) == 0
+                    && Double.compare(e, other.e) == 0 && Double.compare(f, other.f) == 0;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = Double.hashCode(a);
+        hash = hash * 31 + Double.hashCode(b);
+        hash = hash * 31 + Double.hashCode(c);
+        hash = hash * 31 + Double.hashCode(d);
+        hash = hash * 31 + Double.hashCode(e);
+        return hash * 31 + Double.hashCode(f);
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.deepToString(toArray());
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+/**
+ * Builds an affine matrix step by step.
+ * <p>This is the changeable version of Affine. Each transformation is
+ * multiplied onto the right of the matrix in place, exactly as ImageOp does,
+ * so no arrays or objects are created along the way. This makes it suitable
+ * for work done on every scanline, such as in a MatrixFunction.
+ * <p>Once finished, build() gives back an Affine holding the result.
+ * @author Justis
+ */
+public final class AffineBuilder
+{
+    private double a = 1;
+    private double b = 0;
+    private double c = 0;
+    private double d = 0;
+    private double e = 1;
+    private double f = 0;
+
+    /**
+     * Creates an AffineBuilder, holding the neutral matrix.
+     */
+    public AffineBuilder(){}
+
+    /**
+     * Creates an AffineBuilder, holding a copy of a matrix.
+     * @param start The matrix to start from.
+     * @throws NullPointerException The matrix supplied is null.
+     */
+    public AffineBuilder(Affine start)
+    {
+        set(start);
+    }
+
+    /**
+     * Resets this to the neutral matrix.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder setIdentity()
+    {
+        return set(1, 0, 0, 0, 1, 0);
+    }
+
+    /**
+     * Replaces the matrix with six coefficients.
+     * @param a The X scale.
+     * @param b The X shear.
+     * @param c The X translation.
+     * @param d The Y shear.
+     * @param e The Y scale.
+     * @param f The Y translation.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder set(double a, double b, double c, double d, double e, double f)
+    {
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+        this.e = e;
+        this.f = f;
+        return this;
+    }
+
+    /**
+     * Replaces the matrix with a copy of another.
+     * @param other The matrix to copy.
+     * @return The instance of this AffineBuilder, for chaining.
+     * @throws NullPointerException The matrix supplied is null.
+     */
+    public AffineBuilder set(Affine other)
+    {
+        if(other == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return set(other.getA(), other.getB(), other.getC(),
+                other.getD(), other.getE(), other.getF());
+    }
+
+    /**
+     * Replaces the matrix with a copy of another.
+     * @param other The matrix to copy.
+     * @return The instance of this AffineBuilder, for chaining.
+     * @throws NullPointerException The matrix supplied is null.
+     */
+    public AffineBuilder set(AffineBuilder other)
+    {
+        if(other == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return set(other.a, other.b, other.c, other.d, other.e, other.f);
+    }
+
+    /**
+     * Replaces the matrix with the top two rows of a 3x3 matrix.
+     * @param matrix The matrix to copy.
+     * @return The instance of this AffineBuilder, for chaining.
+     * @throws NullPointerException The matrix supplied is null.
+     * @throws IllegalArgumentException The matrix is not 3x3.
+     */
+    public AffineBuilder set(double[][] matrix)
+    {
+        Affine.checkMatrix(matrix);
+        return set(matrix[0][0], matrix[0][1], matrix[0][2],
+                matrix[1][0], matrix[1][1], matrix[1][2]);
+    }
+
+    /**
+     * Multiplies the matrix by six coefficients, on the right.
+     * @param ra The X scale.
+     * @param rb The X shear.
+     * @param rc The X translation.
+     * @param rd The Y shear.
+     * @param re The Y scale.
+     * @param rf The Y translation.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder multiply(double ra, double rb, double rc, double rd, double re, double rf)
+    {
+        return set(
+                (a * ra) + (b * rd),
+                (a * rb) + (b * re),
+                (a * rc) + (b * rf) + c,
+                (d * ra) + (e * rd),
+                (d * rb) + (e * re),
+                (d * rc) + (e * rf) + f);
+    }
+
+    /**
+     * Multiplies the matrix by another, on the right.
+     * @param right The matrix to multiply by.
+     * @return The instance of this AffineBuilder, for chaining.
+     * @throws NullPointerException The matrix supplied is null.
+     */
+    public AffineBuilder multiply(Affine right)
+    {
+        if(right == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return multiply(right.getA(), right.getB(), right.getC(),
+                right.getD(), right.getE(), right.getF());
+    }
+
+    /**
+     * Multiplies the matrix by another, on the right.
+     * @param right The matrix to multiply by.
+     * @return The instance of this AffineBuilder, for chaining.
+     * @throws NullPointerException The matrix supplied is null.
+     */
+    public AffineBuilder multiply(AffineBuilder right)
+    {
+        if(right == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return multiply(right.a, right.b, right.c, right.d, right.e, right.f);
+    }
+
+    /**
+     * Translates.
+     * @param dx The number of pixels to shift in the X direction.
+     * @param dy The number of pixels to shift in the Y direction.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder translate(double dx, double dy)
+    {
+        c = (a * dx) + (b * dy) + c;
+        f = (d * dx) + (e * dy) + f;
+        return this;
+    }
+
+    /**
+     * Scales.
+     * @param dx The amount to expand in the X direction, with 1 being no change.
+     * @param dy The amount to expand in the Y direction, with 1 being no change.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder scale(double dx, double dy)
+    {
+        a *= dx;
+        d *= dx;
+        b *= dy;
+        e *= dy;
+        return this;
+    }
+
+    /**
+     * Rotates.
+     * @param theta The amount to rotate, in radians.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder rotate(double theta)
+    {
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        return multiply(cos, sin, 0, -sin, cos, 0);
+    }
+
+    /**
+     * Shears.
+     * @param thetaX The angle between the Y axis, and the left edge of the image.
+     * @param thetaY The angle between the X axis, and the upper edge of the image.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder shear(double thetaX, double thetaY)
+    {
+        return multiply(1, Math.tan(thetaX), 0, Math.tan(thetaY), 1, 0);
+    }
+
+    /**
+     * Reflects.
+     * @param xAxis True if a flip along the X-axis should occur.
+     * @param yAxis True if a flip along the Y-axis should occur.
+     * @return The instance of this AffineBuilder, for chaining.
+     */
+    public AffineBuilder reflect(boolean xAxis, boolean yAxis)
+    {
+        return scale(yAxis ? -1 : 1, xAxis ? -1 : 1);
+    }
+
+    /**
+     * Get the X scale.
+     * @return Coefficient A.
+     */
+    public double getA(){return a;}
+
+    /**
+     * Get the X shear.
+     * @return Coefficient B.
+     */
+    public double getB(){return b;}
+
+    /**
+     * Get the X translation.
+     * @return Coefficient C.
+     */
+    public double getC(){return c;}
+
+    /**
+     * Get the Y shear.
+     * @return Coefficient D.
+     */
+    public double getD(){return d;}
+
+    /**
+     * Get the Y scale.
+     * @return Coefficient E.
+     */
+    public double getE(){return e;}
+
+    /**
+     * Get the Y translation.
+     * @return Coefficient F.
+     */
+    public double getF(){return f;}
+
+    /**
+     * Checks if the current matrix is the neutral matrix.
+     * @return True if the matrix doesn't move anything.
+     */
+    public boolean isIdentity()
+    {
+        return a == 1 && b == 0 && c == 0 && d == 0 && e == 1 && f == 0;
+    }
+
+    /**
+     * Creates an Affine holding the current matrix.
+     * @return The matrix built so far.
+     */
+    public Affine build()
+    {
+        return new Affine(a, b, c, d, e, f);
+    }
+
+    /**
+     * Converts the current matrix into a 3x3 array.
+     * @return A new 3x3 array holding the matrix.
+     */
+    public double[][] toArray()
+    {
+        return new double[][]{{a, b, c}, {d, e, f}, {0, 0, 1}};
+    }
+
+    @Override
+    public String toString()
+    {
+        return build().toString();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+/**
+ * Blends ARGB colors.
+ * <p>Colors going in and coming out are plain (non-premultiplied) ARGB, as
+ * used by getRGB() and TYPE_INT_ARGB images. Internally, the math is done on
+ * premultiplied integers, so no floating point is involved.
+ * <p>Nearly every sprite pixel is either fully transparent or fully opaque.
+ * Those are handled without any arithmetic: transparent pixels leave the
+ * bottom color alone, and opaque pixels replace it. Only translucent pixels
+ * pay for the full blend.
+ * <p>Compared to the old floating point blend in Mode0, each channel of the
+ * result is within 1 of the old value. Most of the difference comes from
+ * the old blend truncating float round-off, such as an alpha of 128 coming
+ * out as 127.
+ * @author Justis
+ */
+public final class AlphaBlend
+{
+    private static final int SHIFT = 40;
+
+    private AlphaBlend(){}
+
+    /**
+     * Blends one color over another.
+     * <p>This is the standard "over" operation: The top color covers the
+     * bottom color according to its alpha.
+     * @param bottomColor The color underneath.
+     * @param topColor The color being placed on top.
+     * @return The blended color.
+     */
+    public static int blend(int bottomColor, int topColor)
+    {
+        int srcA = topColor >>> 24;
+        if(srcA == 0){return bottomColor;}
+        if(srcA == 0xFF){return topColor;}
+        return blendTranslucent(bottomColor, topColor);
+    }
+
+    /**
+     * Blends one color over another, when the top color is known to be
+     * translucent.
+     * <p>This skips the transparent and opaque checks of blend(int, int). The
+     * alpha of the top color must be between 1 and 254.
+     * @param bottomColor The color underneath.
+     * @param topColor The color being placed on top, which is translucent.
+     * @return The blended color.
+     */
+    public static int blendTranslucent(int bottomColor, int topColor)
+    {
+        int srcA = topColor >>> 24;
+        int dstA = bottomColor >>> 24;
+        if(dstA == 0){return topColor;}
+        /*
+        Everything is scaled by 255 * 255, so the weights stay integers:
+        A = srcA * 255 + dstA * (255 - srcA)
+        C = (srcC * srcA * 255 + dstC * dstA * (255 - srcA)) / A
+        A is at most 65025 and the premultiplied C at most 2^24, so one
+        ceiling reciprocal with 40 fractional bits makes C * recip >> 40
+        exactly floor(C / A), without dividing three times.
+        */
+        int srcW = srcA * 255;
+        int dstW = dstA * (255 - srcA);
+        int a = srcW + dstW;
+        long recip = ((1L << SHIFT) + a - 1) / a;
+        int r = (int)(((long)((topColor >>> 16 & 0xFF) * srcW + (bottomColor >>> 16 & 0xFF) * dstW) * recip) >>> SHIFT);
+        int g = (int)(((long)((topColor >>> 8  & 0xFF) * srcW + (bottomColor >>> 8  & 0xFF) * dstW) * recip) >>> SHIFT);
+        int b = (int)(((long)((topColor        & 0xFF) * srcW + (bottomColor        & 0xFF) * dstW) * recip) >>> SHIFT);
+        return (((a + 127) / 255) << 24) | (r << 16) | (g << 8) | b;
+    }
+}
@@ -83,7 +83,9 @@ public class FramedSprite extends Sprite
         if(frame < 0 || frame >= frames.length){
             throw new ArrayIndexOutOfBoundsException("Invalid frame specified");
         }
+        if(frame == currentFrame){return;}
         currentFrame = frame;
+        fireChanged();
     }
     
     /**
@@ -95,4 +97,16 @@ public class FramedSprite extends Sprite
     {
         return frames[currentFrame];
     }
+    
+    /**
+     * Checks if fireChanged() is called after every change.
+     * setFrame() calls it, so this is true unless a subclass overrides
+     * getX(), getY() or getImage() again.
+     * @return True if listeners can be trusted to hear about every change.
+     */
+    @Override
+    protected boolean firesChanges()
+    {
+        return !overridesGetters(FramedSprite.class);
+    }
 }
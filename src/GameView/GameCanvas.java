@@ -0,0 +1,197 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.Canvas;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+
+/**
+ * Shows the game, drawn straight to the screen.
+ * <p>GameView draws when Swing gets around to repainting it, and Swing is free
+ * to merge several repaint() calls into one, or to put them off. Frames can
+ * then be dropped, or show up late. This class is the alternative: rather than
+ * asking to be painted, the frame is pushed to the screen directly by calling
+ * present(), usually from the GameLoop's Renderer, through a BufferStrategy of
+ * two or three buffers.
+ * <p>Like GameView, the frame comes from a ViewMode, and is stretched to fit
+ * the canvas. present() does nothing until the canvas is on screen.
+ * <p>The time taken to present each frame, from asking the ViewMode for the
+ * frame to the frame being handed to the screen, is recorded.
+ * @author Justis
+ */
+public class GameCanvas extends Canvas
+{
+    private static final long serialVersionUID = 1L;
+
+    private final int buffers;
+    private volatile ViewMode mode;
+    private volatile BufferStrategy strategy = null;
+
+    //Timing statistics. Written while presenting only.
+    private volatile long presents = 0;
+    private volatile long totalLatency = 0;
+    private volatile long maxLatency = 0;
+    private volatile long lastLatency = 0;
+
+    /**
+     * Creates a GameCanvas with two buffers.
+     * @param startMode The ViewMode to show, or null for a black screen.
+     */
+    public GameCanvas(ViewMode startMode)
+    {
+        this(startMode, 2);
+    }
+
+    /**
+     * Creates a GameCanvas.
+     * <p>Two buffers are enough to never show a half-drawn frame. Three let
+     * the next frame be drawn while the last is still waiting to be shown,
+     * at the cost of a frame of delay.
+     * @param startMode The ViewMode to show, or null for a black screen.
+     * @param buffers The number of buffers, two or three.
+     * @throws IllegalArgumentException The number of buffers isn't 2 or 3.
+     */
+    public GameCanvas(ViewMode startMode, int buffers)
+    {
+        if(buffers < 2 || buffers > 3){
+            throw new IllegalArgumentException("Buffers must be 2 or 3.");
+        }
+        this.buffers = buffers;
+        changeMode(startMode);
+        //Frames are pushed by present(); the system never needs to repaint.
+        setIgnoreRepaint(true);
+    }
+
+    /**
+     * Changes this GameCanvas to use a new ViewMode.
+     * If null is provided, a 240x160 pixel black screen is shown.
+     * @param newMode The ViewMode this GameCanvas should use now.
+     */
+    public void changeMode(ViewMode newMode)
+    {
+        mode = (newMode == null) ?
+                GameView.NullViewMode.getInstance() :
+                newMode;
+    }
+
+    /**
+     * Get the number of buffers used.
+     * @return 2 or 3.
+     */
+    public int getBufferCount(){return buffers;}
+
+    /**
+     * Draws the current frame, and shows it.
+     * <p>The frame is fetched from the ViewMode, stretched onto the back
+     * buffer, and the buffers are flipped. If the buffer's contents are lost
+     * along the way, such as when the window is moved to another screen, it
+     * is drawn again. This should be called from one thread only, usually
+     * the GameLoop's.
+     * @return True if the frame was shown, false if the canvas isn't on
+     * screen yet.
+     */
+    public boolean present()
+    {
+        if(!isDisplayable()){return false;}
+        long start = System.nanoTime();
+        BufferStrategy strategy = this.strategy;
+        try
+        {
+            if(strategy == null)
+            {
+                createBufferStrategy(buffers);
+                strategy = getBufferStrategy();
+                this.strategy = strategy;
+            }
+            draw(strategy, mode.getFrame());
+        }
+        catch(IllegalStateException ex)
+        {
+            //Taken off screen while presenting.
+            this.strategy = null;
+            return false;
+        }
+        //Otherwise, some systems hold on to the frame for a while.
+        Toolkit.getDefaultToolkit().sync();
+        long latency = System.nanoTime() - start;
+        lastLatency = latency;
+        totalLatency += latency;
+        if(latency > maxLatency){maxLatency = latency;}
+        presents++;
+        return true;
+    }
+
+    private void draw(BufferStrategy strategy, BufferedImage frame)
+    {
+        do
+        {
+            do
+            {
+                Graphics g = strategy.getDrawGraphics();
+                try{
+                    g.drawImage(frame, 0, 0, getWidth(), getHeight(), null);
+                }
+                finally{
+                    g.dispose();
+                }
+            }
+            while(strategy.contentsRestored());
+            strategy.show();
+        }
+        while(strategy.contentsLost());
+    }
+
+    /**
+     * Get the number of frames shown.
+     * @return The number of frames presented.
+     */
+    public long getPresentCount(){return presents;}
+
+    /**
+     * Get how long the last frame took to present.
+     * @return The latency of the last frame, in nanoseconds.
+     */
+    public long getLastLatency(){return lastLatency;}
+
+    /**
+     * Get how long frames take to present, on average.
+     * @return The average latency, in nanoseconds.
+     */
+    public long getAverageLatency()
+    {
+        long count = presents;
+        return (count == 0) ? 0 : totalLatency / count;
+    }
+
+    /**
+     * Get how long the slowest frame took to present.
+     * @return The largest latency, in nanoseconds.
+     */
+    public long getMaxLatency(){return maxLatency;}
+
+    /**
+     * Sets the timing statistics back to zero.
+     * This should be called from the thread that presents, or the counts
+     * may be slightly off.
+     */
+    public void resetStatistics()
+    {
+        presents = totalLatency = maxLatency = lastLatency = 0;
+    }
+
+    /*
+    The buffers belong to the on-screen peer, so they go away with it.
+    */
+    @Override
+    public void removeNotify()
+    {
+        strategy = null;
+        super.removeNotify();
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches images with their transparent color removed.
+ * <p>PaintProperties allow any color to be marked as transparent. Rather than
+ * comparing every pixel against that color every time it is drawn, this
+ * class makes a copy of the image, once, where every pixel of that color is
+ * replaced with a fully transparent pixel. The copy is a TYPE_INT_ARGB image,
+ * so it can be drawn straight from its pixel array.
+ * <p>Copies are keyed by the identity of the original image, and the
+ * transparent color. Changing either one simply leads to a different copy,
+ * so there's nothing stale to worry about. The only exception is drawing on
+ * the original image directly, which can't be detected; invalidate() must
+ * be called when that happens.
+ * <p>Each copy can also be split into runs of transparent, opaque and
+ * translucent pixels, which is done the first time the runs are asked for.
+ * <p>The cache holds on to copies up to a memory limit, and throws away the
+ * least recently used copies when the limit is passed.
+ * <p>If the images in use every frame add up to more than the limit, the
+ * cache can never hold them all at once, and each frame would throw away
+ * copies that are needed again right after. To avoid that, images whose copy
+ * is larger than a quarter of the limit, such as full-screen backgrounds,
+ * aren't kept in the cache at all. Their copy is made for whoever asked, and
+ * Mode0 holds on to it for as long as the image is shown, so it's still only
+ * made once. The limit can be changed with setCapacity(); it only needs to
+ * fit the smaller images.
+ * @author Justis
+ */
+public class ColorKeyCache
+{
+    private static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+
+    private static ColorKeyCache instance = null;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //Reused for every lookup, so looking up a copy allocates nothing.
+    private final Key probe = new Key(null, 0);
+    private long capacity;
+    private long size = 0;
+    private int version = 0;
+
+    /*
+    Images are compared by identity, since BufferedImage doesn't define
+    equals() and two different images could hold the same pixels. Only the
+    probe is ever changed; keys in the map never are.
+    */
+    private static class Key
+    {
+        private BufferedImage image;
+        private int transparentRGB;
+
+        private Key(BufferedImage image, int transparentRGB)
+        {
+            this.image = image;
+            this.transparentRGB = transparentRGB;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(o instanceof Key)
+            {
+                Key other = (Key)o;
+                return image == other.image && transparentRGB == other.transparentRGB;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return System.identityHashCode(image) * 31 + transparentRGB;
+        }
+    }
+
+    /*
+    A copy of an image, along with its runs once they're asked for. Entries
+    too large to keep are handed out without being stored.
+    */
+    static final class Entry
+    {
+        private final BufferedImage image;
+        private final IntRaster raster;
+        private RowSpans spans;
+        private boolean encoded = false;
+        private boolean stored = false;
+
+        private Entry(BufferedImage image)
+        {
+            this.image = image;
+            this.raster = IntRaster.of(image);
+        }
+
+        IntRaster getRaster(){return raster;}
+
+        private long bytes()
+        {
+            long bytes = 4L * raster.getWidth() * raster.getHeight();
+            return spans == null ? bytes : bytes + spans.bytes();
+        }
+    }
+
+    /**
+     * Creates a ColorKeyCache.
+     * @param capacity The maximum number of bytes of images to keep.
+     */
+    public ColorKeyCache(long capacity)
+    {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Get the shared ColorKeyCache.
+     * <p>This is the cache used by Mode0 and RenderOp. It holds up to 32 MB of
+     * images.
+     * @return The shared ColorKeyCache.
+     */
+    public static synchronized ColorKeyCache getInstance()
+    {
+        if(instance == null)
+        {
+            instance = new ColorKeyCache(DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    /**
+     * Set the memory limit of this cache.
+     * If the cache is currently over the new limit, old copies are thrown
+     * away immediately.
+     * @param newCapacity The maximum number of bytes of images to keep.
+     * @throws IllegalArgumentException The capacity is negative.
+     */
+    public synchronized void setCapacity(long newCapacity)
+    {
+        if(newCapacity < 0){
+            throw new IllegalArgumentException("Capacity can't be negative.");
+        }
+        capacity = newCapacity;
+        trim();
+    }
+
+    /**
+     * Get the number of bytes of images currently held.
+     * @return The size of the cache, in bytes.
+     */
+    public synchronized long getSize(){return size;}
+
+    /**
+     * Get the size of the largest copy this cache keeps.
+     * Copies larger than this are made every time they're asked for.
+     * @return A quarter of the capacity, in bytes.
+     */
+    public synchronized long getMaxEntrySize(){return capacity / 4;}
+
+    /*
+    Changes whenever copies are thrown away by invalidate() or clear(), so
+    whoever held on to a copy can tell it may be out of date.
+    */
+    synchronized int getVersion(){return version;}
+
+    /**
+     * Get the copy of an image with its transparent color removed.
+     * <p>The image returned is shared, and must not be drawn on. Images larger
+     * than getMaxEntrySize() are copied again on every call, so hold on to
+     * the result if it's needed more than once.
+     * @param image The original image.
+     * @param transparentRGB The color to make transparent.
+     * @return The copy, as a TYPE_INT_ARGB image.
+     * @throws NullPointerException The image supplied is null.
+     */
+    public BufferedImage getImage(BufferedImage image, int transparentRGB)
+    {
+        return getEntry(image, transparentRGB).image;
+    }
+
+    /**
+     * Get the pixels of the copy of an image with its transparent color removed.
+     * <p>The pixels returned are shared, and must not be modified. Like
+     * getImage(), images larger than getMaxEntrySize() are copied on every
+     * call.
+     * @param image The original image.
+     * @param transparentRGB The color to make transparent.
+     * @return The IntRaster of the copy.
+     * @throws NullPointerException The image supplied is null.
+     */
+    public IntRaster getRaster(BufferedImage image, int transparentRGB)
+    {
+        return getEntry(image, transparentRGB).raster;
+    }
+
+    /*
+    Gets the runs of a copy, splitting it up the first time. Returns null if
+    the image doesn't split into long enough runs.
+    */
+    synchronized RowSpans getSpans(Entry entry)
+    {
+        if(!entry.encoded)
+        {
+            entry.spans = RowSpans.encode(entry.raster);
+            entry.encoded = true;
+            if(entry.spans != null && entry.stored)
+            {
+                size += entry.spans.bytes();
+                trim();
+            }
+        }
+        return entry.spans;
+    }
+    
+    /**
+     * Throws away all copies of an image.
+     * This must be called after drawing on an image directly, or the old
+     * copies would continue to be used.
+     * @param image The image that was changed.
+     */
+    public synchronized void invalidate(BufferedImage image)
+    {
+        Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet().iterator();
+        while(iter.hasNext())
+        {
+            Map.Entry<Key, Entry> entry = iter.next();
+            if(entry.getKey().image == image)
+            {
+                size -= entry.getValue().bytes();
+                entry.getValue().stored = false;
+                iter.remove();
+            }
+        }
+        version++;
+    }
+
+    /**
+     * Throws away all copies.
+     */
+    public synchronized void clear()
+    {
+        for(Entry entry : entries.values()){
+            entry.stored = false;
+        }
+        entries.clear();
+        size = 0;
+        version++;
+    }
+
+    /*
+    Gets the copy of an image, making it if needed. Copies larger than
+    getMaxEntrySize() are made fresh, and not kept.
+    */
+    synchronized Entry getEntry(BufferedImage image, int transparentRGB)
+    {
+        if(image == null){
+            throw new NullPointerException("Image can't be null.");
+        }
+        probe.image = image;
+        probe.transparentRGB = transparentRGB;
+        Entry entry = entries.get(probe);
+        probe.image = null;
+        if(entry == null)
+        {
+            entry = new Entry(removeColor(image, transparentRGB));
+            if(entry.bytes() <= capacity / 4)
+            {
+                entry.stored = true;
+                entries.put(new Key(image, transparentRGB), entry);
+                size += entry.bytes();
+                trim();
+            }
+        }
+        return entry;
+    }
+
+    /*
+    Throws away the least recently used copies until the cache fits. The
+    copy just added is kept even if it alone is too big, since it's about
+    to be used.
+    */
+    private void trim()
+    {
+        Iterator<Entry> iter = entries.values().iterator();
+        while(size > capacity && entries.size() > 1)
+        {
+            Entry entry = iter.next();
+            size -= entry.bytes();
+            entry.stored = false;
+            iter.remove();
+        }
+    }
+
+    private static BufferedImage removeColor(BufferedImage image, int transparentRGB)
+    {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        BufferedImage copy = IntRaster.createImage(w, h);
+        IntRaster raster = IntRaster.of(copy);
+        int[] pixels = raster.getData();
+        image.getRGB(0, 0, w, h, pixels, raster.getOffset(), raster.getStride());
+        for(int index = 0; index < pixels.length; index++)
+        {
+            if(pixels[index] == transparentRGB){
+                pixels[index] = 0;
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.AlphaBlend;
+import GameView.IntRaster;
+
+/**
+ * Pastes images onto a frame.
+ * <p>Everything here works directly on the int[] behind the frame and the
+ * sprite, rather than going through getRGB() and setRGB(). Each draw is
+ * limited to a clip rectangle of the frame, given as [x0, x1) by [y0, y1).
+ * For unwrapped images, the clip is intersected with the image's rectangle
+ * once, so the inner loops don't need to bounds-check each pixel.
+ * <p>Images drawn here have already had their transparent color removed by
+ * the ColorKeyCache, so only real alpha matters. Pixels with zero alpha are
+ * skipped outright, opaque pixels are stored as-is, and only translucent
+ * pixels go through AlphaBlend.
+ * @author Justis
+ */
+final class Compositor
+{
+    private Compositor(){}
+
+    /**
+     * Draws an image onto the frame.
+     * @param dst The frame being drawn on.
+     * @param x0 The left edge of the clip, inclusive.
+     * @param y0 The top edge of the clip, inclusive.
+     * @param x1 The right edge of the clip, exclusive.
+     * @param y1 The bottom edge of the clip, exclusive.
+     * @param src The image to draw.
+     * @param spans The runs of the image, or null to check each pixel.
+     * @param drawX The X position of the image on the frame.
+     * @param drawY The Y position of the image on the frame.
+     * @param wrapped True if the image wraps around the edges of the frame.
+     */
+    static void draw(IntRaster dst, int x0, int y0, int x1, int y1,
+            IntRaster src, RowSpans spans, int drawX, int drawY, boolean wrapped)
+    {
+        if(wrapped)
+        {
+            drawWrapped(dst, x0, y0, x1, y1, src, spans, drawX, drawY);
+            return;
+        }
+        int left = Math.max(x0, drawX);
+        int top = Math.max(y0, drawY);
+        int right = Math.min(x1, drawX + src.getWidth());
+        int bottom = Math.min(y1, drawY + src.getHeight());
+        if(left >= right || top >= bottom){return;}
+        if(spans != null)
+        {
+            drawSpans(dst, left, top, right, bottom, src, spans, drawX, drawY);
+            return;
+        }
+
+        final int[] dstData = dst.getData();
+        final int[] srcData = src.getData();
+        final int width = right - left;
+        for(int yy = top; yy < bottom; yy++)
+        {
+            int d = dst.indexOf(left, yy);
+            int s = src.indexOf(left - drawX, yy - drawY);
+            for(int xx = 0; xx < width; xx++, d++, s++)
+            {
+                int paintRGB = srcData[s];
+                int alpha = paintRGB >>> 24;
+                if(alpha == 0xFF){
+                    dstData[d] = paintRGB;
+                }
+                else if(alpha != 0){
+                    dstData[d] = AlphaBlend.blendTranslucent(dstData[d], paintRGB);
+                }
+            }
+        }
+    }
+
+    /*
+    Draws an image through its runs, already clipped to [left, right) by
+    [top, bottom). Transparent runs are never visited, opaque runs are
+    copied, and translucent runs are blended.
+    */
+    private static void drawSpans(IntRaster dst, int left, int top, int right, int bottom,
+            IntRaster src, RowSpans spans, int drawX, int drawY)
+    {
+        final int[] dstData = dst.getData();
+        final int[] srcData = src.getData();
+        final int[] runs = spans.getRuns();
+        final int clipStart = left - drawX;
+        final int clipEnd = right - drawX;
+        for(int yy = top; yy < bottom; yy++)
+        {
+            int row = yy - drawY;
+            int srcRow = src.indexOf(0, row);
+            int dstRow = dst.indexOf(drawX, yy);
+            int end = spans.getRowStart(row + 1);
+            for(int run = spans.getRowStart(row); run < end; run += 2)
+            {
+                int start = runs[run] & ~RowSpans.TRANSLUCENT;
+                int stop = runs[run + 1];
+                if(stop <= clipStart){continue;}
+                if(start >= clipEnd){break;}
+                start = Math.max(start, clipStart);
+                stop = Math.min(stop, clipEnd);
+                if((runs[run] & RowSpans.TRANSLUCENT) == 0)
+                {
+                    System.arraycopy(srcData, srcRow + start, dstData, dstRow + start, stop - start);
+                }
+                else
+                {
+                    for(int xx = start; xx < stop; xx++)
+                    {
+                        int d = dstRow + xx;
+                        dstData[d] = AlphaBlend.blendTranslucent(dstData[d], srcData[srcRow + xx]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws an image through an affine matrix onto the frame.
+     * <p>Rather than transforming the image first, each pixel of the box is
+     * reversed through the matrix to find the pixel of the image to read,
+     * the same way ImageOp does. Pixels that land outside the image are
+     * skipped. The reversed matrix maps a point in the box, relative to the
+     * box's top-left corner, to a point in the image.
+     * @param dst The frame being drawn on.
+     * @param x0 The left edge of the clip, inclusive.
+     * @param y0 The top edge of the clip, inclusive.
+     * @param x1 The right edge of the clip, exclusive.
+     * @param y1 The bottom edge of the clip, exclusive.
+     * @param src The image to draw.
+     * @param boxX The X position of the box on the frame.
+     * @param boxY The Y position of the box on the frame.
+     * @param boxWidth The width of the box.
+     * @param boxHeight The height of the box.
+     * @param a The X scale of the reversed matrix.
+     * @param b The X shear of the reversed matrix.
+     * @param c The X translation of the reversed matrix.
+     * @param d The Y shear of the reversed matrix.
+     * @param e The Y scale of the reversed matrix.
+     * @param f The Y translation of the reversed matrix.
+     * @param wrapped True if the box wraps around the edges of the frame.
+     */
+    static void drawAffine(IntRaster dst, int x0, int y0, int x1, int y1, IntRaster src,
+            int boxX, int boxY, int boxWidth, int boxHeight,
+            double a, double b, double c, double d, double e, double f, boolean wrapped)
+    {
+        if(wrapped)
+        {
+            //The same four pieces as drawWrapped(), using the box as the image.
+            final int frameWidth = dst.getWidth();
+            final int frameHeight = dst.getHeight();
+            final int startX = wrapStart(boxX, boxWidth, frameWidth);
+            final int startY = wrapStart(boxY, boxHeight, frameHeight);
+            final int offsetX = wrapOffset(boxX, boxWidth, frameWidth);
+            final int offsetY = wrapOffset(boxY, boxHeight, frameHeight);
+            for(int pieceY = 0; pieceY < 2; pieceY++)
+            {
+                int top = Math.max(y0, pieceY == 0 ? startY : 0);
+                int bottom = Math.min(y1, pieceY == 0 ? frameHeight : startY);
+                if(top >= bottom){continue;}
+                for(int pieceX = 0; pieceX < 2; pieceX++)
+                {
+                    int left = Math.max(x0, pieceX == 0 ? startX : 0);
+                    int right = Math.min(x1, pieceX == 0 ? frameWidth : startX);
+                    if(left >= right){continue;}
+                    drawAffine(dst, left, top, right, bottom, src,
+                            pieceX == 0 ? offsetX : offsetX - frameWidth,
+                            pieceY == 0 ? offsetY : offsetY - frameHeight,
+                            boxWidth, boxHeight, a, b, c, d, e, f, false);
+                }
+            }
+            return;
+        }
+        int left = Math.max(x0, boxX);
+        int top = Math.max(y0, boxY);
+        int right = Math.min(x1, boxX + boxWidth);
+        int bottom = Math.min(y1, boxY + boxHeight);
+        if(left >= right || top >= bottom){return;}
+
+        final int[] dstData = dst.getData();
+        final int[] srcData = src.getData();
+        final int width = right - left;
+        final int srcWidth = src.getWidth();
+        final int srcHeight = src.getHeight();
+        for(int yy = top; yy < bottom; yy++)
+        {
+            //Pixels are read at their centers.
+            double u = left - boxX + 0.5;
+            double v = yy - boxY + 0.5;
+            double readX = (a * u) + (b * v) + c;
+            double readY = (d * u) + (e * v) + f;
+            int dd = dst.indexOf(left, yy);
+            for(int xx = 0; xx < width; xx++, dd++, readX += a, readY += d)
+            {
+                if(!(readX >= 0 && readY >= 0 && readX < srcWidth && readY < srcHeight)){continue;}
+                int paintRGB = srcData[src.indexOf((int)readX, (int)readY)];
+                int alpha = paintRGB >>> 24;
+                if(alpha == 0xFF){
+                    dstData[dd] = paintRGB;
+                }
+                else if(alpha != 0){
+                    dstData[dd] = AlphaBlend.blendTranslucent(dstData[dd], paintRGB);
+                }
+            }
+        }
+    }
+
+    /*
+    A wrapped image is split into at most four pieces, one for each corner
+    it wraps around, and each piece is drawn like an unwrapped image. Along
+    each axis, the piece starting at wrapStart() is drawn at wrapOffset(),
+    and the piece before it is drawn one frame-length further back.
+    */
+    private static void drawWrapped(IntRaster dst, int x0, int y0, int x1, int y1,
+            IntRaster src, RowSpans spans, int drawX, int drawY)
+    {
+        final int frameWidth = dst.getWidth();
+        final int frameHeight = dst.getHeight();
+        final int startX = wrapStart(drawX, src.getWidth(), frameWidth);
+        final int startY = wrapStart(drawY, src.getHeight(), frameHeight);
+        final int offsetX = wrapOffset(drawX, src.getWidth(), frameWidth);
+        final int offsetY = wrapOffset(drawY, src.getHeight(), frameHeight);
+        for(int pieceY = 0; pieceY < 2; pieceY++)
+        {
+            int top = Math.max(y0, pieceY == 0 ? startY : 0);
+            int bottom = Math.min(y1, pieceY == 0 ? frameHeight : startY);
+            if(top >= bottom){continue;}
+            for(int pieceX = 0; pieceX < 2; pieceX++)
+            {
+                int left = Math.max(x0, pieceX == 0 ? startX : 0);
+                int right = Math.min(x1, pieceX == 0 ? frameWidth : startX);
+                if(left >= right){continue;}
+                draw(dst, left, top, right, bottom, src, spans,
+                        pieceX == 0 ? offsetX : offsetX - frameWidth,
+                        pieceY == 0 ? offsetY : offsetY - frameHeight,
+                        false);
+            }
+        }
+    }
+
+    /**
+     * Finds where a wrapped image starts along one axis.
+     * <p>An image no larger than the frame is shown whole, split where it
+     * crosses the edge. An image larger than the frame overlaps itself; only
+     * its last frame-length of pixels is shown, since those are the ones
+     * painted last. The frame coordinate returned is where the first shown
+     * pixel lands; everything from there to the edge of the frame comes
+     * first, and the rest wraps around to the start of the frame.
+     * @param draw The position of the image.
+     * @param size The size of the image.
+     * @param frame The size of the frame.
+     * @return The frame coordinate where the first shown pixel lands.
+     */
+    static int wrapStart(int draw, int size, int frame)
+    {
+        return Math.floorMod(draw + Math.max(0, size - frame), frame);
+    }
+
+    /**
+     * Finds where to draw a wrapped image along one axis, as if it were
+     * unwrapped, for the part from wrapStart() to the edge of the frame.
+     * The part that wraps around is drawn at this value minus the frame size.
+     * @param draw The position of the image.
+     * @param size The size of the image.
+     * @param frame The size of the frame.
+     * @return The position to draw the image at.
+     */
+    static int wrapOffset(int draw, int size, int frame)
+    {
+        return wrapStart(draw, size, frame) - Math.max(0, size - frame);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+/**
+ * The parts of a frame that need to be redrawn.
+ * <p>This is kept as a short list of rectangles, all within the frame.
+ * Rectangles that overlap are merged as they are added, so no pixel is
+ * redrawn twice. If the list grows too long, the two rectangles whose union
+ * wastes the least area are merged, which keeps the bookkeeping cheap even
+ * when many small sprites move.
+ * <p>Damage is added many times a frame, so rather than Rectangles, the
+ * edges are kept in one int array that's allocated up front. Rectangle i
+ * spans from (getLeft(i), getTop(i)), inclusive, to (getRight(i),
+ * getBottom(i)), exclusive.
+ * @author Justis
+ */
+class DamageRegion
+{
+    private static final int MAX_RECTANGLES = 8;
+
+    private final int width;
+    private final int height;
+    //Left, top, right and bottom of each rectangle, with room for one extra.
+    private final int[] edges = new int[4 * (MAX_RECTANGLES + 1)];
+    private int count = 0;
+
+    /**
+     * Creates an empty DamageRegion.
+     * @param width The width of the frame.
+     * @param height The height of the frame.
+     */
+    DamageRegion(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Get the width of the frame.
+     * @return The width of the frame.
+     */
+    int getWidth(){return width;}
+
+    /**
+     * Get the height of the frame.
+     * @return The height of the frame.
+     */
+    int getHeight(){return height;}
+
+    /**
+     * Marks the whole frame as damaged.
+     */
+    void addAll()
+    {
+        count = 0;
+        append(0, 0, width, height);
+    }
+
+    /**
+     * Marks a rectangle as damaged.
+     * The rectangle is clipped to the frame first; anything off-screen is
+     * ignored.
+     * @param x The left edge of the rectangle.
+     * @param y The top edge of the rectangle.
+     * @param w The width of the rectangle.
+     * @param h The height of the rectangle.
+     */
+    void add(int x, int y, int w, int h)
+    {
+        int left = Math.max(x, 0);
+        int top = Math.max(y, 0);
+        int right = Math.min(x + w, width);
+        int bottom = Math.min(y + h, height);
+        if(left >= right || top >= bottom){return;}
+        boolean merged = true;
+        while(merged)
+        {
+            merged = false;
+            for(int index = 0; index < count; index++)
+            {
+                int e = index * 4;
+                int otherLeft = edges[e], otherTop = edges[e + 1];
+                int otherRight = edges[e + 2], otherBottom = edges[e + 3];
+                if(otherLeft <= left && otherTop <= top
+                        && right <= otherRight && bottom <= otherBottom){return;}
+                if(otherLeft < right && left < otherRight
+                        && otherTop < bottom && top < otherBottom)
+                {
+                    left = Math.min(left, otherLeft);
+                    top = Math.min(top, otherTop);
+                    right = Math.max(right, otherRight);
+                    bottom = Math.max(bottom, otherBottom);
+                    remove(index);
+                    merged = true;
+                    break;
+                }
+            }
+        }
+        append(left, top, right, bottom);
+        if(count > MAX_RECTANGLES)
+        {
+            mergeCheapest();
+        }
+    }
+
+    /**
+     * Marks everything damaged in another region as damaged here too.
+     * @param other The other DamageRegion.
+     */
+    void addAll(DamageRegion other)
+    {
+        for(int index = 0; index < other.count; index++)
+        {
+            int e = index * 4;
+            add(other.edges[e], other.edges[e + 1],
+                    other.edges[e + 2] - other.edges[e], other.edges[e + 3] - other.edges[e + 1]);
+        }
+    }
+
+    /**
+     * Checks if nothing is damaged.
+     * @return True if there is nothing to redraw.
+     */
+    boolean isEmpty(){return count == 0;}
+
+    /**
+     * Get the number of damaged rectangles.
+     * The rectangles don't overlap.
+     * @return The number of rectangles.
+     */
+    int getCount(){return count;}
+
+    /**
+     * Get the left edge of a damaged rectangle.
+     * @param index The rectangle, less than getCount().
+     * @return The leftmost damaged column, inclusive.
+     */
+    int getLeft(int index){return edges[index * 4];}
+
+    /**
+     * Get the top edge of a damaged rectangle.
+     * @param index The rectangle, less than getCount().
+     * @return The topmost damaged row, inclusive.
+     */
+    int getTop(int index){return edges[index * 4 + 1];}
+
+    /**
+     * Get the right edge of a damaged rectangle.
+     * @param index The rectangle, less than getCount().
+     * @return The column just right of the damage, exclusive.
+     */
+    int getRight(int index){return edges[index * 4 + 2];}
+
+    /**
+     * Get the bottom edge of a damaged rectangle.
+     * @param index The rectangle, less than getCount().
+     * @return The row just below the damage, exclusive.
+     */
+    int getBottom(int index){return edges[index * 4 + 3];}
+
+    /**
+     * Get the total number of damaged pixels.
+     * @return The area of all the rectangles.
+     */
+    int getArea()
+    {
+        int total = 0;
+        for(int e = 0; e < count * 4; e += 4)
+        {
+            total += (edges[e + 2] - edges[e]) * (edges[e + 3] - edges[e + 1]);
+        }
+        return total;
+    }
+
+    /**
+     * Forgets all damage.
+     */
+    void clear(){count = 0;}
+
+    private void append(int left, int top, int right, int bottom)
+    {
+        int e = count * 4;
+        edges[e] = left;
+        edges[e + 1] = top;
+        edges[e + 2] = right;
+        edges[e + 3] = bottom;
+        count++;
+    }
+
+    /*
+    Removes a rectangle, keeping the rest in order.
+    */
+    private void remove(int index)
+    {
+        System.arraycopy(edges, (index + 1) * 4, edges, index * 4, (count - index - 1) * 4);
+        count--;
+    }
+
+    private long area(int index)
+    {
+        int e = index * 4;
+        return (long)(edges[e + 2] - edges[e]) * (edges[e + 3] - edges[e + 1]);
+    }
+
+    /*
+    Finds the pair of rectangles that grow the least when merged, and merges
+    them. The result is added back through add(), in case it now overlaps
+    something else.
+    */
+    private void mergeCheapest()
+    {
+        int bestA = 0, bestB = 1;
+        long bestCost = Long.MAX_VALUE;
+        for(int a = 0; a < count; a++)
+            for(int b = a + 1; b < count; b++)
+            {
+                int ea = a * 4, eb = b * 4;
+                long unionWidth = Math.max(edges[ea + 2], edges[eb + 2]) - Math.min(edges[ea], edges[eb]);
+                long unionHeight = Math.max(edges[ea + 3], edges[eb + 3]) - Math.min(edges[ea + 1], edges[eb + 1]);
+                long cost = unionWidth * unionHeight - area(a) - area(b);
+                if(cost < bestCost)
+                {
+                    bestCost = cost;
+                    bestA = a;
+                    bestB = b;
+                }
+            }
+        int ea = bestA * 4, eb = bestB * 4;
+        int left = Math.min(edges[ea], edges[eb]);
+        int top = Math.min(edges[ea + 1], edges[eb + 1]);
+        int right = Math.max(edges[ea + 2], edges[eb + 2]);
+        int bottom = Math.max(edges[ea + 3], edges[eb + 3]);
+        remove(bestB);
+        remove(bestA);
+        add(left, top, right - left, bottom - top);
+    }
+}
@@ -6,10 +6,16 @@
 package GameView.GameMode;
 
 import GameModel.GameModel;
+import GameView.IntRaster;
 import GameView.Paintable;
 import GameView.ViewMode;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Mode 0 View Mode.
@@ -19,6 +25,18 @@ import java.awt.image.BufferedImage;
  * highest priority; i.e., Higher priorities are placed above lower priorities.
  * In the case of identical priorities, the one more recently added has
  * a lower priority than older ones.
+ * <p>Large backgrounds can be made of tiles, like the GBA's own Mode 0, by
+ * adding a TileLayer. Only the tiles on screen are drawn.
+ * <p>Frames can optionally be drawn on several threads at once, through
+ * {@code setRenderBands(int)}. The frame is then split into horizontal bands,
+ * and each band is drawn separately on a ForkJoinPool. The result is exactly
+ * the same as drawing on one thread.
+ * <p>Paintables that are entirely off-screen are never drawn. With thousands
+ * of Paintables, most of them off-screen, {@code setSpatialIndex(int)} can be
+ * used to find the on-screen ones without checking each one.
+ * <p>Paintables that can report their own changes, such as Sprites and
+ * TileLayers, are only looked at when they change, so thousands of still
+ * Paintables cost nothing per frame. Other Paintables are checked every frame.
  * @author Justis
  */
 public class Mode0 implements ViewMode
@@ -26,8 +44,30 @@ public class Mode0 implements ViewMode
     private static final int WIDTH = 240;
     private static final int HEIGHT = 160;
     
+    //Below this many damaged pixels, splitting into bands costs more than it saves.
+    private static final int MIN_PARALLEL_PIXELS = WIDTH * 32;
+    
     protected final SortedList<PaintProperties> sprites;
     protected GameModel game;
+    private final TripleBuffer frames;
+    private final DamageRegion damage;
+    private final List<PaintProperties> drawList = new ArrayList<>();
+    private final List<PaintProperties> candidates = new ArrayList<>();
+    private SpatialGrid grid = null;
+    private boolean gridRebuild = false;
+    //Changed PaintProperties, and the ones that can't report their changes.
+    private final List<PaintProperties> dirty = new ArrayList<>();
+    private final List<PaintProperties> pending = new ArrayList<>();
+    private final List<PaintProperties> polled = new ArrayList<>();
+    private boolean orderStale = true;
+    //Set by invalidate(), from any thread, and acted on by the next frame.
+    private volatile boolean invalidated = false;
+    
+    private static final Comparator<PaintProperties> LIST_ORDER = 
+            (a, b) -> Integer.compare(a.order, b.order);
+    private ForkJoinPool renderPool = ForkJoinPool.commonPool();
+    private int bands = 1;
+    private boolean useSpans = true;
     
     /**
      * Creates a Mode0 instance.
@@ -35,6 +75,8 @@ public class Mode0 implements ViewMode
     public Mode0()
     {
         sprites = new SortedList<>();
+        frames = new TripleBuffer(WIDTH, HEIGHT);
+        damage = new DamageRegion(WIDTH, HEIGHT);
     }
     
     /**
@@ -50,6 +92,81 @@ public class Mode0 implements ViewMode
         this.game = game;
     }
     
+    /**
+     * Set the number of bands each frame is split into.
+     * <p>Each band is drawn on its own thread, in the render pool. A value of
+     * one, the default, draws everything on the calling thread. Values are
+     * limited to the height of the frame. Small redraws are always done on
+     * the calling thread, since splitting them isn't worth it.
+     * <p>When drawing in bands, Paintables are read from the calling thread
+     * only; the worker threads never touch them.
+     * @param newBands The number of bands, at least one.
+     * @throws IllegalArgumentException Less than one band specified.
+     */
+    public void setRenderBands(int newBands)
+    {
+        if(newBands < 1){
+            throw new IllegalArgumentException("At least one band is required.");
+        }
+        bands = Math.min(newBands, HEIGHT);
+    }
+    
+    /**
+     * Set the pool that bands are drawn on.
+     * By default, this is the common ForkJoinPool.
+     * @param pool The pool to draw bands on.
+     * @throws NullPointerException The pool supplied is null.
+     */
+    public void setRenderPool(ForkJoinPool pool)
+    {
+        if(pool == null){
+            throw new NullPointerException("Null pool specified.");
+        }
+        renderPool = pool;
+    }
+    
+    /**
+     * Set whether images are drawn through their runs.
+     * <p>When enabled, the default, each image is split into runs of
+     * transparent, opaque and translucent pixels the first time it is drawn.
+     * Transparent runs are then skipped, opaque runs are copied in one go, and
+     * only translucent runs are blended. Images whose runs are too short to
+     * help, such as noisy or dithered ones, are drawn pixel by pixel anyway.
+     * @param enable True to draw through runs, false to check every pixel.
+     */
+    public void setSpanEncoding(boolean enable)
+    {
+        useSpans = enable;
+    }
+    
+    /**
+     * Set the cell size of the spatial index.
+     * <p>With a spatial index, Paintables are sorted into a grid of square
+     * cells by where they are, and only the cells on screen are looked at when
+     * drawing. The grid is kept up to date as Paintables move. This helps
+     * when there are many Paintables, and few of them are on screen at once.
+     * Since moving between cells has a cost, Paintables that move every
+     * frame benefit less.
+     * <p>A cell size of zero, the default, turns the index off, in which case
+     * every Paintable's bounds are checked against the screen instead.
+     * @param cellSize The size of each cell, in pixels, or zero for no index.
+     * @throws IllegalArgumentException The cell size is negative.
+     */
+    public void setSpatialIndex(int cellSize)
+    {
+        if(cellSize < 0){
+            throw new IllegalArgumentException("Cell size can't be negative.");
+        }
+        for(PaintProperties sprite : sprites)
+        {
+            sprite.gridX0 = sprite.gridY0 = sprite.gridX1 = sprite.gridY1 = 0;
+            sprite.gridEverywhere = false;
+            sprite.gridIndex = 0;
+        }
+        grid = (cellSize == 0) ? null : new SpatialGrid(cellSize);
+        gridRebuild = true;
+    }
+    
     /**
      * Add a Paintable.
      * @param paint The Paintable representing the sprite.
@@ -64,6 +181,8 @@ public class Mode0 implements ViewMode
         }
         PaintProperties spriteProperties = new PaintProperties(paint, priority);
         sprites.add(spriteProperties);
+        if(!spriteProperties.attach(dirty)){polled.add(spriteProperties);}
+        orderStale = true;
         return spriteProperties;
     }
     
@@ -80,88 +199,250 @@ public class Mode0 implements ViewMode
         {
             if(sprite.getPaintable().equals(paint))
             {
+                sprite.collectRemovalDamage(damage);
+                if(grid != null){grid.remove(sprite);}
+                sprite.detach();
+                for(int p = 0; p < polled.size(); p++)
+                {
+                    if(polled.get(p) == sprite)
+                    {
+                        polled.remove(p);
+                        break;
+                    }
+                }
                 sprites.remove(index);
+                orderStale = true;
                 return;
             }
             index++;
         }
     }
     
+    /**
+     * Forces the next frames to be redrawn from scratch.
+     * <p>Normally, only the parts of the frame that changed are redrawn. This
+     * is useful if something changed that Mode0 can't detect; if it's a
+     * single Paintable, PaintProperties.markDirty() is cheaper.
+     * <p>This may be called from any thread. The frames are only marked as
+     * out of date at the start of the next renderFrame(), on the thread
+     * drawing them, so a frame already being drawn isn't affected.
+     */
+    public void invalidate()
+    {
+        invalidated = true;
+    }
+    
+    /**
+     * Get the current frame.
+     * <p>This draws a new frame, through renderFrame(), and returns it.
+     * <p>Frames are recycled: Mode0 keeps three of them, and cycles through
+     * them. The frame returned here is not drawn on again until the next
+     * call to getFrame() or getCompletedFrame(), so it is safe to display it
+     * until then. If it must be kept longer, copy it.
+     * @return The finished frame, a TYPE_INT_ARGB image.
+     */
+    @Override
+    public BufferedImage getFrame()
+    {
+        renderFrame();
+        return frames.acquireFront();
+    }
+    
+    /**
+     * Get the most recently completed frame, without drawing a new one.
+     * <p>This is meant for when frames are drawn on another thread, by calling
+     * renderFrame() there. Like getFrame(), the frame returned is left alone
+     * until the next call to getFrame() or getCompletedFrame().
+     * @return The most recently completed frame.
+     */
+    public BufferedImage getCompletedFrame()
+    {
+        return frames.acquireFront();
+    }
+    
     /**
      * The doozy, building the frame.
      * <p>The algorithm used for this might not be too fantastic; It essentially
-     * takes all the sprites, and one by one pastes them onto each layer.
-     * It then pastes each layer together and returns it.
-     * Naturally, as the number of layers increase, the slower this algorithm
-     * runs. As the number of sprites increase, the algorithm runs slower as
-     * well.
+     * takes all the sprites, and one by one pastes them onto the frame.
+     * Naturally, as the number of sprites increase, the algorithm runs slower.
      * <p>While all images provided are preserved, the frame will only draw
      * whatever's in the 240x160 pixel window, with the top-left corner at (0, 0).
      * To "move" the camera, you can simply move the backgrounds and sprites
      * in the opposite direction. Plans for the future allow the ability to move
      * the camera explicitly.
      * <p>Everything here is done to ensure no BufferedImages are drawn on, except
-     * for the working canvases.
+     * for the working canvases. The pasting itself is done by the Compositor,
+     * which works on the frame's pixel array directly, and clips each sprite
+     * once rather than checking every pixel.
+     * <p>The frame is drawn on a recycled buffer. Rather than clearing it and
+     * drawing everything, each PaintProperties that reported a change, or
+     * can't report them, is checked against what was last drawn, and only the
+     * areas that changed are cleared and redrawn. Once it is done, it becomes
+     * available through getCompletedFrame().
      * <p>Plans for the future: Each pixel should only be drawn once for the
      * fastest speed.
-     * @return The finished frame.
      */
-    @Override
-    public BufferedImage getFrame()
+    public void renderFrame()
     {
         if(game != null){game.onFrame();}
-        BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_4BYTE_ABGR);
-        Graphics2D gfx = frame.createGraphics();
-        for(PaintProperties sprite : sprites)
+        if(invalidated)
         {
-            paint(frame, sprite);
+            invalidated = false;
+            frames.invalidate();
+        }
+        if(orderStale)
+        {
+            int order = 0;
+            for(PaintProperties sprite : sprites){
+                sprite.order = order++;
+            }
+            orderStale = false;
+        }
+        PaintProperties.drain(dirty, pending);
+        if(gridRebuild)
+        {
+            for(PaintProperties sprite : sprites)
+            {
+                sprite.collectDamage(damage);
+                if(grid != null){sprite.updateGrid(grid);}
+            }
+            gridRebuild = false;
+        }
+        else
+        {
+            for(PaintProperties sprite : polled){
+                checkDamage(sprite);
+            }
+            for(PaintProperties sprite : pending)
+            {
+                if(sprite.reportsTo(dirty)){checkDamage(sprite);}
+            }
+        }
+        pending.clear();
+        frames.addDamage(damage);
+        damage.clear();
+        
+        IntRaster canvas = frames.getBackRaster();
+        DamageRegion redraw = frames.getBackDamage();
+        if(!redraw.isEmpty())
+        {
+            collectVisible();
+            if(bands > 1 && redraw.getArea() >= MIN_PARALLEL_PIXELS)
+            {
+                renderPool.invoke(new RenderBands(canvas, redraw, bands, 0, bands));
+            }
+            else
+            {
+                renderBand(canvas, redraw, 0, HEIGHT);
+            }
+            redraw.clear();
+        }
+        frames.publish();
+    }
+    
+    /*
+    Adds a PaintProperties' changes to the damage, and moves it in the grid
+    if it changed.
+    */
+    private void checkDamage(PaintProperties sprite)
+    {
+        if(sprite.collectDamage(damage) && grid != null){
+            sprite.updateGrid(grid);
         }
-        return frame;
     }
     
-    private void paint(BufferedImage bg, PaintProperties p)
+    /*
+    Fills the draw list with every Paintable on screen, in list order, and
+    prepares them.
+    */
+    private void collectVisible()
     {
-        if(p.isVisible())
+        drawList.clear();
+        if(grid != null)
         {
-            Paintable paint = p.getPaintable();
-            int drawX = paint.getX();
-            int drawY = paint.getY();
-            BufferedImage image = paint.getImage();
-            for(int xx = 0; xx < image.getWidth(); xx++)
+            candidates.clear();
+            grid.query(0, 0, WIDTH, HEIGHT, candidates);
+            for(PaintProperties sprite : candidates)
             {
-                for(int yy = 0; yy < image.getHeight(); yy++)
+                if(sprite.intersects(0, 0, WIDTH, HEIGHT)){drawList.add(sprite);}
+            }
+            drawList.sort(LIST_ORDER);
+        }
+        else
+        {
+            for(PaintProperties sprite : sprites)
+            {
+                if(sprite.intersects(0, 0, WIDTH, HEIGHT)){drawList.add(sprite);}
+            }
+        }
+        for(PaintProperties sprite : drawList)
+        {
+            sprite.prepare(useSpans);
+        }
+    }
+    
+    /*
+    Redraws the damaged areas between rows top (inclusive) and bottom
+    (exclusive). Only the prepared draw list is read, so bands can be drawn
+    at the same time.
+    */
+    private void renderBand(IntRaster canvas, DamageRegion areas, int top, int bottom)
+    {
+        for(int area = 0; area < areas.getCount(); area++)
+        {
+            int y0 = Math.max(areas.getTop(area), top);
+            int y1 = Math.min(areas.getBottom(area), bottom);
+            if(y0 >= y1){continue;}
+            int x0 = areas.getLeft(area);
+            int x1 = areas.getRight(area);
+            for(int yy = y0; yy < y1; yy++)
+            {
+                int start = canvas.indexOf(x0, yy);
+                Arrays.fill(canvas.getData(), start, start + (x1 - x0), 0);
+            }
+            for(PaintProperties sprite : drawList)
+            {
+                if(sprite.intersects(x0, y0, x1 - x0, y1 - y0))
                 {
-                    int thisX = drawX + xx;
-                    int thisY = drawY + yy;
-                    if(p.isWrapped()){
-                        thisX = Math.floorMod(thisX, bg.getWidth());
-                        thisY = Math.floorMod(thisY, bg.getHeight());
-                    }
-                    else if(thisX < 0 || thisX >= bg.getWidth() || thisY < 0 || thisY >= bg.getHeight()){
-                            continue;
-                    }
-                    int paintRGB = image.getRGB(xx, yy);
-                    if(paintRGB == p.getTransparentRGB()){
-                        paintRGB = 0;
-                    }
-                    int bgRGB = bg.getRGB(thisX, thisY);
-                    bg.setRGB(thisX, thisY, blend(bgRGB, paintRGB));
+                    sprite.draw(canvas, x0, y0, x1, y1);
                 }
             }
         }
     }
     
-    private int blend(int bottomColor, int topColor)
+    /*
+    Splits bands [lo, hi), out of count bands total, in half until single
+    bands are left, which are then drawn.
+    */
+    @SuppressWarnings("serial")
+    private class RenderBands extends RecursiveAction
     {
-        double dstA = (bottomColor >>> 24) / 255f, srcA = (topColor >>> 24) / 255f;
-        int dstR = (bottomColor >>> 16 & 0xFF), srcR = (topColor >>> 16 & 0xFF);
-        int dstG = (bottomColor >>> 8  & 0xFF), srcG = (topColor >>> 8  & 0xFF);
-        int dstB = (bottomColor        & 0xFF), srcB = (topColor        & 0xFF);
-        double a = (srcA + dstA * (1 - srcA));
-        if(a == 0){return 0;}
-        int r = (int)((srcR * srcA + dstR * dstA * (1 - srcA)) / a);
-        int g = (int)((srcG * srcA + dstG * dstA * (1 - srcA)) / a);
-        int b = (int)((srcB * srcA + dstB * dstA * (1 - srcA)) / a);
-        return ((int)(a * 255) << 24) | (r << 16) | (g << 8) | b;
+        private final IntRaster canvas;
+        private final DamageRegion areas;
+        private final int count;
+        private final int lo;
+        private final int hi;
+        
+        private RenderBands(IntRaster canvas, DamageRegion areas, int count, int lo, int hi)
+        {
+            this.canvas = canvas;
+            this.areas = areas;
+            this.count = count;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if(hi - lo == 1)
+            {
+                renderBand(canvas, areas, lo * HEIGHT / count, hi * HEIGHT / count);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new RenderBands(canvas, areas, count, lo, mid),
+                    new RenderBands(canvas, areas, count, mid, hi));
+        }
     }
 }
@@ -0,0 +1,481 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import GameView.TileLayer;
+import GameView.ViewMode;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Mode 7 View Mode.
+ * <p>This draws a flat floor, seen in perspective from a camera floating above
+ * it, like the tracks of F-Zero or the world map of Final Fantasy VI. The
+ * floor is either a bitmap or a TileLayer, lying flat with its top-left corner
+ * at (0, 0), and X and Y running the same way as on the image.
+ * <p>The camera is described by:
+ * <ul>
+ * <li>Its position over the floor (X, Y), in floor pixels.</li>
+ * <li>Its height above the floor, in floor pixels.</li>
+ * <li>Yaw, the direction it faces. Zero faces up the floor, towards negative
+ * Y, and positive angles turn clockwise.</li>
+ * <li>Pitch, how far it is tilted down towards the floor. Zero looks
+ * straight ahead, putting the horizon across the middle of the screen.</li>
+ * <li>Roll, how far it is tilted sideways. Positive angles roll clockwise.</li>
+ * <li>Its field of view, across the width of the screen.</li>
+ * </ul>
+ * <p>Rather than building up a matrix for each line out of translations and
+ * scales, the start point and step of each line are worked out directly from
+ * the camera, with a single divide per line. Each line of a level camera is a
+ * straight line across the floor, so the rest of the line is then found by
+ * stepping, exactly like ImageOp does. A rolled camera's lines cross the
+ * horizon at an angle, so every pixel needs its own divide; this is slower,
+ * but still exact.
+ * <p>Anything that isn't floor is filled with the background color: the sky
+ * above the horizon, anything further than the far distance, anywhere off an
+ * unwrapped floor, and empty tiles. Setting a far distance cuts off the
+ * shimmering mess near the horizon, where each pixel covers a huge part of
+ * the floor.
+ * <p>Every call to getFrame() draws a new frame from scratch, into one of three
+ * reused frames.
+ * @author Justis
+ */
+public class Mode7 implements ViewMode
+{
+    private static final int FRAC = 32;
+    private static final double ONE = 1L << FRAC;
+    //Floor positions beyond this can't be stepped in fixed point, and are drawn as background.
+    private static final double LIMIT = 1 << 30;
+
+    private final int width;
+    private final int height;
+    private final TripleBuffer frames;
+
+    private BufferedImage bitmap = null;
+    private TileLayer tiles = null;
+    private BufferedImage rasterImage = null;
+    private IntRaster raster = null;
+
+    private double cameraX = 0;
+    private double cameraY = 0;
+    private double cameraZ = 32;
+    private double yaw = 0;
+    private double pitch = 0;
+    private double roll = 0;
+    private double focalLength;
+    private double farDistance = Double.POSITIVE_INFINITY;
+    private int background = 0;
+    private boolean wrap = true;
+
+    /**
+     * Creates a Mode7 instance, at the GBA's resolution of 240x160.
+     */
+    public Mode7()
+    {
+        this(240, 160);
+    }
+
+    /**
+     * Creates a Mode7 instance.
+     * <p>The field of view starts out at 90 degrees, and the camera 32 pixels
+     * above (0, 0), looking straight ahead.
+     * @param width The width of each frame.
+     * @param height The height of each frame.
+     * @throws IllegalArgumentException Either size is less than one.
+     */
+    public Mode7(int width, int height)
+    {
+        if(width < 1 || height < 1){
+            throw new IllegalArgumentException("Sizes must be at least one.");
+        }
+        this.width = width;
+        this.height = height;
+        this.frames = new TripleBuffer(width, height);
+        setFieldOfView(Math.PI / 2);
+    }
+
+    private static void checkParameters(double... values)
+    {
+        for(double value : values)
+            if(!Double.isFinite(value))
+                throw new IllegalArgumentException("Non-finite value provided.");
+    }
+
+    /**
+     * Set the floor to a bitmap.
+     * <p>TYPE_INT_ARGB images are read directly, so drawing on them shows up
+     * on the next frame. Other images are copied the first time they're
+     * drawn, and must be set again after being drawn on.
+     * @param image The image to use as the floor.
+     * @throws NullPointerException The image supplied is null.
+     */
+    public void setFloor(BufferedImage image)
+    {
+        if(image == null){
+            throw new NullPointerException("Image can't be null.");
+        }
+        bitmap = image;
+        tiles = null;
+    }
+
+    /**
+     * Set the floor to a tile map.
+     * <p>The layer's own position is ignored; the top-left corner of the map
+     * is always at (0, 0). Changes to the map show up on the next frame.
+     * @param layer The tile map to use as the floor.
+     * @throws NullPointerException The layer supplied is null.
+     */
+    public void setFloor(TileLayer layer)
+    {
+        if(layer == null){
+            throw new NullPointerException("Layer can't be null.");
+        }
+        tiles = layer;
+        bitmap = null;
+    }
+
+    /**
+     * Set the position of the camera over the floor.
+     * @param x The X position, in floor pixels.
+     * @param y The Y position, in floor pixels.
+     * @throws IllegalArgumentException Non-finite value provided.
+     */
+    public void setPosition(double x, double y)
+    {
+        checkParameters(x, y);
+        cameraX = x;
+        cameraY = y;
+    }
+
+    /**
+     * Get the X position of the camera.
+     * @return The X position, in floor pixels.
+     */
+    public double getX(){return cameraX;}
+
+    /**
+     * Get the Y position of the camera.
+     * @return The Y position, in floor pixels.
+     */
+    public double getY(){return cameraY;}
+
+    /**
+     * Set the height of the camera above the floor.
+     * @param z The height, in floor pixels.
+     * @throws IllegalArgumentException The height isn't positive and finite.
+     */
+    public void setHeight(double z)
+    {
+        checkParameters(z);
+        if(z <= 0){
+            throw new IllegalArgumentException("Height must be above the floor.");
+        }
+        cameraZ = z;
+    }
+
+    /**
+     * Get the height of the camera above the floor.
+     * @return The height, in floor pixels.
+     */
+    public double getHeight(){return cameraZ;}
+
+    /**
+     * Set the direction the camera faces.
+     * @param theta The angle clockwise from facing up the floor, in radians.
+     * @throws IllegalArgumentException Non-finite value provided.
+     */
+    public void setYaw(double theta)
+    {
+        checkParameters(theta);
+        yaw = theta;
+    }
+
+    /**
+     * Get the direction the camera faces.
+     * @return The angle clockwise from facing up the floor, in radians.
+     */
+    public double getYaw(){return yaw;}
+
+    /**
+     * Set how far the camera is tilted down.
+     * <p>At zero, the horizon is across the middle of the screen. Tilting down
+     * moves the horizon up, showing more floor; at 90 degrees, the camera
+     * looks straight down. Negative values tilt the camera up.
+     * @param theta The angle below level, in radians, between -90 and 90
+     * degrees.
+     * @throws IllegalArgumentException The angle is outside that range.
+     */
+    public void setPitch(double theta)
+    {
+        checkParameters(theta);
+        if(Math.abs(theta) > Math.PI / 2){
+            throw new IllegalArgumentException("Pitch must be between -90 and 90 degrees.");
+        }
+        pitch = theta;
+    }
+
+    /**
+     * Get how far the camera is tilted down.
+     * @return The angle below level, in radians.
+     */
+    public double getPitch(){return pitch;}
+
+    /**
+     * Set how far the camera is tilted sideways.
+     * Any roll other than zero is drawn with a divide for every pixel, rather
+     * than every line.
+     * @param theta The angle clockwise, in radians.
+     * @throws IllegalArgumentException Non-finite value provided.
+     */
+    public void setRoll(double theta)
+    {
+        checkParameters(theta);
+        roll = theta;
+    }
+
+    /**
+     * Get how far the camera is tilted sideways.
+     * @return The angle clockwise, in radians.
+     */
+    public double getRoll(){return roll;}
+
+    /**
+     * Set how wide the camera sees.
+     * @param theta The angle from the left edge of the screen to the right
+     * edge, in radians. Must be more than zero, and less than 180 degrees.
+     * @throws IllegalArgumentException The angle is outside that range.
+     */
+    public void setFieldOfView(double theta)
+    {
+        checkParameters(theta);
+        if(theta <= 0 || theta >= Math.PI){
+            throw new IllegalArgumentException("Field of view must be between 0 and 180 degrees.");
+        }
+        focalLength = (width / 2.0) / Math.tan(theta / 2);
+    }
+
+    /**
+     * Set how far away the floor stops being drawn.
+     * <p>Floor further than this, measured straight ahead of the camera, is
+     * filled with the background color instead. By default, the floor goes
+     * all the way to the horizon.
+     * @param distance The far distance, in floor pixels. Infinity means no
+     * limit.
+     * @throws IllegalArgumentException The distance is not positive.
+     */
+    public void setFarDistance(double distance)
+    {
+        if(!(distance > 0)){
+            throw new IllegalArgumentException("Distance must be positive.");
+        }
+        farDistance = distance;
+    }
+
+    /**
+     * Set the color of everything that isn't floor.
+     * By default, this is fully transparent.
+     * @param argb The background color, as ARGB.
+     */
+    public void setBackground(int argb)
+    {
+        background = argb;
+    }
+
+    /**
+     * Set whether the floor repeats forever.
+     * <p>When true, the default, the floor is tiled endlessly in every
+     * direction. When false, anywhere off the floor is background.
+     * @param wrap True to repeat the floor.
+     */
+    public void setWrap(boolean wrap)
+    {
+        this.wrap = wrap;
+    }
+
+    /**
+     * Draws a new frame.
+     * <p>The frame returned is left alone until the next call to this method,
+     * so it is safe to display while the next one is drawn.
+     * @return The current view of the floor.
+     */
+    @Override
+    public BufferedImage getFrame()
+    {
+        IntRaster canvas = frames.getBackRaster();
+        BufferedImage floor = (tiles != null) ? tiles.getImage() : bitmap;
+        if(floor == null)
+        {
+            for(int yy = 0; yy < height; yy++)
+            {
+                int index = canvas.indexOf(0, yy);
+                Arrays.fill(canvas.getData(), index, index + width, background);
+            }
+        }
+        else
+        {
+            if(floor != rasterImage)
+            {
+                rasterImage = floor;
+                raster = IntRaster.of(floor);
+            }
+            if(roll == 0)
+            {
+                for(int yy = 0; yy < height; yy++)
+                {
+                    drawLine(canvas.getData(), canvas.indexOf(0, yy), yy);
+                }
+            }
+            else
+            {
+                for(int yy = 0; yy < height; yy++)
+                {
+                    drawRolledLine(canvas.getData(), canvas.indexOf(0, yy), yy);
+                }
+            }
+        }
+        frames.publish();
+        return frames.acquireFront();
+    }
+
+    /*
+    The camera looks along f = (cos(pitch) * ahead, -sin(pitch)), where ahead
+    is the level direction of the yaw, and the screen's up is
+    u = (sin(pitch) * ahead, cos(pitch)). The ray through a pixel, at px
+    right of and py below the center of the screen, is then
+    focalLength * f + px * right - py * u. It drops by
+    focalLength * sin(pitch) + py * cos(pitch) for each step along it, so it
+    hits the floor after cameraZ / that many steps. Along a line, only px
+    changes, which only moves the hit sideways, by a fixed amount per pixel.
+    */
+    private void drawLine(int[] out, int index, int yy)
+    {
+        final double py = yy + 0.5 - height / 2.0;
+        final double drop = focalLength * Math.sin(pitch) + py * Math.cos(pitch);
+        final double forward = focalLength * Math.cos(pitch) - py * Math.sin(pitch);
+        final double t = cameraZ / drop;
+        if(!(drop > 0) || t * forward > farDistance)
+        {
+            Arrays.fill(out, index, index + width, background);
+            return;
+        }
+        final double aheadX = Math.sin(yaw);
+        final double aheadY = -Math.cos(yaw);
+        final double px = 0.5 - width / 2.0;
+        final double startX = cameraX + t * (forward * aheadX + px * -aheadY);
+        final double startY = cameraY + t * (forward * aheadY + px * aheadX);
+        final double stepX = t * -aheadY;
+        final double stepY = t * aheadX;
+        final double endX = startX + stepX * width;
+        final double endY = startY + stepY * width;
+        if(!(Math.abs(startX) < LIMIT && Math.abs(startY) < LIMIT
+                && Math.abs(endX) < LIMIT && Math.abs(endY) < LIMIT))
+        {
+            Arrays.fill(out, index, index + width, background);
+            return;
+        }
+        long fx = Math.round(startX * ONE);
+        long fy = Math.round(startY * ONE);
+        final long dfx = Math.round(stepX * ONE);
+        final long dfy = Math.round(stepY * ONE);
+        if(tiles != null)
+        {
+            for(int xx = 0; xx < width; xx++, fx += dfx, fy += dfy)
+            {
+                out[index + xx] = sampleTile((int)(fx >> FRAC), (int)(fy >> FRAC));
+            }
+        }
+        else
+        {
+            for(int xx = 0; xx < width; xx++, fx += dfx, fy += dfy)
+            {
+                out[index + xx] = sampleBitmap((int)(fx >> FRAC), (int)(fy >> FRAC));
+            }
+        }
+    }
+
+    /*
+    The same as drawLine, but with the screen rotated by the roll first. The
+    drop and forward distance then change along the line, so each pixel
+    needs its own divide. They're still linear in xx, so they're stepped
+    along with px rather than worked out again.
+    */
+    private void drawRolledLine(int[] out, int index, int yy)
+    {
+        final double cos = Math.cos(roll);
+        final double sin = Math.sin(roll);
+        final double sinPitch = Math.sin(pitch);
+        final double cosPitch = Math.cos(pitch);
+        final double sy = yy + 0.5 - height / 2.0;
+        final double aheadX = Math.sin(yaw);
+        final double aheadY = -Math.cos(yaw);
+        final double sx = 0.5 - width / 2.0;
+        final double py = sy * cos - sx * sin;
+        double px = sx * cos + sy * sin;
+        double drop = focalLength * sinPitch + py * cosPitch;
+        double forward = focalLength * cosPitch - py * sinPitch;
+        //py drops by sin for each pixel along the line.
+        final double dropStep = -sin * cosPitch;
+        final double forwardStep = sin * sinPitch;
+        for(int xx = 0; xx < width; xx++, px += cos, drop += dropStep, forward += forwardStep)
+        {
+            double t = cameraZ / drop;
+            double floorX = cameraX + t * (forward * aheadX + px * -aheadY);
+            double floorY = cameraY + t * (forward * aheadY + px * aheadX);
+            if(!(drop > 0) || t * forward > farDistance
+                    || !(Math.abs(floorX) < LIMIT && Math.abs(floorY) < LIMIT))
+            {
+                out[index + xx] = background;
+                continue;
+            }
+            int ix = (int)Math.floor(floorX);
+            int iy = (int)Math.floor(floorY);
+            out[index + xx] = (tiles != null) ? sampleTile(ix, iy) : sampleBitmap(ix, iy);
+        }
+    }
+
+    private int sampleBitmap(int ix, int iy)
+    {
+        final int w = raster.getWidth();
+        final int h = raster.getHeight();
+        if(wrap)
+        {
+            ix = Math.floorMod(ix, w);
+            iy = Math.floorMod(iy, h);
+        }
+        else if(ix < 0 || iy < 0 || ix >= w || iy >= h)
+        {
+            return background;
+        }
+        return raster.getData()[raster.indexOf(ix, iy)];
+    }
+
+    private int sampleTile(int ix, int iy)
+    {
+        final int tileW = tiles.getTileWidth();
+        final int tileH = tiles.getTileHeight();
+        final int mapW = tiles.getPixelWidth();
+        final int mapH = tiles.getPixelHeight();
+        if(wrap)
+        {
+            ix = Math.floorMod(ix, mapW);
+            iy = Math.floorMod(iy, mapH);
+        }
+        else if(ix < 0 || iy < 0 || ix >= mapW || iy >= mapH)
+        {
+            return background;
+        }
+        int tile = tiles.getMap()[(iy / tileH) * tiles.getMapWidth() + ix / tileW];
+        int perRow = raster.getWidth() / tileW;
+        if(tile < 0 || tile >= perRow * (raster.getHeight() / tileH))
+        {
+            return background;
+        }
+        int tx = (tile % perRow) * tileW + ix % tileW;
+        int ty = (tile / perRow) * tileH + iy % tileH;
+        return raster.getData()[raster.indexOf(tx, ty)];
+    }
+}
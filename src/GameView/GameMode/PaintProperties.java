@@ -5,8 +5,14 @@
  */
 package GameView.GameMode;
 
+import GameView.Affine;
+import GameView.AffineBuilder;
+import GameView.IntRaster;
 import GameView.Paintable;
+import GameView.PaintableListener;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.List;
 
 /**
  * Keeps track of each Paintable's properties.
@@ -30,8 +36,10 @@ import java.awt.Color;
  * By default, this is true.</li>
  * <li>Wrap - Whether this Paintable should be clipped to the screen size, or
  * wrap around the screen to the other side. By default, this is false.
- * Due to the change to Graphics2D, wrapping only works for backgrounds; if
- * used on a sprite, weird things happen.</li>
+ * If a wrapped Paintable is larger than the screen, it overlaps itself, and
+ * only the last screen-width (or height) of it is shown, since that part is
+ * painted last. Paintables that draw themselves decide what wrapping means;
+ * a TileLayer repeats its map endlessly.</li>
  * <li>Background Color - The color of the Paintable's background. It is easier
  * to create Paintables, and designate some color as the "transparent" color.
  * This color is essentially ignored when it is encountered during screen render.
@@ -41,7 +49,22 @@ import java.awt.Color;
  * time-consuming than absolutely necessary. Setting this flag to false removes
  * the calculation, and does a straight painting operation. By default, this is
  * true.</li>
+ * <li>Affine - A matrix to rotate, scale or shear the Paintable with, like the
+ * affine sprites of the GBA. The Paintable is transformed around its center,
+ * and drawn inside a bounding box: either its usual rectangle, or, in
+ * double-size mode, a box twice as wide and tall with the same center, so
+ * rotated corners aren't cut off. Anything outside the box is cut off. By
+ * default, there is no matrix. Paintables that draw themselves, like
+ * TileLayers, ignore it.</li>
  * </ul>
+ * <p>PaintProperties also remembers where its Paintable was last drawn, so
+ * Mode0 can redraw only what changed. Moving the Paintable, changing its
+ * image, or changing any of the properties above is noticed automatically.
+ * Drawing on the Paintable's image directly is not; call markDirty() after
+ * doing so.
+ * <p>Changes are noticed through the Paintable's listeners, if it supports
+ * them, so Paintables that don't change cost nothing from frame to frame.
+ * Paintables without listener support are checked every frame instead.
  * @author Justis
  */
 public class PaintProperties implements Comparable
@@ -52,6 +75,41 @@ public class PaintProperties implements Comparable
     private boolean wrap = false;
     private int bgColor;
     private boolean semitransparent = true;
+    private boolean affine = false;
+    private boolean doubleSize = false;
+    private double affA, affB, affC, affD, affE, affF;
+    
+    //What was last drawn, for damage tracking.
+    private boolean changed = true;
+    private boolean drawn = false;
+    private int drawnX, drawnY, drawnWidth, drawnHeight;
+    private boolean drawnWrapped;
+    private BufferedImage drawnImage;
+    private int drawnVersion;
+    private boolean drawnAffine;
+    private boolean drawnCustom;
+    //Reverse of the matrix, from a point in the box to a point in the image.
+    private double invA, invB, invC, invD, invE, invF;
+    private IntRaster preparedImage;
+    private RowSpans preparedSpans;
+    //The copy last fetched from the ColorKeyCache, kept while it's in use.
+    private ColorKeyCache.Entry keyed;
+    private BufferedImage keyedImage;
+    private int keyedRGB;
+    private int keyedVersion;
+    
+    //The Mode0's list of changed PaintProperties, while this is in one.
+    private List<PaintProperties> dirtyList = null;
+    private boolean queued = false;
+    private final PaintableListener listener = source -> queue();
+    
+    //Position in the sprite list, and bookkeeping for the SpatialGrid.
+    int order;
+    int gridX0, gridY0, gridX1, gridY1;
+    boolean gridEverywhere;
+    int[] gridSlots;
+    int gridIndex;
+    int gridStamp;
     
     /**
      * Initializes the PaintProperties.
@@ -91,6 +149,7 @@ public class PaintProperties implements Comparable
         if(Double.isFinite(newPriority))
         {
             priority = newPriority;
+            markChanged();
         }
         return this;
     }
@@ -106,7 +165,7 @@ public class PaintProperties implements Comparable
      * @param newWrap True if this Paintable should wrap around the screen.
      * @return The instance of this PaintProperties.
      */
-    public PaintProperties setWrapped(boolean newWrap){wrap = newWrap; return this;}
+    public PaintProperties setWrapped(boolean newWrap){wrap = newWrap; markChanged(); return this;}
     
     /**
      * Checks if this sprite is set as visible.
@@ -119,7 +178,7 @@ public class PaintProperties implements Comparable
      * @param visible True if the sprite should be visible, false if not.
      * @return The instance of this PaintProperties.
      */
-    public PaintProperties setVisible(boolean visible){shown = visible; return this;}
+    public PaintProperties setVisible(boolean visible){shown = visible; markChanged(); return this;}
     
     /**
      * Gets the background color of this sprite.
@@ -139,9 +198,352 @@ public class PaintProperties implements Comparable
         bgColor = (newColor == null) ? 
                 value.getImage().getRGB(0, 0) : 
                 newColor.getRGB();
+        markChanged();
         return this;
     }
     
+    /**
+     * Checks if this sprite is drawn through an affine matrix.
+     * @return True if an affine matrix is set.
+     */
+    public boolean isAffine(){return affine;}
+    
+    /**
+     * Checks if this sprite's affine bounding box is double-size.
+     * @return True if the bounding box is twice the size of the image.
+     */
+    public boolean isDoubleSize(){return doubleSize;}
+    
+    /**
+     * Gets the affine matrix of this sprite.
+     * @return The matrix, or null if there is none.
+     */
+    public Affine getAffine()
+    {
+        return affine ? new Affine(affA, affB, affC, affD, affE, affF) : null;
+    }
+    
+    /**
+     * Sets the affine matrix of this sprite.
+     * <p>The matrix works like the one in ImageOp, except that it turns the
+     * image around its center, rather than its top-left corner. Its
+     * translation moves the image within its bounding box. The sprite is
+     * sampled through the matrix while the frame is drawn, so no transformed
+     * image is ever made.
+     * @param matrix The matrix to transform the sprite with.
+     * @param doubleSize True to draw inside a box twice the size of the image.
+     * @return The instance of this PaintProperties.
+     * @throws NullPointerException The matrix is null.
+     * @throws IllegalArgumentException The matrix has non-finite values.
+     */
+    public PaintProperties setAffine(Affine matrix, boolean doubleSize)
+    {
+        if(matrix == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return setAffine(matrix.getA(), matrix.getB(), matrix.getC(),
+                matrix.getD(), matrix.getE(), matrix.getF(), doubleSize);
+    }
+    
+    /**
+     * Sets the affine matrix of this sprite.
+     * <p>This works like setAffine(Affine, boolean). The matrix is copied, so
+     * the same AffineBuilder can be reused every frame without creating any
+     * garbage.
+     * @param matrix The matrix to transform the sprite with.
+     * @param doubleSize True to draw inside a box twice the size of the image.
+     * @return The instance of this PaintProperties.
+     * @throws NullPointerException The matrix is null.
+     * @throws IllegalArgumentException The matrix has non-finite values.
+     */
+    public PaintProperties setAffine(AffineBuilder matrix, boolean doubleSize)
+    {
+        if(matrix == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return setAffine(matrix.getA(), matrix.getB(), matrix.getC(),
+                matrix.getD(), matrix.getE(), matrix.getF(), doubleSize);
+    }
+    
+    private PaintProperties setAffine(double a, double b, double c, double d, double e, double f,
+            boolean doubleSize)
+    {
+        if(!Double.isFinite(a) || !Double.isFinite(b) || !Double.isFinite(c)
+                || !Double.isFinite(d) || !Double.isFinite(e) || !Double.isFinite(f)){
+            throw new IllegalArgumentException("Non-finite value provided.");
+        }
+        affA = a; affB = b; affC = c;
+        affD = d; affE = e; affF = f;
+        this.doubleSize = doubleSize;
+        affine = true;
+        markChanged();
+        return this;
+    }
+    
+    /**
+     * Removes the affine matrix of this sprite, so it's drawn as is.
+     * @return The instance of this PaintProperties.
+     */
+    public PaintProperties clearAffine(){affine = false; markChanged(); return this;}
+    
+    /**
+     * Marks this Paintable as needing to be redrawn.
+     * <p>Changes made through the Paintable or this class are picked up
+     * automatically. This is only needed when the pixels of the Paintable's
+     * image are changed directly, which can't be detected. Any cached copies
+     * of the image are thrown away as well.
+     * @return The instance of this PaintProperties.
+     */
+    public PaintProperties markDirty()
+    {
+        ColorKeyCache.getInstance().invalidate(value.getImage());
+        markChanged();
+        return this;
+    }
+    
+    /*
+    Notes that a property changed, so the next collectDamage() redraws this
+    even if the Paintable itself looks the same.
+    */
+    private void markChanged()
+    {
+        changed = true;
+        queue();
+    }
+    
+    /*
+    Puts this on its Mode0's list of changed PaintProperties, once. The list
+    is locked, in case the Paintable is changed on another thread.
+    */
+    private void queue()
+    {
+        List<PaintProperties> list = dirtyList;
+        if(list == null){return;}
+        synchronized(list)
+        {
+            if(!queued)
+            {
+                queued = true;
+                list.add(this);
+            }
+        }
+    }
+    
+    /*
+    Moves everything on a list of changed PaintProperties to another list,
+    so they can be queued again while they're looked at.
+    */
+    static void drain(List<PaintProperties> dirty, List<PaintProperties> out)
+    {
+        synchronized(dirty)
+        {
+            for(PaintProperties p : dirty)
+            {
+                p.queued = false;
+                out.add(p);
+            }
+            dirty.clear();
+        }
+    }
+    
+    /*
+    Starts reporting changes to a Mode0's list, and queues this so it gets
+    drawn. Returns false if the Paintable can't report its own changes, in
+    which case it must be checked every frame.
+    */
+    boolean attach(List<PaintProperties> dirty)
+    {
+        dirtyList = dirty;
+        queue();
+        return value.addPaintableListener(listener);
+    }
+    
+    /*
+    Stops reporting changes, once removed from the Mode0.
+    */
+    void detach()
+    {
+        value.removePaintableListener(listener);
+        dirtyList = null;
+    }
+    
+    /*
+    Checks if this still reports to a list, since it may have been removed
+    from the Mode0 after being queued.
+    */
+    boolean reportsTo(List<PaintProperties> dirty)
+    {
+        return dirtyList == dirty;
+    }
+    
+    /*
+    Compares the Paintable against what was last drawn. If anything differs,
+    both where it was and where it is now are added to the damage, and true
+    is returned.
+    */
+    boolean collectDamage(DamageRegion damage)
+    {
+        BufferedImage image = value.getImage();
+        int x = value.getX();
+        int y = value.getY();
+        int version = value.getModCount();
+        boolean custom = value.drawsItself();
+        //Affine sprites are drawn where their box is, so compare against that.
+        boolean useAffine = affine && !custom;
+        if(useAffine && doubleSize)
+        {
+            x -= image.getWidth() / 2;
+            y -= image.getHeight() / 2;
+        }
+        if(!changed && drawn == shown && (!shown || (image == drawnImage && x == drawnX 
+                && y == drawnY && wrap == drawnWrapped && version == drawnVersion)))
+        {
+            return false;
+        }
+        collectRemovalDamage(damage);
+        drawn = shown;
+        drawnX = x;
+        drawnY = y;
+        drawnWidth = value.getWidth() * (useAffine && doubleSize ? 2 : 1);
+        drawnHeight = value.getHeight() * (useAffine && doubleSize ? 2 : 1);
+        drawnCustom = custom;
+        drawnAffine = useAffine;
+        if(useAffine)
+        {
+            /*
+            A point (U, V) in the box, relative to the box's center and the
+            translation, is reversed into the image the same way as in
+            ImageOp, then moved from the image's center to its corner.
+            */
+            double det = (affA * affE) - (affB * affD);
+            invA = affE / det;
+            invB = -affB / det;
+            invD = -affD / det;
+            invE = affA / det;
+            double u = (drawnWidth / 2.0) + affC;
+            double v = (drawnHeight / 2.0) + affF;
+            invC = (image.getWidth() / 2.0) - (invA * u) - (invB * v);
+            invF = (image.getHeight() / 2.0) - (invD * u) - (invE * v);
+        }
+        drawnWrapped = wrap;
+        drawnImage = image;
+        drawnVersion = version;
+        changed = false;
+        if(drawn){addBounds(damage);}
+        return true;
+    }
+    
+    /*
+    Puts this Paintable where it belongs in the grid, based on what
+    collectDamage() saw. Hidden Paintables are taken out of the grid.
+    */
+    void updateGrid(SpatialGrid grid)
+    {
+        if(drawn){
+            grid.update(this, drawnWrapped, drawnX, drawnY, drawnWidth, drawnHeight);
+        }
+        else{
+            grid.remove(this);
+        }
+    }
+    
+    /*
+    Checks if this Paintable, as collectDamage() saw it, touches a rectangle.
+    Wrapped Paintables are assumed to touch everything.
+    */
+    boolean intersects(int x, int y, int w, int h)
+    {
+        return drawn && (drawnWrapped || (drawnX < x + w && x < drawnX + drawnWidth
+                && drawnY < y + h && y < drawnY + drawnHeight));
+    }
+    
+    /*
+    Adds where this Paintable was last drawn to the damage. Used when it is
+    removed, or when it changes.
+    */
+    void collectRemovalDamage(DamageRegion damage)
+    {
+        if(drawn){addBounds(damage);}
+    }
+    
+    /*
+    Checks if this Paintable is to be drawn this frame. Only valid after
+    collectDamage().
+    */
+    boolean isDrawn(){return drawn;}
+    
+    /*
+    Gets everything draw() needs ready, based on what collectDamage() saw.
+    The image is fetched from the ColorKeyCache, with the transparent color
+    already removed, along with its runs if useSpans is set. Paintables that
+    draw themselves get their image the same way, but never runs. Since
+    draw() only reads what is prepared here, several threads can draw the
+    same PaintProperties at once.
+    The copy is held on to until the image or color changes, or the cache
+    throws copies away, so images too large for the cache aren't copied
+    every frame.
+    */
+    void prepare(boolean useSpans)
+    {
+        ColorKeyCache cache = ColorKeyCache.getInstance();
+        int version = cache.getVersion();
+        if(keyed == null || keyedImage != drawnImage || keyedRGB != bgColor || keyedVersion != version)
+        {
+            keyed = cache.getEntry(drawnImage, bgColor);
+            keyedImage = drawnImage;
+            keyedRGB = bgColor;
+            keyedVersion = version;
+        }
+        preparedImage = keyed.getRaster();
+        preparedSpans = (useSpans && !drawnAffine && !drawnCustom) ? 
+                cache.getSpans(keyed) : 
+                null;
+    }
+    
+    /*
+    Draws the prepared Paintable, clipped to [x0, x1) by [y0, y1).
+    */
+    void draw(IntRaster canvas, int x0, int y0, int x1, int y1)
+    {
+        if(drawnCustom)
+        {
+            value.drawOnto(canvas, x0, y0, x1, y1, preparedImage, drawnX, drawnY, drawnWrapped);
+            return;
+        }
+        if(drawnAffine)
+        {
+            Compositor.drawAffine(canvas, x0, y0, x1, y1, preparedImage,
+                    drawnX, drawnY, drawnWidth, drawnHeight,
+                    invA, invB, invC, invD, invE, invF, drawnWrapped);
+            return;
+        }
+        Compositor.draw(canvas, x0, y0, x1, y1, preparedImage, preparedSpans,
+                drawnX, drawnY, drawnWrapped);
+    }
+    
+    private void addBounds(DamageRegion damage)
+    {
+        if(!drawnWrapped){
+            damage.add(drawnX, drawnY, drawnWidth, drawnHeight);
+        }
+        else if(drawnCustom){
+            damage.addAll();
+        }
+        else{
+            //The same four pieces the Compositor draws.
+            int frameWidth = damage.getWidth();
+            int frameHeight = damage.getHeight();
+            int startX = Compositor.wrapStart(drawnX, drawnWidth, frameWidth);
+            int startY = Compositor.wrapStart(drawnY, drawnHeight, frameHeight);
+            int shownWidth = Math.min(drawnWidth, frameWidth);
+            int shownHeight = Math.min(drawnHeight, frameHeight);
+            damage.add(startX, startY, shownWidth, shownHeight);
+            damage.add(startX - frameWidth, startY, shownWidth, shownHeight);
+            damage.add(startX, startY - frameHeight, shownWidth, shownHeight);
+            damage.add(startX - frameWidth, startY - frameHeight, shownWidth, shownHeight);
+        }
+    }
+    
     /**
      * Gets the semitransparency of this sprite.
      * @return True if the image is semitransparent.
@@ -18,6 +18,9 @@ import java.awt.image.ColorModel;
  * transforms the image for the Mode0 getFrame() method.
  * <p>The only method that does anything is the filter() method, which takes the
  * src image, and copies everything into a new image, sans the transparent color.
+ * The copy comes from the shared ColorKeyCache, so filtering the same image
+ * with the same transparent color again doesn't copy it again. Since it is
+ * shared, the image returned must not be drawn on.
  * All other methods return null.
  * @author Justis
  */
@@ -32,17 +35,7 @@ public class RenderOp implements BufferedImageOp
     
     @Override
     public BufferedImage filter(BufferedImage src, BufferedImage dest) {
-        BufferedImage image = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-        for(int xx = 0; xx < image.getWidth(); xx++){
-            for(int yy = 0; yy < image.getHeight(); yy++){
-                int color = src.getRGB(xx, yy);
-                if(color == paint.getTransparentRGB()){
-                    color = 0;
-                }
-                image.setRGB(xx, yy, color);
-            }
-        }
-        return image;
+        return ColorKeyCache.getInstance().getImage(src, paint.getTransparentRGB());
     }
 
     @Override
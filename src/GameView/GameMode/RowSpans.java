@@ -0,0 +1,118 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+
+/**
+ * The runs of pixels in each row of an image.
+ * <p>Most sprites are made of long stretches of fully transparent pixels and
+ * fully opaque pixels. Rather than checking each pixel as it is drawn, this
+ * splits every row into runs ahead of time:
+ * <ul>
+ * <li>Transparent runs are not stored at all; they are the gaps between the
+ * other runs, and are skipped when drawing.</li>
+ * <li>Opaque runs can be copied onto the frame in one go.</li>
+ * <li>Translucent runs are the only ones that need blending.</li>
+ * </ul>
+ * <p>Each run is stored as two ints: its starting column, with the top bit set
+ * if the run is translucent, and its end column (exclusive). Runs in a row
+ * are sorted by column.
+ * @author Justis
+ */
+final class RowSpans
+{
+    static final int TRANSLUCENT = 0x80000000;
+
+    //If the runs average fewer pixels than this, checking each pixel is faster.
+    private static final int MIN_AVERAGE_RUN = 4;
+
+    private final int[] runs;
+    private final int[] rowStarts;
+
+    private RowSpans(int[] runs, int[] rowStarts)
+    {
+        this.runs = runs;
+        this.rowStarts = rowStarts;
+    }
+
+    /**
+     * Splits an image into runs.
+     * @param image The image, with its transparent color already removed.
+     * @return The runs of the image, or null if the runs are too short to be
+     * worth using.
+     */
+    static RowSpans encode(IntRaster image)
+    {
+        final int[] pixels = image.getData();
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        int[] rowStarts = new int[height + 1];
+        int[] runs = new int[16];
+        int count = 0;
+        int covered = 0;
+        for(int yy = 0; yy < height; yy++)
+        {
+            rowStarts[yy] = count;
+            int base = image.indexOf(0, yy);
+            int xx = 0;
+            while(xx < width)
+            {
+                int kind = kindOf(pixels[base + xx]);
+                int start = xx;
+                while(xx < width && kindOf(pixels[base + xx]) == kind){xx++;}
+                if(kind == 0){continue;}
+                if(count + 2 > runs.length)
+                {
+                    int[] bigger = new int[runs.length * 2];
+                    System.arraycopy(runs, 0, bigger, 0, count);
+                    runs = bigger;
+                }
+                runs[count++] = (kind == 1) ? start : (start | TRANSLUCENT);
+                runs[count++] = xx;
+                covered += xx - start;
+            }
+        }
+        rowStarts[height] = count;
+        int runCount = count / 2;
+        if(runCount > 0 && covered / runCount < MIN_AVERAGE_RUN)
+        {
+            return null;
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(runs, 0, trimmed, 0, count);
+        return new RowSpans(trimmed, rowStarts);
+    }
+
+    /*
+    0 for transparent, 1 for opaque, 2 for translucent.
+    */
+    private static int kindOf(int argb)
+    {
+        int alpha = argb >>> 24;
+        return alpha == 0 ? 0 : (alpha == 0xFF ? 1 : 2);
+    }
+
+    /**
+     * Get all runs, as pairs of ints.
+     * @return The runs.
+     */
+    int[] getRuns(){return runs;}
+
+    /**
+     * Get the index in getRuns() of the first run of a row.
+     * The runs of row y are from getRowStart(y) to getRowStart(y + 1).
+     * @param row The row.
+     * @return The index of the row's first run.
+     */
+    int getRowStart(int row){return rowStarts[row];}
+
+    /**
+     * Get the memory used by these runs.
+     * @return The approximate size, in bytes.
+     */
+    long bytes(){return 4L * (runs.length + rowStarts.length);}
+}
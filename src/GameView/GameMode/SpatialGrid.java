@@ -0,0 +1,327 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid of PaintProperties, indexed by where they are drawn.
+ * <p>The world is divided into square cells, and each PaintProperties is
+ * listed in every cell its bounds touch. Finding what's on screen then only
+ * looks at the cells the screen covers, rather than every PaintProperties.
+ * Cells are created as needed, so the world has no fixed size. They're found
+ * through an open-addressing table keyed by their coordinates. Cells that
+ * empty out are taken out of the table, and a few are kept aside to be
+ * reused, so things moving around rarely allocate anything, and things
+ * wandering across a large world don't leave a trail of empty cells behind.
+ * The table shrinks again once most of its cells are gone.
+ * <p>Wrapped PaintProperties can show up anywhere on screen, and large ones
+ * would be listed in a lot of cells, so both are kept in a separate list that
+ * every query includes instead.
+ * <p>Each PaintProperties remembers which cells it's in, and where it is in
+ * each one, so it's added and removed by identity in constant time.
+ * @author Justis
+ */
+class SpatialGrid
+{
+    //PaintProperties touching more cells than this are listed everywhere.
+    private static final int MAX_CELLS = 16;
+    //How many empty cells are kept aside to be reused.
+    private static final int MAX_SPARE = 64;
+    private static final int MIN_TABLE = 64;
+
+    private final int cellSize;
+    private long[] keys = new long[64];
+    private Cell[] table = new Cell[MIN_TABLE];
+    private int cellCount = 0;
+    private final Cell[] spare = new Cell[MAX_SPARE];
+    private int spareCount = 0;
+    private PaintProperties[] everywhere = new PaintProperties[16];
+    private int everywhereCount = 0;
+    private int stamp = 0;
+
+    private static final class Cell
+    {
+        private PaintProperties[] items = new PaintProperties[4];
+        private int size = 0;
+    }
+
+    /**
+     * Creates an empty SpatialGrid.
+     * @param cellSize The width and height of a cell, in pixels.
+     */
+    SpatialGrid(int cellSize)
+    {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Get the size of the cells.
+     * @return The width and height of a cell, in pixels.
+     */
+    int getCellSize(){return cellSize;}
+
+    /**
+     * Moves a PaintProperties to the cells covering its new bounds.
+     * @param p The PaintProperties that moved.
+     * @param wrapped True if it wraps, and so may be anywhere.
+     * @param x The left edge of its bounds.
+     * @param y The top edge of its bounds.
+     * @param w The width of its bounds.
+     * @param h The height of its bounds.
+     */
+    void update(PaintProperties p, boolean wrapped, int x, int y, int w, int h)
+    {
+        int cx0 = 0, cy0 = 0, cx1 = 0, cy1 = 0;
+        boolean anywhere = wrapped;
+        if(!wrapped && w > 0 && h > 0)
+        {
+            cx0 = Math.floorDiv(x, cellSize);
+            cy0 = Math.floorDiv(y, cellSize);
+            cx1 = Math.floorDiv(x + w - 1, cellSize) + 1;
+            cy1 = Math.floorDiv(y + h - 1, cellSize) + 1;
+            if((long)(cx1 - cx0) * (cy1 - cy0) > MAX_CELLS)
+            {
+                anywhere = true;
+                cx0 = cy0 = cx1 = cy1 = 0;
+            }
+        }
+        if(anywhere == p.gridEverywhere && cx0 == p.gridX0 && cy0 == p.gridY0
+                && cx1 == p.gridX1 && cy1 == p.gridY1)
+        {
+            return;
+        }
+        /*
+        Where it sits in each cell depends on the shape of its range, so it's
+        taken out of all its old cells and put in all its new ones. That's at
+        most MAX_CELLS each way.
+        */
+        for(int cy = p.gridY0; cy < p.gridY1; cy++)
+            for(int cx = p.gridX0; cx < p.gridX1; cx++)
+            {
+                int index = findIndex(cx, cy);
+                removeFromCell(table[index], p, cx, cy);
+                if(table[index].size == 0){free(index);}
+            }
+        p.gridX0 = cx0;
+        p.gridY0 = cy0;
+        p.gridX1 = cx1;
+        p.gridY1 = cy1;
+        if(cx1 > cx0 && (p.gridSlots == null || p.gridSlots.length < MAX_CELLS)){
+            p.gridSlots = new int[MAX_CELLS];
+        }
+        for(int cy = cy0; cy < cy1; cy++)
+            for(int cx = cx0; cx < cx1; cx++)
+            {
+                addToCell(findOrMake(cx, cy), p, cx, cy);
+            }
+        if(anywhere != p.gridEverywhere)
+        {
+            if(anywhere){addEverywhere(p);}
+            else{removeEverywhere(p);}
+            p.gridEverywhere = anywhere;
+        }
+    }
+
+    /**
+     * Removes a PaintProperties from the grid entirely.
+     * @param p The PaintProperties to remove.
+     */
+    void remove(PaintProperties p)
+    {
+        update(p, false, 0, 0, 0, 0);
+    }
+
+    /**
+     * Finds every PaintProperties whose cells touch a rectangle.
+     * <p>Each one is added to the list once, in no particular order. Some may
+     * not actually intersect the rectangle, only share a cell with it.
+     * @param x The left edge of the rectangle.
+     * @param y The top edge of the rectangle.
+     * @param w The width of the rectangle.
+     * @param h The height of the rectangle.
+     * @param out The list to add them to.
+     */
+    void query(int x, int y, int w, int h, List<PaintProperties> out)
+    {
+        stamp++;
+        for(int index = 0; index < everywhereCount; index++)
+        {
+            PaintProperties p = everywhere[index];
+            p.gridStamp = stamp;
+            out.add(p);
+        }
+        int cx0 = Math.floorDiv(x, cellSize);
+        int cy0 = Math.floorDiv(y, cellSize);
+        int cx1 = Math.floorDiv(x + w - 1, cellSize);
+        int cy1 = Math.floorDiv(y + h - 1, cellSize);
+        for(int cy = cy0; cy <= cy1; cy++)
+            for(int cx = cx0; cx <= cx1; cx++)
+            {
+                Cell cell = find(cx, cy);
+                if(cell == null){continue;}
+                for(int index = 0; index < cell.size; index++)
+                {
+                    PaintProperties p = cell.items[index];
+                    if(p.gridStamp != stamp)
+                    {
+                        p.gridStamp = stamp;
+                        out.add(p);
+                    }
+                }
+            }
+    }
+
+    /*
+    Where a cell's position in p's range is kept in p.gridSlots.
+    */
+    private static int slot(PaintProperties p, int cx, int cy)
+    {
+        return (cy - p.gridY0) * (p.gridX1 - p.gridX0) + (cx - p.gridX0);
+    }
+
+    private static void addToCell(Cell cell, PaintProperties p, int cx, int cy)
+    {
+        if(cell.size == cell.items.length){
+            cell.items = Arrays.copyOf(cell.items, cell.size * 2);
+        }
+        p.gridSlots[slot(p, cx, cy)] = cell.size;
+        cell.items[cell.size++] = p;
+    }
+
+    /*
+    Swaps the last item of the cell into p's place, and tells that item
+    where it now is.
+    */
+    private static void removeFromCell(Cell cell, PaintProperties p, int cx, int cy)
+    {
+        int index = p.gridSlots[slot(p, cx, cy)];
+        PaintProperties last = cell.items[--cell.size];
+        cell.items[index] = last;
+        cell.items[cell.size] = null;
+        if(last != p){
+            last.gridSlots[slot(last, cx, cy)] = index;
+        }
+    }
+
+    private void addEverywhere(PaintProperties p)
+    {
+        if(everywhereCount == everywhere.length){
+            everywhere = Arrays.copyOf(everywhere, everywhereCount * 2);
+        }
+        p.gridIndex = everywhereCount;
+        everywhere[everywhereCount++] = p;
+    }
+
+    private void removeEverywhere(PaintProperties p)
+    {
+        PaintProperties last = everywhere[--everywhereCount];
+        everywhere[p.gridIndex] = last;
+        everywhere[everywhereCount] = null;
+        last.gridIndex = p.gridIndex;
+    }
+
+    /**
+     * Get the number of cells in use.
+     * @return The number of cells with something in them.
+     */
+    int getCellCount(){return cellCount;}
+
+    private Cell find(int cx, int cy)
+    {
+        int index = findIndex(cx, cy);
+        return (index < 0) ? null : table[index];
+    }
+
+    /*
+    Where a cell is in the table, or -1 if there's no such cell.
+    */
+    private int findIndex(int cx, int cy)
+    {
+        long key = key(cx, cy);
+        int mask = table.length - 1;
+        for(int index = hash(key, mask); table[index] != null; index = (index + 1) & mask)
+        {
+            if(keys[index] == key){return index;}
+        }
+        return -1;
+    }
+
+    private Cell findOrMake(int cx, int cy)
+    {
+        long key = key(cx, cy);
+        int mask = table.length - 1;
+        int index = hash(key, mask);
+        for(; table[index] != null; index = (index + 1) & mask)
+        {
+            if(keys[index] == key){return table[index];}
+        }
+        Cell cell = (spareCount > 0) ? spare[--spareCount] : new Cell();
+        spare[spareCount] = null;
+        keys[index] = key;
+        table[index] = cell;
+        if(++cellCount * 2 > table.length){resize(table.length * 2);}
+        return cell;
+    }
+
+    /*
+    Takes an empty cell out of the table. Later cells in the same run are
+    shifted back into the gap, so every cell can still be found by probing
+    from where it hashes to, without leaving tombstones behind.
+    */
+    private void free(int index)
+    {
+        if(spareCount < MAX_SPARE){spare[spareCount++] = table[index];}
+        int mask = table.length - 1;
+        int hole = index;
+        for(int next = (hole + 1) & mask; table[next] != null; next = (next + 1) & mask)
+        {
+            //Only moved back if the gap is between where it hashes to and where it is.
+            int home = hash(keys[next], mask);
+            if(((next - home) & mask) >= ((next - hole) & mask))
+            {
+                keys[hole] = keys[next];
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = null;
+        if(--cellCount * 8 < table.length && table.length > MIN_TABLE){resize(table.length / 2);}
+    }
+
+    /*
+    Rebuilds the table at a new size. It's doubled when it gets half full,
+    so probes stay short, and halved when it gets down to an eighth full.
+    */
+    private void resize(int length)
+    {
+        long[] oldKeys = keys;
+        Cell[] oldTable = table;
+        keys = new long[length];
+        table = new Cell[length];
+        int mask = table.length - 1;
+        for(int old = 0; old < oldTable.length; old++)
+        {
+            if(oldTable[old] == null){continue;}
+            int index = hash(oldKeys[old], mask);
+            while(table[index] != null){index = (index + 1) & mask;}
+            keys[index] = oldKeys[old];
+            table[index] = oldTable[old];
+        }
+    }
+
+    private static int hash(long key, int mask)
+    {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int)(mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    private static long key(int cx, int cy)
+    {
+        return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import java.awt.image.BufferedImage;
+
+/**
+ * A ring of three reusable frames.
+ * <p>Allocating a fresh frame every time one is drawn creates a steady stream
+ * of garbage. Instead, this keeps three frames around, and passes them
+ * between the producer (whoever draws the frames) and the consumer (whoever
+ * displays them):
+ * <ul>
+ * <li>Back - The frame currently being drawn. Only the producer touches it.</li>
+ * <li>Ready - The most recently completed frame, waiting to be picked up.</li>
+ * <li>Front - The frame the consumer is currently displaying.</li>
+ * </ul>
+ * <p>When the producer finishes a frame, publish() swaps the back and ready
+ * frames. When the consumer wants a frame, acquireFront() swaps the ready and
+ * front frames, if a new one has been published since. The frame returned
+ * by acquireFront() is never handed to the producer until the consumer calls
+ * acquireFront() again, so it is never modified while being displayed.
+ * <p>Each frame also remembers which parts of it are out of date. Since the
+ * back frame was last drawn two or more frames ago, anything that changed in
+ * any frame since then must be redrawn on it. addDamage() marks a region on
+ * all three frames, and getBackDamage() says what the back frame is missing.
+ * <p>The producer and consumer may be on different threads. Only one thread
+ * should produce, and only one thread should consume.
+ * @author Justis
+ */
+public class TripleBuffer
+{
+    private final BufferedImage[] frames = new BufferedImage[3];
+    private final IntRaster[] rasters = new IntRaster[3];
+    private final DamageRegion[] damage = new DamageRegion[3];
+    private int back = 0;
+    private int ready = 1;
+    private int front = 2;
+    private boolean fresh = false;
+
+    /**
+     * Creates a TripleBuffer.
+     * All three frames start out fully transparent.
+     * @param width The width of each frame.
+     * @param height The height of each frame.
+     */
+    public TripleBuffer(int width, int height)
+    {
+        for(int index = 0; index < frames.length; index++)
+        {
+            frames[index] = IntRaster.createImage(width, height);
+            rasters[index] = IntRaster.of(frames[index]);
+            damage[index] = new DamageRegion(width, height);
+            damage[index].addAll();
+        }
+    }
+
+    /**
+     * Get the frame to draw on.
+     * <p>The contents of this frame are whatever was drawn on it last time it
+     * was the back frame. This should only be called by the producer.
+     * @return The back frame.
+     */
+    public BufferedImage getBack(){return frames[back];}
+
+    /**
+     * Get the pixels of the frame to draw on.
+     * This should only be called by the producer.
+     * @return The IntRaster of the back frame.
+     */
+    public IntRaster getBackRaster(){return rasters[back];}
+
+    /**
+     * Marks a region as changed on all three frames.
+     * This should only be called by the producer.
+     * @param changed The region that changed.
+     */
+    void addDamage(DamageRegion changed)
+    {
+        for(DamageRegion region : damage)
+        {
+            region.addAll(changed);
+        }
+    }
+    
+    /**
+     * Marks all three frames as completely out of date.
+     * This should only be called by the producer.
+     */
+    public void invalidate()
+    {
+        for(DamageRegion region : damage)
+        {
+            region.addAll();
+        }
+    }
+    
+    /**
+     * Get the parts of the back frame that are out of date.
+     * <p>Once the producer has redrawn them, it should clear() the region
+     * returned. This should only be called by the producer.
+     * @return The damage on the back frame.
+     */
+    DamageRegion getBackDamage(){return damage[back];}
+
+    /**
+     * Marks the back frame as complete.
+     * <p>The finished frame becomes the ready frame, and the producer is given
+     * the old ready frame to draw on next.
+     */
+    public synchronized void publish()
+    {
+        int temp = ready;
+        ready = back;
+        back = temp;
+        fresh = true;
+    }
+
+    /**
+     * Get the most recently completed frame.
+     * <p>The frame returned is left alone until the next call to this method.
+     * If no new frame has been published since the last call, the same frame
+     * is returned again. This should only be called by the consumer.
+     * @return The front frame.
+     */
+    public synchronized BufferedImage acquireFront()
+    {
+        if(fresh)
+        {
+            int temp = front;
+            front = ready;
+            ready = temp;
+            fresh = false;
+        }
+        return frames[front];
+    }
+}
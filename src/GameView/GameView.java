@@ -20,6 +20,11 @@ import javax.swing.JComponent;
  * on the frame to repaint the GameView repeatedly, or inside the GameModel to
  * allow the game to control its frame rate. A Timer is not a necessity; the
  * GameModel may instead call a repaint at times when the screen changes.
+ * GameModel.GameLoop is usually the best choice: it runs the game and draws
+ * frames on its own thread, and only needs this to repaint.
+ * <p>Since repaints can be merged or put off by Swing, GameCanvas can be used
+ * instead, to push each frame to the screen as soon as it's drawn. This
+ * class remains for compatibility, and for use inside Swing layouts.
  * @author Justis
  */
 public class GameView extends JComponent
@@ -28,7 +33,7 @@ public class GameView extends JComponent
      * Utilized as the default View Mode for this game engine. Simply
      * displays a black screen, 240 pixels wide and 160 pixels tall.
      */
-    private static class NullViewMode implements ViewMode
+    static class NullViewMode implements ViewMode
     {
         private static final int WIDTH = 240;
         private static final int HEIGHT = 160;
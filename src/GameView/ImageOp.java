@@ -5,9 +5,15 @@
  */
 package GameView;
 
+import java.awt.Color;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
 import java.util.InputMismatchException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Operate on images.
@@ -18,12 +24,24 @@ import java.util.InputMismatchException;
  * <p>Any combination of transformations is valid, although not necessarily
  * commutative. Additionally, any transformations that lie outside the bounding
  * box of the original image are ignored when apply() is called.
+ * <p>Rather than making a new image, applyTo() draws the transformed image
+ * straight into one that already exists, such as the frame being drawn, so
+ * a Mode 7 layer needs no images in between.
  * @author Justis
  */
 public class ImageOp
 {
+    //applyParallel() splits the image into this many bands per thread...
+    private static final int BANDS_PER_THREAD = 4;
+    //...unless that would make bands shorter than this.
+    private static final int MIN_BAND_LINES = 8;
+    
     private BufferedImage image;
-    private double[][] affineMatrix;
+    private final AffineBuilder matrix = new AffineBuilder();
+    private boolean mipmapping = false;
+    private boolean blending = false;
+    private boolean keyed = false;
+    private int transparentRGB = 0;
     
     /**
      * Start operating on an image.
@@ -36,18 +54,88 @@ public class ImageOp
             throw new NullPointerException("Image can't be null.");
         }
         this.image = image;
-        affineMatrix = getNeutralArray();
     }
     
-    /*
-    Helper method. Delivers a fresh matrix, with 1's along the diagonal and
-    0's everywhere else.
-    */
-    private static double[][] getNeutralArray()
+    /**
+     * Set whether shrunk lines are drawn from smaller copies of the image.
+     * <p>With this on, a mip pyramid of the image is built: copies of the
+     * image at half size, quarter size, and so on, each pixel the average of
+     * the pixels it covers. Each line is then read from the copy closest to
+     * the size it's drawn at. Lines drawn far smaller than the image, such as
+     * the far end of a Mode 7 floor, then draw faster and shimmer less, at the
+     * cost of looking softer. Lines that aren't shrunk look exactly the same.
+     * <p>With a transparent color, the pyramid is built with that color
+     * already removed, so it fades out at the edges rather than leaving a halo
+     * of it. Shrunk lines then skip pixels that are fully transparent, and
+     * draw the partly transparent edges like any other pixel.
+     * <p>The pyramid is built the first time it's needed, and kept for as long
+     * as the image is, so later ImageOps on the same image reuse it. If the
+     * image is drawn on afterwards, call invalidateMipmaps(BufferedImage).
+     * <p>This is off by default.
+     * @param enabled True to read shrunk lines from the pyramid.
+     * @return The instance of this ImageOp, for chaining.
+     */
+    public ImageOp setMipmapping(boolean enabled)
+    {
+        mipmapping = enabled;
+        return this;
+    }
+    
+    /**
+     * Set whether pixels are drawn over what's already there.
+     * <p>Normally, each pixel drawn replaces the one underneath it, alpha and
+     * all. With this on, pixels are blended over the pixel underneath
+     * instead, so translucent parts of the image let the destination show
+     * through. This only makes a difference to applyTo(); apply() and the
+     * others draw onto a blank image, where blending changes nothing.
+     * <p>This is off by default.
+     * @param enabled True to blend pixels over the destination.
+     * @return The instance of this ImageOp, for chaining.
+     */
+    public ImageOp setBlending(boolean enabled)
+    {
+        blending = enabled;
+        return this;
+    }
+    
+    /**
+     * Sets the transparent color of the image.
+     * <p>Pixels of exactly this color aren't drawn at all, like a sprite's
+     * transparent color in PaintProperties. If a Color of null is provided,
+     * the color in the top-left corner of the image is used.
+     * <p>By default, there is no transparent color.
+     * @param newColor The new transparent color.
+     * @return The instance of this ImageOp, for chaining.
+     */
+    public ImageOp setTransparentRGB(Color newColor)
+    {
+        transparentRGB = (newColor == null) ?
+                image.getRGB(0, 0) :
+                newColor.getRGB();
+        keyed = true;
+        return this;
+    }
+    
+    /**
+     * Removes the transparent color, so every pixel is drawn.
+     * @return The instance of this ImageOp, for chaining.
+     */
+    public ImageOp clearTransparentRGB()
+    {
+        keyed = false;
+        return this;
+    }
+    
+    /**
+     * Throws away the mip pyramid of an image.
+     * This must be called after drawing on an image that has been used with
+     * mipmapping, or the old pyramid would continue to be used. A new one is
+     * built the next time it's needed.
+     * @param image The image that was changed.
+     */
+    public static void invalidateMipmaps(BufferedImage image)
     {
-        double[][] result = new double[3][3];
-        result[0][0] = result[1][1] = result[2][2] = 1;
-        return result;
+        MipPyramid.invalidate(image);
     }
     
     /**
@@ -57,15 +145,15 @@ public class ImageOp
     @Override
     public String toString()
     {
-        return Arrays.deepToString(affineMatrix);
+        return Arrays.deepToString(matrix.toArray());
     }
     
     /**
      * Apply an arbitrary affine matrix.
      * <p>This may be used to apply a custom transformation, if the ones
      * provided here are unsuitable. The matrix provided must be 3x3.
-     * <p>All other methods build the matrix required out of their parameters,
-     * and ultimately call this method to apply it.
+     * Only the top two rows are used; the bottom row of an affine matrix is
+     * always 0, 0, 1.
      * @param rsmatrix The custom affine matrix to apply.
      * @return The instance of this ImageOp, for chaining.
      * @throws NullPointerException The matrix supplied is null.
@@ -79,19 +167,35 @@ public class ImageOp
         if(rsmatrix.length != 3 || rsmatrix[0].length != 3){
             throw new InputMismatchException("Matrix must be 3x3.");
         }
-        double[][] result = new double[3][3];
-        for(int xx = 0; xx < 3; xx++)
-            for(int yy = 0; yy < 3; yy++)
-            {
-                double sum = 0;
-                for(int zz = 0; zz < 3; zz++)
-                    sum += affineMatrix[xx][zz] * rsmatrix[zz][yy];
-                result[xx][yy] = sum;
-            }
-        affineMatrix = result;
+        matrix.multiply(
+                rsmatrix[0][0], rsmatrix[0][1], rsmatrix[0][2],
+                rsmatrix[1][0], rsmatrix[1][1], rsmatrix[1][2]);
+        return this;
+    }
+    
+    /**
+     * Apply an arbitrary affine matrix.
+     * <p>This is the same as multiplyMatrix(double[][]), without needing an
+     * array.
+     * @param affine The custom affine matrix to apply.
+     * @return The instance of this ImageOp, for chaining.
+     * @throws NullPointerException The matrix supplied is null.
+     */
+    public ImageOp multiply(Affine affine)
+    {
+        matrix.multiply(affine);
         return this;
     }
     
+    /**
+     * Get the transformations applied so far.
+     * @return The affine matrix built up by this ImageOp.
+     */
+    public Affine getAffine()
+    {
+        return matrix.build();
+    }
+    
     /*
     Since we're working with doubles here, this checks that everything
     is finite and happy.
@@ -116,10 +220,8 @@ public class ImageOp
     public ImageOp translate(double dx, double dy)
     {
         checkParameters(dx, dy);
-        double[][] transAffine = getNeutralArray();
-        transAffine[0][2] = dx;
-        transAffine[1][2] = dy;
-        return multiplyMatrix(transAffine);
+        matrix.translate(dx, dy);
+        return this;
     }
     
     /**
@@ -140,10 +242,8 @@ public class ImageOp
     public ImageOp scale(double dx, double dy)
     {
         checkParameters(dx, dy);
-        double[][] scaleAffine = getNeutralArray();
-        scaleAffine[0][0] = dx;
-        scaleAffine[1][1] = dy;
-        return multiplyMatrix(scaleAffine);
+        matrix.scale(dx, dy);
+        return this;
     }
     
     /**
@@ -175,12 +275,8 @@ public class ImageOp
     public ImageOp rotate(double theta)
     {
         checkParameters(theta);
-        double[][] rotateAffine = getNeutralArray();
-        rotateAffine[0][0] = Math.cos(theta);
-        rotateAffine[0][1] = Math.sin(theta);
-        rotateAffine[1][0] = -Math.sin(theta);
-        rotateAffine[1][1] = Math.cos(theta);
-        return multiplyMatrix(rotateAffine);
+        matrix.rotate(theta);
+        return this;
     }
     
     /**
@@ -241,10 +337,8 @@ public class ImageOp
     public ImageOp shear(double thetaX, double thetaY)
     {
         checkParameters(thetaX, thetaY);
-        double[][] shearAffine = getNeutralArray();
-        shearAffine[0][1] = Math.tan(thetaX);
-        shearAffine[1][0] = Math.tan(thetaY);
-        return multiplyMatrix(shearAffine);
+        matrix.shear(thetaX, thetaY);
+        return this;
     }
     
     /**
@@ -258,10 +352,8 @@ public class ImageOp
      */
     public ImageOp reflect(boolean xAxis, boolean yAxis)
     {
-        double[][] flipAffine = getNeutralArray();
-        if(yAxis){flipAffine[0][0] = -1;}
-        if(xAxis){flipAffine[1][1] = -1;}
-        return multiplyMatrix(flipAffine);
+        matrix.reflect(xAxis, yAxis);
+        return this;
     }
     
     /**
@@ -291,30 +383,22 @@ public class ImageOp
         */
         
         //These constants are used just to make everything less confusing.
-        final double a = affineMatrix[0][0];
-        final double b = affineMatrix[0][1];
-        final double c = affineMatrix[0][2];
-        final double d = affineMatrix[1][0];
-        final double e = affineMatrix[1][1];
-        final double f = affineMatrix[1][2];
+        final double a = matrix.getA();
+        final double b = matrix.getB();
+        final double c = matrix.getC();
+        final double d = matrix.getD();
+        final double e = matrix.getE();
+        final double f = matrix.getF();
         
-        final double xNumConst = (b * f) - (e * c);
-        final double yNumConst = (d * c) - (a * f);
-        final double denomConst = 1 / ((e * a) - (b * d)); //Curiously, this is identical between both equations.
-        BufferedImage newImage = new BufferedImage(
-            image.getWidth(),
-            image.getHeight(),
-            BufferedImage.TYPE_4BYTE_ABGR);
-        for(int xx = 0; xx < image.getWidth(); xx++)
-            for(int yy = 0; yy < image.getHeight(); yy++)
-            {
-                double readX = ((e * xx) - (b * yy) + xNumConst) * denomConst;
-                double readY = ((a * yy) - (d * xx) + yNumConst) * denomConst;
-                if(readX < 0 || readY < 0 
-                    || readX >= image.getWidth() || readY >= image.getHeight()){continue;}
-                int rgb = image.getRGB((int)readX, (int)readY);
-                newImage.setRGB(xx, yy, rgb);
-            }
+        //The reversing itself, and walking along each row, is in Rasterizer.
+        Source src = source();
+        BufferedImage newImage = IntRaster.createImage(image.getWidth(), image.getHeight());
+        IntRaster dst = IntRaster.of(newImage);
+        for(int yy = 0; yy < image.getHeight(); yy++)
+        {
+            src.row(dst.getData(), dst.indexOf(0, yy), 0, yy, image.getWidth(),
+                    a, b, c, d, e, f);
+        }
         return newImage;
     }
     
@@ -325,59 +409,85 @@ public class ImageOp
      * placing them in the new image, the reverse process occurs, ensuring there
      * are no gaps and providing a smooth image.
      * <p>Unlike the apply() method, the image returned from this method returns
-     * the full image. This comes with the expense of an extra pass through the
-     * image, to determine the ultimate bounds of the new image. The returned
+     * the full image. The bounds of the new image are found from where the
+     * corners of the original image end up. The returned
      * image size is equal the smallest it can be, while still containing the
      * original image.
      * @return The transformed image, unclipped.
      */
     public BufferedImage applyUnclipped()
     {
-        final double a = affineMatrix[0][0];
-        final double b = affineMatrix[0][1];
-        final double c = affineMatrix[0][2];
-        final double d = affineMatrix[1][0];
-        final double e = affineMatrix[1][1];
-        final double f = affineMatrix[1][2];
-        
-        final double xNumConst = (b * f) - (e * c);
-        final double yNumConst = (d * c) - (a * f);
-        final double denomConst = 1 / ((e * a) - (b * d)); //Curiously, this is identical between both equations.
+        final double a = matrix.getA();
+        final double b = matrix.getB();
+        final double c = matrix.getC();
+        final double d = matrix.getD();
+        final double e = matrix.getE();
+        final double f = matrix.getF();
         
-        //First, apply the transform to the original image. Determine the bounding box.
+        /*
+        First, determine the bounding box. Since the transform is affine, the
+        furthest pixels out are always at the corners, so only those need to
+        be transformed.
+        */
+        final int right = image.getWidth() - 1;
+        final int bottom = image.getHeight() - 1;
         int minX = Integer.MAX_VALUE; int maxX = Integer.MIN_VALUE;
         int minY = Integer.MAX_VALUE; int maxY = Integer.MIN_VALUE;
-        for(int xx = 0; xx < image.getWidth(); xx++)
-            for(int yy = 0; yy < image.getHeight(); yy++)
-            {
-                double readX = (a * xx) + (b * yy) + c;
-                minX = Math.min(minX, (int)readX);
-                maxX = Math.max(maxX, (int)readX);
-                double readY = (d * xx) + (e * yy) + f;
-                minY = Math.min(minY, (int)readY);
-                maxY = Math.max(maxY, (int)readY);
-            }
+        for(int corner = 0; corner < 4; corner++)
+        {
+            int xx = (corner & 1) == 0 ? 0 : right;
+            int yy = (corner & 2) == 0 ? 0 : bottom;
+            double readX = (a * xx) + (b * yy) + c;
+            minX = Math.min(minX, (int)readX);
+            maxX = Math.max(maxX, (int)readX);
+            double readY = (d * xx) + (e * yy) + f;
+            minY = Math.min(minY, (int)readY);
+            maxY = Math.max(maxY, (int)readY);
+        }
         
         //Create the new image, based on the bounds found. Put everything in place.
         int newWidth = maxX - minX + 1;
         int newHeight = maxY - minY + 1;
-        BufferedImage newImage = new BufferedImage(
-            newWidth,
-            newHeight,
-            BufferedImage.TYPE_4BYTE_ABGR);
-        for(int xx = minX; xx <= maxX; xx++)
-            for(int yy = minY; yy <= maxY; yy++)
-            {
-                double readX = ((e * xx) - (b * yy) + xNumConst) * denomConst;
-                double readY = ((a * yy) - (d * xx) + yNumConst) * denomConst;
-                if(readX < 0 || readY < 0 
-                    || readX >= image.getWidth() || readY >= image.getHeight()){continue;}
-                int rgb = image.getRGB((int)readX, (int)readY);
-                newImage.setRGB(xx - minX, yy - minY, rgb);
-            }
+        Source src = source();
+        BufferedImage newImage = IntRaster.createImage(newWidth, newHeight);
+        IntRaster dst = IntRaster.of(newImage);
+        for(int yy = minY; yy <= maxY; yy++)
+        {
+            src.row(dst.getData(), dst.indexOf(0, yy - minY), minX, yy, newWidth,
+                    a, b, c, d, e, f);
+        }
         return newImage;
     }
     
+    /**
+     * Applies all transformations to the image, reusing earlier results.
+     * <p>This is the same as apply(), except the result is looked up in the
+     * shared TransformCache first, and only drawn if it isn't there. The
+     * image returned is shared, and must not be drawn on.
+     * @return The transformed image.
+     * @see TransformCache
+     */
+    public BufferedImage applyCached()
+    {
+        return TransformCache.getInstance().get(image, matrix.build(), false, mipmapping,
+                keyed, transparentRGB);
+    }
+    
+    /**
+     * Applies all transformations to the image, unclipped, reusing earlier
+     * results.
+     * <p>This is the same as applyUnclipped(), except the result is looked up
+     * in the shared TransformCache first, and only drawn if it isn't there.
+     * The image returned is shared, and must not be drawn on.
+     * @return The transformed image, unclipped.
+     * @see TransformCache
+     */
+    public BufferedImage applyUnclippedCached()
+    {
+        return TransformCache.getInstance().get(image, matrix.build(), true, mipmapping,
+                keyed, transparentRGB);
+    }
+    
     /**
      * Applies all transformations to an image.
      * <p>This method allows the programmer to provide a MatrixFunction, which
@@ -387,39 +497,435 @@ public class ImageOp
      * AffineMatrix, and the line is drawn according to the result.
      * <p>The main intention of this is to emulate Mode 7 graphics, which is
      * done on the GBA by modifying the matrix on each scanline.
+     * <p>The MatrixFunction is asked for each scanline through
+     * apply(int, AffineBuilder), so a MatrixFunction that implements that
+     * method creates no garbage at all.
      * @param fn The MatrixFunction which will provide the matrix modifier
      * for each scanline.
      * @return The transformed image.
      */
     public BufferedImage apply(MatrixFunction fn)
     {
-        BufferedImage newImage = new BufferedImage(
-            image.getWidth(),
-            image.getHeight(),
-            BufferedImage.TYPE_4BYTE_ABGR);
-        for(int yy = 0; yy < image.getHeight(); yy++)
+        if(fn == null){
+            throw new NullPointerException("MatrixFunction can't be null.");
+        }
+        BufferedImage newImage = IntRaster.createImage(image.getWidth(), image.getHeight());
+        drawRows(source(), IntRaster.of(newImage), fn, 0, image.getWidth(), 0, image.getHeight(), 0, 0);
+        return newImage;
+    }
+    
+    /**
+     * Applies all transformations to an image, with a matrix for each line.
+     * <p>This is the same as apply(MatrixFunction), except that each line's
+     * matrix is read from a ScanlineTable prepared ahead of time. The table
+     * can be reused for every frame, and only the lines that change need to
+     * be updated.
+     * <p>If no other transformations have been applied to this ImageOp, the
+     * table is used exactly as is, and no matrix math is done at all.
+     * @param table The matrix of each line.
+     * @return The transformed image.
+     * @throws NullPointerException The table is null.
+     * @throws IllegalArgumentException The table has fewer lines than the
+     * image.
+     */
+    public BufferedImage apply(ScanlineTable table)
+    {
+        checkTable(table);
+        BufferedImage newImage = IntRaster.createImage(image.getWidth(), image.getHeight());
+        drawRows(source(), IntRaster.of(newImage), table, 0, image.getWidth(), 0, image.getHeight(), 0, 0);
+        return newImage;
+    }
+    
+    /**
+     * Applies all transformations to an image, splitting the work across
+     * threads.
+     * <p>This is the same as applyParallel(MatrixFunction, Executor), using
+     * the common ForkJoinPool.
+     * @param fn The MatrixFunction which will provide the matrix modifier
+     * for each scanline.
+     * @return The transformed image.
+     * @throws NullPointerException The MatrixFunction is null.
+     */
+    public BufferedImage applyParallel(MatrixFunction fn)
+    {
+        return applyParallel(fn, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Applies all transformations to an image, splitting the work across
+     * threads.
+     * <p>The image is split into horizontal bands, which are drawn at the same
+     * time on the executor provided; the calling thread draws one band itself,
+     * then waits for the rest. The result is exactly the same as
+     * apply(MatrixFunction).
+     * <p>Because of this, the MatrixFunction is called from several threads at
+     * once, for different lines, in no particular order. Each thread gets its
+     * own AffineBuilder, so a MatrixFunction that only reads its own fields
+     * and builds its matrix in apply(int, AffineBuilder) is safe as is. A
+     * MatrixFunction that changes anything while it runs, or gives different
+     * answers depending on the order it's called in, must use apply() instead.
+     * The original image, and this ImageOp, must not be changed until this
+     * method returns.
+     * <p>If the MatrixFunction throws an exception, it is thrown from here
+     * once every band has finished.
+     * @param fn The MatrixFunction which will provide the matrix modifier
+     * for each scanline.
+     * @param executor The executor to draw the bands on.
+     * @return The transformed image.
+     * @throws NullPointerException The MatrixFunction or executor is null.
+     */
+    public BufferedImage applyParallel(MatrixFunction fn, Executor executor)
+    {
+        if(fn == null){
+            throw new NullPointerException("MatrixFunction can't be null.");
+        }
+        return applyInBands(executor, (src, dst, y0, y1) -> drawRows(src, dst, fn, 0, dst.getWidth(), y0, y1, 0, 0));
+    }
+    
+    /**
+     * Applies all transformations to an image, with a matrix for each line,
+     * splitting the work across threads.
+     * <p>This is the same as applyParallel(ScanlineTable, Executor), using
+     * the common ForkJoinPool.
+     * @param table The matrix of each line.
+     * @return The transformed image.
+     * @throws NullPointerException The table is null.
+     * @throws IllegalArgumentException The table has fewer lines than the
+     * image.
+     */
+    public BufferedImage applyParallel(ScanlineTable table)
+    {
+        return applyParallel(table, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Applies all transformations to an image, with a matrix for each line,
+     * splitting the work across threads.
+     * <p>This works like applyParallel(MatrixFunction, Executor). The table is
+     * only read, but must not be changed until this method returns.
+     * @param table The matrix of each line.
+     * @param executor The executor to draw the bands on.
+     * @return The transformed image.
+     * @throws NullPointerException The table or executor is null.
+     * @throws IllegalArgumentException The table has fewer lines than the
+     * image.
+     */
+    public BufferedImage applyParallel(ScanlineTable table, Executor executor)
+    {
+        checkTable(table);
+        return applyInBands(executor, (src, dst, y0, y1) -> drawRows(src, dst, table, 0, dst.getWidth(), y0, y1, 0, 0));
+    }
+    
+    /**
+     * Draws the transformed image into another image.
+     * <p>This is the same as applyTo(BufferedImage, int, int, Rectangle),
+     * with no clip.
+     * @param dest The image to draw into.
+     * @param x The X position in dest of the transformed image's top-left corner.
+     * @param y The Y position in dest of the transformed image's top-left corner.
+     * @throws NullPointerException The destination is null.
+     */
+    public void applyTo(BufferedImage dest, int x, int y)
+    {
+        applyTo(dest, x, y, (Rectangle)null);
+    }
+    
+    /**
+     * Draws the transformed image into another image.
+     * <p>Pixel (X, Y) of dest is drawn exactly as pixel (X - x, Y - y) of
+     * apply() would be, except that the transformed image isn't limited to
+     * the size of the original: everything inside the clip is drawn. Pixels
+     * that land outside the original image aren't drawn, leaving dest as it
+     * was. Blending and the transparent color are used, if set.
+     * <p>If dest is a TYPE_INT_ARGB image, it's drawn into directly, and
+     * nothing is created at all. Other images work, but are copied in and
+     * out again.
+     * @param dest The image to draw into.
+     * @param x The X position in dest of the transformed image's top-left corner.
+     * @param y The Y position in dest of the transformed image's top-left corner.
+     * @param clip The part of dest to draw into, or null for all of it.
+     * @throws NullPointerException The destination is null.
+     */
+    public void applyTo(BufferedImage dest, int x, int y, Rectangle clip)
+    {
+        drawInto(dest, x, y, clip, (src, dst, x0, x1, y0, y1, dx, dy) -> {
+            final double a = matrix.getA();
+            final double b = matrix.getB();
+            final double c = matrix.getC();
+            final double d = matrix.getD();
+            final double e = matrix.getE();
+            final double f = matrix.getF();
+            for(int yy = y0; yy < y1; yy++)
+            {
+                src.row(dst.getData(), dst.indexOf(x0 + dx, yy + dy), x0, yy, x1 - x0,
+                        a, b, c, d, e, f);
+            }
+        });
+    }
+    
+    /**
+     * Draws the transformed image into another image, with a matrix for each
+     * line.
+     * <p>This works like applyTo(BufferedImage, int, int, Rectangle), with
+     * each line transformed as in apply(MatrixFunction). The line number
+     * passed to the MatrixFunction is the row of dest, minus y.
+     * @param dest The image to draw into.
+     * @param x The X position in dest of the transformed image's top-left corner.
+     * @param y The Y position in dest of the transformed image's top-left corner.
+     * @param clip The part of dest to draw into, or null for all of it.
+     * @param fn The MatrixFunction which will provide the matrix modifier
+     * for each scanline.
+     * @throws NullPointerException The destination or MatrixFunction is null.
+     */
+    public void applyTo(BufferedImage dest, int x, int y, Rectangle clip, MatrixFunction fn)
+    {
+        if(fn == null){
+            throw new NullPointerException("MatrixFunction can't be null.");
+        }
+        drawInto(dest, x, y, clip, (src, dst, x0, x1, y0, y1, dx, dy) ->
+                drawRows(src, dst, fn, x0, x1, y0, y1, dx, dy));
+    }
+    
+    /**
+     * Draws the transformed image into another image, with a matrix for each
+     * line.
+     * <p>This works like applyTo(BufferedImage, int, int, Rectangle), with
+     * each line transformed as in apply(ScanlineTable). The line read from
+     * the table is the row of dest, minus y; rows of dest without a line in
+     * the table aren't drawn.
+     * @param dest The image to draw into.
+     * @param x The X position in dest of the transformed image's top-left corner.
+     * @param y The Y position in dest of the transformed image's top-left corner.
+     * @param clip The part of dest to draw into, or null for all of it.
+     * @param table The matrix of each line.
+     * @throws NullPointerException The destination or table is null.
+     */
+    public void applyTo(BufferedImage dest, int x, int y, Rectangle clip, ScanlineTable table)
+    {
+        if(table == null){
+            throw new NullPointerException("Table can't be null.");
+        }
+        drawInto(dest, x, y, clip, (src, dst, x0, x1, y0, y1, dx, dy) ->
+                drawRows(src, dst, table, x0, x1, Math.max(y0, 0),
+                        Math.min(y1, table.getLineCount()), dx, dy));
+    }
+    
+    /*
+    Something that draws lines [y0, y1), columns [x0, x1) of the transformed
+    image, with pixel (X, Y) landing at (X + dx, Y + dy) in dst.
+    */
+    @FunctionalInterface
+    private interface WindowDrawer
+    {
+        void draw(Source src, IntRaster dst, int x0, int x1, int y0, int y1, int dx, int dy);
+    }
+    
+    /*
+    Works out which part of the transformed image lands inside dest and the
+    clip, and draws it. Images that can't be wrapped directly are copied out
+    by IntRaster, so the part drawn is copied back.
+    */
+    private void drawInto(BufferedImage dest, int x, int y, Rectangle clip, WindowDrawer window)
+    {
+        if(dest == null){
+            throw new NullPointerException("Destination can't be null.");
+        }
+        Rectangle area = new Rectangle(0, 0, dest.getWidth(), dest.getHeight());
+        if(clip != null){
+            area = area.intersection(clip);
+        }
+        if(area.isEmpty()){return;}
+        IntRaster dst = IntRaster.of(dest);
+        window.draw(source(), dst, area.x - x, area.x + area.width - x,
+                area.y - y, area.y + area.height - y, x, y);
+        if(!IntRaster.isDirect(dest))
         {
-            double[][] affine = MatrixFunction.multiplyAffine(affineMatrix, fn.apply(yy));
-            double a = affine[0][0];
-            double b = affine[0][1];
-            double c = affine[0][2];
-            double d = affine[1][0];
-            double e = affine[1][1];
-            double f = affine[1][2];
-
-            double xNumConst = (b * f) - (e * c);
-            double yNumConst = (d * c) - (a * f);
-            double denomConst = 1 / ((e * a) - (b * d)); //Curiously, this is identical between both equations.
-            for(int xx = 0; xx < image.getWidth(); xx++)
+            dest.setRGB(area.x, area.y, area.width, area.height,
+                    dst.getData(), dst.indexOf(area.x, area.y), dst.getStride());
+        }
+    }
+    
+    private void checkTable(ScanlineTable table)
+    {
+        if(table == null){
+            throw new NullPointerException("Table can't be null.");
+        }
+        if(table.getLineCount() < image.getHeight()){
+            throw new IllegalArgumentException("Table has fewer lines than the image.");
+        }
+    }
+    
+    /*
+    Draws lines [y0, y1), columns [x0, x1) of the transformed image, asking
+    fn for each line's matrix. Pixel (X, Y) lands at (X + dx, Y + dy) in dst.
+    */
+    private void drawRows(Source src, IntRaster dst, MatrixFunction fn,
+            int x0, int x1, int y0, int y1, int dx, int dy)
+    {
+        AffineBuilder scanline = new AffineBuilder();
+        AffineBuilder affine = new AffineBuilder();
+        for(int yy = y0; yy < y1; yy++)
+        {
+            fn.apply(yy, scanline.setIdentity());
+            affine.set(matrix).multiply(scanline);
+            src.row(dst.getData(), dst.indexOf(x0 + dx, yy + dy), x0, yy, x1 - x0,
+                    affine.getA(), affine.getB(), affine.getC(),
+                    affine.getD(), affine.getE(), affine.getF());
+        }
+    }
+    
+    /*
+    Draws lines [y0, y1), columns [x0, x1) of the transformed image, reading
+    each line's matrix from the table. Pixel (X, Y) lands at (X + dx, Y + dy)
+    in dst.
+    */
+    private void drawRows(Source src, IntRaster dst, ScanlineTable table,
+            int x0, int x1, int y0, int y1, int dx, int dy)
+    {
+        final double[] lines = table.getTable();
+        final boolean plain = matrix.isIdentity();
+        AffineBuilder affine = new AffineBuilder();
+        for(int yy = y0; yy < y1; yy++)
+        {
+            int base = yy * ScanlineTable.STRIDE;
+            if(plain)
+            {
+                src.row(dst.getData(), dst.indexOf(x0 + dx, yy + dy), x0, yy, x1 - x0,
+                        lines[base], lines[base + 1], lines[base + 3], lines[base + 4],
+                        lines[base + 6], lines[base + 7], lines[base + 8]);
+            }
+            else
+            {
+                affine.set(matrix).multiply(
+                        lines[base], lines[base + 1], lines[base + 2],
+                        lines[base + 3], lines[base + 4], lines[base + 5]);
+                src.row(dst.getData(), dst.indexOf(x0 + dx, yy + dy), x0, yy, x1 - x0,
+                        affine.getA(), affine.getB(), affine.getC(),
+                        affine.getD(), affine.getE(), affine.getF());
+            }
+        }
+    }
+    
+    private Source source()
+    {
+        IntRaster pixels = IntRaster.of(image);
+        return new Source(pixels, mipmapping ? MipPyramid.of(image, pixels, keyed, transparentRGB) : null,
+                blending, keyed, transparentRGB);
+    }
+    
+    /*
+    The image being transformed, its mip pyramid, if mipmapping, and how its
+    pixels are put down.
+    */
+    private static final class Source
+    {
+        private final IntRaster pixels;
+        private final MipPyramid pyramid;
+        private final boolean blend;
+        private final boolean keyed;
+        private final int transparentRGB;
+        
+        private Source(IntRaster pixels, MipPyramid pyramid, boolean blend, boolean keyed, int transparentRGB)
+        {
+            this.pixels = pixels;
+            this.pyramid = pyramid;
+            this.blend = blend;
+            this.keyed = keyed;
+            this.transparentRGB = transparentRGB;
+        }
+        
+        /*
+        Draws part of a row, given the forward matrix. Reversing it gives:
+        X = (EX' - BY' + BF - EC) / (AE - BD)
+        Y = (AY' - DX' + DC - FA) / (AE - BD)
+        */
+        private void row(int[] dst, int dstIndex, int x, int y, int count,
+                double a, double b, double c, double d, double e, double f)
+        {
+            final double xNumConst = (b * f) - (e * c);
+            final double yNumConst = (d * c) - (a * f);
+            final double denomConst = 1 / ((e * a) - (b * d)); //Curiously, this is identical between both equations.
+            row(dst, dstIndex, x, y, count, a, b, d, e, xNumConst, yNumConst, denomConst);
+        }
+        
+        /*
+        Draws part of a row, with the matrix already reversed.
+        */
+        private void row(int[] dst, int dstIndex, int x, int y, int count,
+                double a, double b, double d, double e,
+                double xNumConst, double yNumConst, double denomConst)
+        {
+            int level = 0;
+            if(pyramid != null)
+            {
+                level = Math.min(MipPyramid.levelFor(a, b, d, e, denomConst), pyramid.getLevelCount());
+            }
+            IntRaster read = (level == 0) ? pixels : pyramid.getLevel(level);
+            //The levels are already keyed, leaving fully transparent pixels to skip.
+            int key = (level == 0) ? transparentRGB : 0;
+            Rasterizer.row(pixels, read, level, dst, dstIndex, x, y, count,
+                    a, b, d, e, xNumConst, yNumConst, denomConst, blend, keyed, key);
+        }
+    }
+    
+    /*
+    Something that draws a band of lines of the new image.
+    */
+    @FunctionalInterface
+    private interface RowDrawer
+    {
+        void draw(Source src, IntRaster dst, int y0, int y1);
+    }
+    
+    /*
+    Splits the new image into bands, and draws them on the executor. The
+    calling thread draws the first band itself. Bands are kept to a few per
+    thread, so uneven lines (like the sky above a Mode 7 horizon) even out.
+    */
+    private BufferedImage applyInBands(Executor executor, RowDrawer rows)
+    {
+        if(executor == null){
+            throw new NullPointerException("Executor can't be null.");
+        }
+        final int height = image.getHeight();
+        Source src = source();
+        BufferedImage newImage = IntRaster.createImage(image.getWidth(), height);
+        IntRaster dst = IntRaster.of(newImage);
+        int threads = (executor instanceof ForkJoinPool)
+                ? ((ForkJoinPool)executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        int bands = Math.max(1, Math.min(threads * BANDS_PER_THREAD, height / MIN_BAND_LINES));
+        CompletableFuture<?>[] others = new CompletableFuture<?>[bands - 1];
+        for(int band = 1; band < bands; band++)
+        {
+            final int y0 = band * height / bands;
+            final int y1 = (band + 1) * height / bands;
+            others[band - 1] = CompletableFuture.runAsync(() -> rows.draw(src, dst, y0, y1), executor);
+        }
+        RuntimeException failure = null;
+        try
+        {
+            rows.draw(src, dst, 0, height / bands);
+        }
+        catch(RuntimeException ex)
+        {
+            failure = ex;
+        }
+        try
+        {
+            CompletableFuture.allOf(others).join();
+        }
+        catch(CompletionException ex)
+        {
+            if(failure == null)
             {
-                double readX = ((e * xx) - (b * yy) + xNumConst) * denomConst;
-                double readY = ((a * yy) - (d * xx) + yNumConst) * denomConst;
-                if(readX < 0 || readY < 0 
-                    || readX >= image.getWidth() || readY >= image.getHeight()){continue;}
-                int rgb = image.getRGB((int)readX, (int)readY);
-                newImage.setRGB(xx, yy, rgb);
+                Throwable cause = ex.getCause();
+                if(cause instanceof RuntimeException){throw (RuntimeException)cause;}
+                if(cause instanceof Error){throw (Error)cause;}
+                throw ex;
             }
         }
+        if(failure != null){throw failure;}
         return newImage;
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * A view of an image as a flat array of ARGB integers.
+ * <p>Going through getRGB() and setRGB() for every pixel is slow, since each
+ * call has to pass through the image's ColorModel. This class instead exposes
+ * the int[] backing a {@code TYPE_INT_ARGB} image, so pixels can be read and
+ * written with plain array accesses.
+ * <p>Pixel (x, y) lives at {@code getData()[getOffset() + y * getStride() + x]}.
+ * The stride may be larger than the width, which happens for subimages, such
+ * as the frames of a FramedSprite.
+ * <p>Images of any other type are converted into a fresh array when wrapped.
+ * In that case, writing into the array does not change the original image.
+ * @author Justis
+ */
+public final class IntRaster
+{
+    private final int[] data;
+    private final int offset;
+    private final int stride;
+    private final int width;
+    private final int height;
+
+    private IntRaster(int[] data, int offset, int stride, int width, int height)
+    {
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Creates a blank image in the layout this class can wrap directly.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return A new, fully transparent, TYPE_INT_ARGB image.
+     */
+    public static BufferedImage createImage(int width, int height)
+    {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Checks if an image can be wrapped without copying.
+     * @param image The image to check.
+     * @return True if the image is a TYPE_INT_ARGB image backed by an int[].
+     */
+    public static boolean isDirect(BufferedImage image)
+    {
+        return image.getType() == BufferedImage.TYPE_INT_ARGB
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel;
+    }
+
+    /**
+     * Wraps an image.
+     * <p>If the image is a TYPE_INT_ARGB image, the returned IntRaster shares
+     * its pixels with the image. Otherwise, the pixels are converted, once,
+     * into a new array.
+     * @param image The image to wrap.
+     * @return The IntRaster of the image.
+     * @throws NullPointerException The image provided is null.
+     */
+    public static IntRaster of(BufferedImage image)
+    {
+        if(image == null){
+            throw new NullPointerException("Image can't be null.");
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if(isDirect(image))
+        {
+            Raster raster = image.getRaster();
+            DataBufferInt buffer = (DataBufferInt)raster.getDataBuffer();
+            SinglePixelPackedSampleModel model =
+                    (SinglePixelPackedSampleModel)raster.getSampleModel();
+            int scan = model.getScanlineStride();
+            //Subimages share the parent's buffer, and are shifted by the translation.
+            int off = buffer.getOffset()
+                    - raster.getSampleModelTranslateY() * scan
+                    - raster.getSampleModelTranslateX();
+            return new IntRaster(buffer.getData(), off, scan, w, h);
+        }
+        int[] pixels = image.getRGB(0, 0, w, h, null, 0, w);
+        return new IntRaster(pixels, 0, w, w, h);
+    }
+
+    /**
+     * Get the backing array.
+     * @return The array containing the pixels.
+     */
+    public int[] getData(){return data;}
+
+    /**
+     * Get the index of the top-left pixel in the backing array.
+     * @return The offset of pixel (0, 0).
+     */
+    public int getOffset(){return offset;}
+
+    /**
+     * Get the distance between two vertically adjacent pixels in the array.
+     * @return The scanline stride.
+     */
+    public int getStride(){return stride;}
+
+    /**
+     * Get the width of the image.
+     * @return The width, in pixels.
+     */
+    public int getWidth(){return width;}
+
+    /**
+     * Get the height of the image.
+     * @return The height, in pixels.
+     */
+    public int getHeight(){return height;}
+
+    /**
+     * Get the index of a pixel in the backing array.
+     * No bounds checking is done.
+     * @param x The X-coordinate of the pixel.
+     * @param y The Y-coordinate of the pixel.
+     * @return The index of the pixel.
+     */
+    public int indexOf(int x, int y){return offset + y * stride + x;}
+}
@@ -19,6 +19,8 @@ package GameView;
  * for all basic transformations.
  * <p>All static methods provided here will throw an IllegalArgumentException
  * if the parameters provided are positive infinity, negative infinity, or NaN.
+ * They each create a new array; the Affine and AffineBuilder classes provide
+ * the same transformations without doing so.
  * @author Justis
  */
 @FunctionalInterface
@@ -26,6 +28,23 @@ public interface MatrixFunction
 {
     double[][] apply(int index);
     
+    /**
+     * Provides the affine matrix for a line, without creating any arrays.
+     * <p>ImageOp calls this method, rather than apply(int), for each
+     * scanline. The AffineBuilder passed in holds the neutral matrix, and
+     * should be transformed into the matrix for the line. It is reused for
+     * every line, so it must not be kept.
+     * <p>By default, this copies the matrix returned by apply(int). A
+     * MatrixFunction used on every frame should override this to build
+     * its matrix directly, so that no garbage is created per scanline.
+     * @param index The line number.
+     * @param out The matrix to transform.
+     */
+    default void apply(int index, AffineBuilder out)
+    {
+        out.set(apply(index));
+    }
+    
     /**
      * Creates the neutral affine matrix.
      * The matrix returned is a 3x3 matrix, with one along the diagonal, and
@@ -0,0 +1,184 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Smaller and smaller copies of an image, for drawing it shrunk.
+ * <p>When an image is drawn much smaller than it really is, such as the far
+ * end of a Mode 7 floor, each pixel drawn skips over many pixels of the
+ * original. Reading pixels that far apart is slow, and which ones happen to
+ * get picked changes with every little movement, which shows up as
+ * shimmering. Instead, each level of the pyramid is half the size of the one
+ * before it, with each pixel the average of four pixels from the level
+ * above, all the way down to a single pixel. A line drawn at a quarter of the
+ * size then reads from the quarter size level, where neighboring pixels
+ * really are next to each other.
+ * <p>Level 0 is the image itself, and isn't stored here. Level n is the image
+ * shrunk by 2^n, rounded up, so every pixel of the image falls in a pixel of
+ * every level.
+ * <p>If the image has a transparent color, that color is removed before
+ * averaging, so it doesn't bleed into the pixels around it as a colored
+ * halo. Those pixels count as fully transparent instead, and since colors
+ * are weighted by alpha, they add nothing but transparency to the average.
+ * The levels of such a pyramid hold no transparent color of their own;
+ * pixels that are fully transparent there are the ones to skip. Each image
+ * can have a pyramid with no transparent color, and one per transparent
+ * color it's used with.
+ * <p>Pyramids are cached by the identity of their image, and dropped when the
+ * image is no longer used anywhere else. Drawing on the image directly can't
+ * be detected, so invalidate() must be called when that happens; the pyramid
+ * is then rebuilt the next time it's needed.
+ * @author Justis
+ */
+final class MipPyramid
+{
+    private static final Map<BufferedImage, List<MipPyramid>> pyramids = new WeakHashMap<>();
+
+    //levels[n - 1] is level n.
+    private final IntRaster[] levels;
+    private final boolean keyed;
+    private final int transparentRGB;
+
+    private MipPyramid(IntRaster base, boolean keyed, int transparentRGB)
+    {
+        this.keyed = keyed;
+        this.transparentRGB = transparentRGB;
+        int count = 0;
+        for(int w = base.getWidth(), h = base.getHeight(); w > 1 || h > 1; count++)
+        {
+            w = (w + 1) >> 1;
+            h = (h + 1) >> 1;
+        }
+        levels = new IntRaster[count];
+        IntRaster above = base;
+        for(int level = 0; level < count; level++)
+        {
+            //Only the image itself can hold the transparent color.
+            levels[level] = shrink(above, keyed && level == 0, transparentRGB);
+            above = levels[level];
+        }
+    }
+
+    /**
+     * Get the pyramid of an image, building it if needed.
+     * @param image The image.
+     * @param base The pixels of the image.
+     * @param keyed True if the image has a transparent color.
+     * @param transparentRGB The transparent color, as ARGB, if keyed.
+     * @return The image's pyramid, with the transparent color removed.
+     */
+    static synchronized MipPyramid of(BufferedImage image, IntRaster base, boolean keyed, int transparentRGB)
+    {
+        List<MipPyramid> list = pyramids.get(image);
+        if(list == null)
+        {
+            list = new ArrayList<>(1);
+            pyramids.put(image, list);
+        }
+        for(MipPyramid pyramid : list)
+        {
+            if(pyramid.keyed == keyed && (!keyed || pyramid.transparentRGB == transparentRGB)){
+                return pyramid;
+            }
+        }
+        MipPyramid pyramid = new MipPyramid(base, keyed, transparentRGB);
+        list.add(pyramid);
+        return pyramid;
+    }
+
+    /**
+     * Throws away the pyramids of an image.
+     * @param image The image that was changed.
+     */
+    static synchronized void invalidate(BufferedImage image)
+    {
+        pyramids.remove(image);
+    }
+
+    /**
+     * Get the number of levels, not counting the image itself.
+     * @return The number of the smallest level.
+     */
+    int getLevelCount(){return levels.length;}
+
+    /**
+     * Get a level.
+     * @param level The level, from 1 to getLevelCount().
+     * @return The pixels of that level.
+     */
+    IntRaster getLevel(int level){return levels[level - 1];}
+
+    /**
+     * Picks the level to read a row from.
+     * <p>Moving one pixel along the row, or down to the next row, moves some
+     * distance in the original image. The level picked is the largest one
+     * whose pixels are no bigger than the longer of those two distances.
+     * The matrix is the forward transformation, as in ImageOp.
+     * @return The level, which is 0 if the row isn't shrunk at all.
+     */
+    static int levelFor(double a, double b, double d, double e, double denomConst)
+    {
+        double alongRow = ((e * e) + (d * d)) * denomConst * denomConst;
+        double downRows = ((a * a) + (b * b)) * denomConst * denomConst;
+        double longest = Math.max(alongRow, downRows);
+        if(!(longest >= 4)){return 0;}
+        //The exponent of a squared length, halved, is the power of two of the length.
+        return Math.getExponent(longest) >> 1;
+    }
+
+    /*
+    Halves an image, averaging each 2x2 block. Colors are weighted by their
+    alpha, so transparent pixels don't darken the edges of what's left. If
+    keyed, pixels of the transparent color count as fully transparent.
+    */
+    private static IntRaster shrink(IntRaster above, boolean keyed, int transparentRGB)
+    {
+        final int w = above.getWidth();
+        final int h = above.getHeight();
+        final int[] pixels = above.getData();
+        IntRaster below = IntRaster.of(IntRaster.createImage((w + 1) >> 1, (h + 1) >> 1));
+        final int[] out = below.getData();
+        for(int yy = 0; yy < below.getHeight(); yy++)
+        {
+            for(int xx = 0; xx < below.getWidth(); xx++)
+            {
+                int count = 0;
+                int sa = 0, sr = 0, sg = 0, sb = 0;
+                for(int sy = yy * 2; sy < Math.min(yy * 2 + 2, h); sy++)
+                {
+                    for(int sx = xx * 2; sx < Math.min(xx * 2 + 2, w); sx++)
+                    {
+                        int argb = pixels[above.indexOf(sx, sy)];
+                        if(keyed && argb == transparentRGB){argb = 0;}
+                        int alpha = argb >>> 24;
+                        sa += alpha;
+                        sr += ((argb >> 16) & 0xFF) * alpha;
+                        sg += ((argb >> 8) & 0xFF) * alpha;
+                        sb += (argb & 0xFF) * alpha;
+                        count++;
+                    }
+                }
+                int argb = 0;
+                if(sa > 0)
+                {
+                    int half = sa >> 1;
+                    argb = (((sa + (count >> 1)) / count) << 24)
+                            | (((sr + half) / sa) << 16)
+                            | (((sg + half) / sa) << 8)
+                            | ((sb + half) / sa);
+                }
+                out[below.indexOf(xx, yy)] = argb;
+            }
+        }
+        return below;
+    }
+}
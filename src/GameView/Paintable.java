@@ -50,4 +50,85 @@ public interface Paintable
      * @param newImage The image that represents this object.
      */
     void setImage(BufferedImage newImage);
+    
+    /**
+     * Adds a listener, to be told when this Paintable item changes.
+     * <p>Paintables that support this call the listener after every change
+     * to how they're drawn: their position, their image, and anything
+     * counted by getModCount(). By default, listeners aren't supported, and
+     * false is returned; Mode0 then checks the Paintable for changes every
+     * frame instead. Sprite subclasses that override getX(), getY() or
+     * getImage() return false too, unless they say otherwise through
+     * Sprite.firesChanges().
+     * @param listener The listener to add.
+     * @return True if the listener will be told about changes.
+     * @throws NullPointerException The listener is null.
+     */
+    default boolean addPaintableListener(PaintableListener listener){return false;}
+    
+    /**
+     * Removes a listener added through addPaintableListener().
+     * If the listener wasn't added, nothing happens.
+     * @param listener The listener to remove.
+     */
+    default void removePaintableListener(PaintableListener listener){}
+    
+    /**
+     * Get the width of this Paintable item.
+     * <p>By default, this is the width of its image. Paintables that draw
+     * themselves may cover more than their image.
+     * @return The width of this object, in pixels.
+     */
+    default int getWidth(){return getImage().getWidth();}
+    
+    /**
+     * Get the height of this Paintable item.
+     * <p>By default, this is the height of its image. Paintables that draw
+     * themselves may cover more than their image.
+     * @return The height of this object, in pixels.
+     */
+    default int getHeight(){return getImage().getHeight();}
+    
+    /**
+     * Get the number of times this Paintable item has changed in a way its
+     * position and image don't show.
+     * <p>This only ever increases. By default, it's always zero; Paintables
+     * that draw themselves from something besides their image, like a
+     * TileLayer's map, count changes to it here.
+     * @return The modification count of this object.
+     */
+    default int getModCount(){return 0;}
+    
+    /**
+     * Checks if this Paintable item draws itself.
+     * <p>Most Paintables are drawn by pasting their image where they are,
+     * which is the default. Those that return true here are drawn by their
+     * own drawOnto() instead. They are never transformed or split into runs,
+     * and when wrapped, they may cover the whole frame.
+     * @return True if drawOnto() draws this object.
+     */
+    default boolean drawsItself(){return false;}
+    
+    /**
+     * Draws this Paintable item onto part of a frame.
+     * <p>This is only called if drawsItself() returns true. Only the pixels
+     * within the clip, [x0, x1) by [y0, y1), may be changed. It may be called
+     * from several threads at once, for different clips, so it must only
+     * read this object.
+     * @param frame The frame being drawn on.
+     * @param x0 The left edge of the clip, inclusive.
+     * @param y0 The top edge of the clip, inclusive.
+     * @param x1 The right edge of the clip, exclusive.
+     * @param y1 The bottom edge of the clip, exclusive.
+     * @param image This object's image, with its transparent color removed.
+     * @param drawX The X position to draw at.
+     * @param drawY The Y position to draw at.
+     * @param wrapped True if this object should wrap around the frame.
+     * @throws UnsupportedOperationException This object doesn't draw itself.
+     */
+    default void drawOnto(IntRaster frame, int x0, int y0, int x1, int y1,
+            IntRaster image, int drawX, int drawY, boolean wrapped)
+    {
+        throw new UnsupportedOperationException("This Paintable is drawn as its image.");
+    }
 }
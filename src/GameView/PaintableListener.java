@@ -0,0 +1,23 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+/**
+ * Is told when a Paintable changes.
+ * <p>Mode0 listens to its Paintables this way, so each frame it only looks
+ * at the ones that changed, rather than asking every one where it is.
+ * @author Justis
+ */
+@FunctionalInterface
+public interface PaintableListener
+{
+    /**
+     * Called after a Paintable moves, changes its image, or changes in some
+     * other way that affects how it's drawn.
+     * @param source The Paintable that changed.
+     */
+    void paintableChanged(Paintable source);
+}
@@ -0,0 +1,66 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.util.Arrays;
+
+/**
+ * The listeners of a Paintable.
+ * <p>Paintables rarely have more than one listener, and are told about
+ * changes far more often than listeners come and go, so they're kept in a
+ * plain array that's copied when changed.
+ * @author Justis
+ */
+final class PaintableListeners
+{
+    private static final PaintableListener[] NONE = new PaintableListener[0];
+
+    private PaintableListener[] listeners = NONE;
+
+    /**
+     * Adds a listener.
+     * @param listener The listener to add.
+     * @throws NullPointerException The listener is null.
+     */
+    void add(PaintableListener listener)
+    {
+        if(listener == null){
+            throw new NullPointerException("Listener can't be null.");
+        }
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Removes a listener, if it was added.
+     * @param listener The listener to remove.
+     */
+    void remove(PaintableListener listener)
+    {
+        for(int index = 0; index < listeners.length; index++)
+        {
+            if(listeners[index] == listener)
+            {
+                PaintableListener[] fewer = new PaintableListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, fewer, 0, index);
+                System.arraycopy(listeners, index + 1, fewer, index, fewer.length - index);
+                listeners = (fewer.length == 0) ? NONE : fewer;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tells every listener that a Paintable changed.
+     * @param source The Paintable that changed.
+     */
+    void fire(Paintable source)
+    {
+        for(PaintableListener listener : listeners){
+            listener.paintableChanged(source);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+/**
+ * Draws rows of an affine-transformed image.
+ * <p>This is the inner loop of ImageOp. For each pixel of a row of the new
+ * image, the affine matrix is reversed to find which pixel of the original
+ * image lands there. Rather than reversing the matrix from scratch for each
+ * pixel, only the first pixel of each row is worked out with doubles. Moving
+ * one pixel to the right always moves the same amount in the original image,
+ * so the rest of the row is found by adding that step over and over, in
+ * fixed point.
+ * <p>Coordinates are kept as longs with 32 fractional bits. Each step is off
+ * by at most 2^-33 of a pixel, and rows are restarted from doubles every
+ * 4096 pixels, so the fixed point position is always within 2^-20 of a pixel
+ * of the exact one. Wherever it is further than that from a pixel boundary,
+ * it picks the same pixel the doubles would. The few pixels that land closer
+ * than that to a boundary are worked out with doubles, exactly as they always
+ * were, so the image is identical to doing every pixel with doubles, rounding
+ * quirks and all.
+ * <p>Before stepping along a row, the range of pixels that land inside the
+ * original image is solved for directly, with integer math on the fixed
+ * point coordinates. Only that range is visited, so a rotated image costs
+ * time for the pixels it covers, not for its whole bounding box.
+ * <p>Rows where the coordinates are too large or not finite, such as when
+ * the matrix can't be reversed, are done entirely with doubles.
+ * @author Justis
+ */
+final class Rasterizer
+{
+    private static final int FRAC = 32;
+    private static final double ONE = 1L << FRAC;
+    private static final long FRAC_MASK = (1L << FRAC) - 1;
+    //How close to a pixel boundary counts as too close to trust.
+    private static final long NEAR = 1L << (FRAC - 20);
+    //The most pixels stepped before starting again from doubles.
+    private static final int CHUNK = 4096;
+    //Coordinates beyond this could overflow, or lose too much precision.
+    private static final double LIMIT = 1 << 24;
+
+    private Rasterizer(){}
+
+    /**
+     * Draws part of a row.
+     * <p>The pixels from (x, y) to (x + count - 1, y) of the new image are
+     * written to dst, starting at dstIndex. Pixels whose original position
+     * lies outside the original image are left alone.
+     * <p>The matrix is the forward transformation,
+     * X' = aX + bY + c, Y' = dX + eY + f, already partly reversed:
+     * xNumConst = BF - EC, yNumConst = DC - AF, and denomConst = 1 / (AE - BD).
+     * <p>Pixels can be read from a smaller copy of the original image, such
+     * as a mip level. Positions are still worked out, and checked against
+     * the bounds of, the original image, then divided by 2^shift to find
+     * the pixel to read.
+     * <p>Normally, pixels read are simply copied onto dst. With blending on,
+     * they're drawn over what's already there instead. With a color key,
+     * pixels of exactly that color are skipped.
+     * @param src The original image.
+     * @param level The image to read pixels from.
+     * @param shift How many times smaller the level is, as a power of two.
+     * @param dst The pixels of the new image.
+     * @param dstIndex The index in dst of pixel (x, y).
+     * @param x The X-coordinate of the first pixel.
+     * @param y The Y-coordinate of the row.
+     * @param count The number of pixels to draw.
+     * @param blend True to draw over dst, rather than copy onto it.
+     * @param keyed True to skip pixels of the transparent color.
+     * @param transparentRGB The transparent color, as ARGB.
+     */
+    static void row(IntRaster src, IntRaster level, int shift,
+            int[] dst, int dstIndex, int x, int y, int count,
+            double a, double b, double d, double e,
+            double xNumConst, double yNumConst, double denomConst,
+            boolean blend, boolean keyed, int transparentRGB)
+    {
+        for(int done = 0; done < count; done += CHUNK)
+        {
+            chunk(src, level, shift, dst, dstIndex + done, x + done, y, Math.min(CHUNK, count - done),
+                    a, b, d, e, xNumConst, yNumConst, denomConst, blend, keyed, transparentRGB);
+        }
+    }
+
+    private static void chunk(IntRaster src, IntRaster level, int shift, int[] dst, int dstIndex, int x, int y, int count,
+            double a, double b, double d, double e,
+            double xNumConst, double yNumConst, double denomConst,
+            boolean blend, boolean keyed, int transparentRGB)
+    {
+        double readX = ((e * x) - (b * y) + xNumConst) * denomConst;
+        double readY = ((a * y) - (d * x) + yNumConst) * denomConst;
+        double stepX = e * denomConst;
+        double stepY = -d * denomConst;
+        double lastX = readX + stepX * count;
+        double lastY = readY + stepY * count;
+        if(!(Math.abs(readX) < LIMIT && Math.abs(readY) < LIMIT
+                && Math.abs(lastX) < LIMIT && Math.abs(lastY) < LIMIT))
+        {
+            for(int xx = 0; xx < count; xx++)
+            {
+                exact(src, level, shift, dst, dstIndex + xx, x + xx, y, a, b, d, e, xNumConst, yNumConst, denomConst,
+                        blend, keyed, transparentRGB);
+            }
+            return;
+        }
+        final long fx0 = Math.round(readX * ONE);
+        final long fy0 = Math.round(readY * ONE);
+        final long dfx = Math.round(stepX * ONE);
+        final long dfy = Math.round(stepY * ONE);
+        final int[] levelData = level.getData();
+        final int width = src.getWidth();
+        final int height = src.getHeight();
+        /*
+        Only pixels within NEAR of the image can possibly land in it; the
+        rest are skipped without being looked at. Those within NEAR of an
+        edge are still checked one by one below.
+        */
+        final long maxX = ((long)width << FRAC) + NEAR;
+        final long maxY = ((long)height << FRAC) + NEAR;
+        int start = Math.max(firstInside(fx0, dfx, -NEAR, maxX), firstInside(fy0, dfy, -NEAR, maxY));
+        int end = Math.min(endInside(fx0, dfx, -NEAR, maxX), endInside(fy0, dfy, -NEAR, maxY));
+        start = Math.max(start, 0);
+        end = Math.min(end, count);
+        long fx = fx0 + start * dfx;
+        long fy = fy0 + start * dfy;
+        for(int xx = start; xx < end; xx++, fx += dfx, fy += dfy)
+        {
+            if(((fx + NEAR) & FRAC_MASK) < 2 * NEAR || ((fy + NEAR) & FRAC_MASK) < 2 * NEAR)
+            {
+                exact(src, level, shift, dst, dstIndex + xx, x + xx, y, a, b, d, e, xNumConst, yNumConst, denomConst,
+                        blend, keyed, transparentRGB);
+                continue;
+            }
+            int ix = (int)(fx >> FRAC);
+            int iy = (int)(fy >> FRAC);
+            if(fx < 0 || fy < 0 || ix >= width || iy >= height){continue;}
+            put(dst, dstIndex + xx, levelData[level.indexOf(ix >> shift, iy >> shift)],
+                    blend, keyed, transparentRGB);
+        }
+    }
+
+    /*
+    The first step i where lo <= f0 + i * df < hi. The result may be any
+    huge value if there is none; callers clamp it.
+    */
+    private static int firstInside(long f0, long df, long lo, long hi)
+    {
+        if(df == 0){return (f0 >= lo && f0 < hi) ? Integer.MIN_VALUE : Integer.MAX_VALUE;}
+        if(df > 0){return clamp(-Math.floorDiv(f0 - lo, df));}
+        return clamp(Math.floorDiv(f0 - hi, -df) + 1);
+    }
+
+    /*
+    One past the last step i where lo <= f0 + i * df < hi.
+    */
+    private static int endInside(long f0, long df, long lo, long hi)
+    {
+        if(df == 0){return (f0 >= lo && f0 < hi) ? Integer.MAX_VALUE : Integer.MIN_VALUE;}
+        if(df > 0){return clamp(-Math.floorDiv(f0 - hi, df));}
+        return clamp(Math.floorDiv(f0 - lo, -df) + 1);
+    }
+
+    private static int clamp(long value)
+    {
+        return (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    /*
+    Works out a single pixel entirely with doubles.
+    */
+    private static void exact(IntRaster src, IntRaster level, int shift, int[] dst, int dstIndex, int xx, int yy,
+            double a, double b, double d, double e,
+            double xNumConst, double yNumConst, double denomConst,
+            boolean blend, boolean keyed, int transparentRGB)
+    {
+        double readX = ((e * xx) - (b * yy) + xNumConst) * denomConst;
+        double readY = ((a * yy) - (d * xx) + yNumConst) * denomConst;
+        if(readX < 0 || readY < 0
+            || readX >= src.getWidth() || readY >= src.getHeight()){return;}
+        put(dst, dstIndex, level.getData()[level.indexOf((int)readX >> shift, (int)readY >> shift)],
+                blend, keyed, transparentRGB);
+    }
+
+    private static void put(int[] dst, int index, int argb, boolean blend, boolean keyed, int transparentRGB)
+    {
+        if(keyed && argb == transparentRGB){return;}
+        dst[index] = blend ? AlphaBlend.blend(dst[index], argb) : argb;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+/**
+ * A table of affine matrices, one for each scanline.
+ * <p>On the GBA, Mode 7 effects aren't worked out while the screen is drawn.
+ * Instead, a table holding the matrix for every line is prepared ahead of
+ * time, and the hardware (HDMA) copies the next line's matrix into place
+ * between lines. This class is that table. Rather than asking a
+ * MatrixFunction for a matrix on every line of every frame, its output is
+ * recorded once, and ImageOp.apply(ScanlineTable) reads it straight from
+ * here.
+ * <p>Along with each line's matrix, the table keeps the constants needed to
+ * reverse it, so drawing a line does no matrix math at all. Lines can be
+ * changed one at a time, so an effect that only changes a few lines per frame
+ * only pays for those lines.
+ * <p>All coefficients are stored in a single flat array, one line after
+ * another.
+ * @author Justis
+ */
+public final class ScanlineTable
+{
+    //A, B, C, D, E, F, then the three constants of the reversed matrix.
+    static final int STRIDE = 9;
+
+    private final int lines;
+    private final double[] table;
+    //Handed to MatrixFunctions to fill in, so recording a line allocates nothing.
+    private final AffineBuilder scratch = new AffineBuilder();
+
+    /**
+     * Creates a table where every line holds the neutral matrix.
+     * @param lines The number of scanlines.
+     * @throws IllegalArgumentException The number of lines is negative.
+     */
+    public ScanlineTable(int lines)
+    {
+        if(lines < 0){
+            throw new IllegalArgumentException("Lines can't be negative.");
+        }
+        this.lines = lines;
+        this.table = new double[lines * STRIDE];
+        for(int line = 0; line < lines; line++)
+        {
+            setLine(line, 1, 0, 0, 0, 1, 0);
+        }
+    }
+
+    /**
+     * Creates a table holding the output of a MatrixFunction.
+     * @param lines The number of scanlines.
+     * @param fn The MatrixFunction to record.
+     * @throws IllegalArgumentException The number of lines is negative.
+     * @throws NullPointerException The MatrixFunction is null.
+     */
+    public ScanlineTable(int lines, MatrixFunction fn)
+    {
+        this(lines);
+        fill(fn);
+    }
+
+    /**
+     * Get the number of scanlines in this table.
+     * @return The number of lines.
+     */
+    public int getLineCount(){return lines;}
+
+    /**
+     * Records the output of a MatrixFunction for every line.
+     * @param fn The MatrixFunction to record.
+     * @return The instance of this ScanlineTable, for chaining.
+     * @throws NullPointerException The MatrixFunction is null.
+     */
+    public ScanlineTable fill(MatrixFunction fn)
+    {
+        if(fn == null){
+            throw new NullPointerException("MatrixFunction can't be null.");
+        }
+        for(int line = 0; line < lines; line++)
+        {
+            fn.apply(line, scratch.setIdentity());
+            setLine(line, scratch);
+        }
+        return this;
+    }
+
+    /**
+     * Records the output of a MatrixFunction for a single line.
+     * @param line The line to update.
+     * @param fn The MatrixFunction to ask.
+     * @return The instance of this ScanlineTable, for chaining.
+     * @throws NullPointerException The MatrixFunction is null.
+     * @throws ArrayIndexOutOfBoundsException The line is outside the table.
+     */
+    public ScanlineTable update(int line, MatrixFunction fn)
+    {
+        if(fn == null){
+            throw new NullPointerException("MatrixFunction can't be null.");
+        }
+        fn.apply(line, scratch.setIdentity());
+        return setLine(line, scratch);
+    }
+
+    /**
+     * Set the matrix of a single line.
+     * @param line The line to update.
+     * @param affine The line's new matrix.
+     * @return The instance of this ScanlineTable, for chaining.
+     * @throws NullPointerException The matrix is null.
+     * @throws ArrayIndexOutOfBoundsException The line is outside the table.
+     */
+    public ScanlineTable setLine(int line, Affine affine)
+    {
+        if(affine == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return setLine(line, affine.getA(), affine.getB(), affine.getC(),
+                affine.getD(), affine.getE(), affine.getF());
+    }
+
+    /**
+     * Set the matrix of a single line.
+     * @param line The line to update.
+     * @param affine The line's new matrix.
+     * @return The instance of this ScanlineTable, for chaining.
+     * @throws NullPointerException The matrix is null.
+     * @throws ArrayIndexOutOfBoundsException The line is outside the table.
+     */
+    public ScanlineTable setLine(int line, AffineBuilder affine)
+    {
+        if(affine == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        return setLine(line, affine.getA(), affine.getB(), affine.getC(),
+                affine.getD(), affine.getE(), affine.getF());
+    }
+
+    /**
+     * Set the matrix of a single line.
+     * @param line The line to update.
+     * @param a The X scale.
+     * @param b The X shear.
+     * @param c The X translation.
+     * @param d The Y shear.
+     * @param e The Y scale.
+     * @param f The Y translation.
+     * @return The instance of this ScanlineTable, for chaining.
+     * @throws ArrayIndexOutOfBoundsException The line is outside the table.
+     */
+    public ScanlineTable setLine(int line, double a, double b, double c, double d, double e, double f)
+    {
+        if(line < 0 || line >= lines){
+            throw new ArrayIndexOutOfBoundsException("Invalid line specified");
+        }
+        int base = line * STRIDE;
+        table[base] = a;
+        table[base + 1] = b;
+        table[base + 2] = c;
+        table[base + 3] = d;
+        table[base + 4] = e;
+        table[base + 5] = f;
+        table[base + 6] = (b * f) - (e * c);
+        table[base + 7] = (d * c) - (a * f);
+        table[base + 8] = 1 / ((e * a) - (b * d));
+        return this;
+    }
+
+    /**
+     * Get the matrix of a single line.
+     * @param line The line.
+     * @return The line's matrix.
+     * @throws ArrayIndexOutOfBoundsException The line is outside the table.
+     */
+    public Affine getLine(int line)
+    {
+        if(line < 0 || line >= lines){
+            throw new ArrayIndexOutOfBoundsException("Invalid line specified");
+        }
+        int base = line * STRIDE;
+        return new Affine(table[base], table[base + 1], table[base + 2],
+                table[base + 3], table[base + 4], table[base + 5]);
+    }
+
+    /*
+    The table itself, for ImageOp. Line n starts at n * STRIDE.
+    */
+    double[] getTable(){return table;}
+}
@@ -16,6 +16,13 @@ import javax.imageio.ImageIO;
  * sprite and background is blurred. The only real difference between
  * the two, at this time, is that the Background class provides a constructor
  * that doesn't take a position parameter.
+ * <p>Listeners are told whenever the position or image is changed through
+ * the setters. Subclasses that change what getX(), getY() or getImage()
+ * return some other way must call fireChanged() afterwards.
+ * <p>A subclass that overrides getX(), getY() or getImage() doesn't take
+ * listeners, and so is checked for changes every frame, in case it changes
+ * without calling fireChanged(). Subclasses that do call it can override
+ * firesChanges() to return true.
  * @author Justis
  */
 public class Sprite implements Paintable
@@ -23,6 +30,7 @@ public class Sprite implements Paintable
     private int x;
     private int y;
     private BufferedImage img = null;
+    private final PaintableListeners listeners = new PaintableListeners();
     
     /**
      * Creates a sprite.
@@ -73,7 +81,12 @@ public class Sprite implements Paintable
      * @param newX The new X position.
      */
     @Override
-    public void setX(int newX)      {x = newX;}
+    public void setX(int newX)
+    {
+        if(newX == x){return;}
+        x = newX;
+        fireChanged();
+    }
     
     /**
      * Get the Y position of this sprite.
@@ -87,7 +100,12 @@ public class Sprite implements Paintable
      * @param newY The new Y position.
      */
     @Override
-    public void setY(int newY)      {y = newY;}
+    public void setY(int newY)
+    {
+        if(newY == y){return;}
+        y = newY;
+        fireChanged();
+    }
     
     /**
      * Get this sprite's image.
@@ -104,8 +122,85 @@ public class Sprite implements Paintable
     @Override
     public void setImage(BufferedImage newImage)
     {
-        if(newImage != null)
+        if(newImage != null && newImage != img)
+        {
             img = newImage;
+            fireChanged();
+        }
+    }
+    
+    /**
+     * Adds a listener, to be told when this sprite moves or changes image.
+     * If firesChanges() is false, the listener isn't added.
+     * @param listener The listener to add.
+     * @return True if the listener was added.
+     * @throws NullPointerException The listener is null.
+     */
+    @Override
+    public boolean addPaintableListener(PaintableListener listener)
+    {
+        if(listener == null){
+            throw new NullPointerException("Listener can't be null.");
+        }
+        if(!firesChanges()){return false;}
+        listeners.add(listener);
+        return true;
+    }
+    
+    /**
+     * Removes a listener.
+     * @param listener The listener to remove.
+     */
+    @Override
+    public void removePaintableListener(PaintableListener listener)
+    {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Checks if fireChanged() is called after every change to getX(), getY()
+     * or getImage().
+     * <p>By default, this is true unless one of them is overridden, since
+     * there's no telling what the override returns from one frame to the
+     * next. Subclasses that override them, but still call fireChanged(),
+     * should override this too.
+     * @return True if listeners can be trusted to hear about every change.
+     */
+    protected boolean firesChanges()
+    {
+        return !overridesGetters(Sprite.class);
+    }
+    
+    /**
+     * Checks if getX(), getY() or getImage() are overridden below a class.
+     * @param type The class to check below, this one or one of its
+     * superclasses.
+     * @return True if any of them are declared by a subclass of type.
+     */
+    protected final boolean overridesGetters(Class<? extends Sprite> type)
+    {
+        try
+        {
+            for(String name : new String[]{"getX", "getY", "getImage"})
+            {
+                Class<?> owner = getClass().getMethod(name).getDeclaringClass();
+                if(owner != type && type.isAssignableFrom(owner)){return true;}
+            }
+            return false;
+        }
+        catch(NoSuchMethodException ex)
+        {
+            //Public methods of Sprite are always found.
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Tells the listeners that this sprite changed.
+     */
+    protected void fireChanged()
+    {
+        listeners.fire(this);
     }
     
 }
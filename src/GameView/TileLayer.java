@@ -0,0 +1,371 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Represents a tile-based background layer.
+ * <p>This is how the GBA builds its Mode 0 backgrounds. Rather than one huge
+ * image, the layer is made of a tileset, which is an image holding every tile
+ * side by side, and a map, which says which tile goes where. A 4096x4096 pixel
+ * level made of 8x8 tiles then only needs a 512x512 map of shorts, plus the
+ * tileset, instead of 64 MB of pixels.
+ * <p>Tiles are numbered left to right, top to bottom, starting from zero at
+ * the top-left corner of the tileset. A tile number of -1 leaves that spot
+ * empty, which is how every spot of a new map starts out.
+ * <p>As a Paintable, the X-Y position is the position of the top-left corner of
+ * the map on the screen, like any other Paintable. To scroll the map, move it
+ * in the opposite direction, or use setScroll(int, int). The image of this
+ * Paintable is the tileset.
+ * <p>When a TileLayer's PaintProperties are set to wrap, the map repeats
+ * endlessly in every direction, rather than being wrapped around the screen.
+ * <p>Mode0 only draws the tiles that are actually on the screen. Changes made
+ * to the map through setTile() are noticed automatically; if the array from
+ * getMap() is changed directly, call touch() afterwards.
+ * <p>Listeners are told about every move, scroll, tileset change and change
+ * to the map.
+ * @author Justis
+ */
+public class TileLayer implements Paintable
+{
+    private int x;
+    private int y;
+    private BufferedImage tileset;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int mapWidth;
+    private final int mapHeight;
+    private final short[] map;
+    private int modCount = 0;
+    private final PaintableListeners listeners = new PaintableListeners();
+
+    /**
+     * Creates a TileLayer.
+     * The map starts out empty, and positioned at (0, 0).
+     * @param tileset The image containing every tile.
+     * @param tileWidth The width of a tile, in pixels.
+     * @param tileHeight The height of a tile, in pixels.
+     * @param mapWidth The width of the map, in tiles.
+     * @param mapHeight The height of the map, in tiles.
+     * @throws NullPointerException The tileset is null.
+     * @throws IllegalArgumentException Any size is less than one, or the
+     * tileset is smaller than one tile.
+     */
+    public TileLayer(BufferedImage tileset, int tileWidth, int tileHeight, int mapWidth, int mapHeight)
+    {
+        if(tileset == null){
+            throw new NullPointerException("Tileset can't be null.");
+        }
+        if(tileWidth < 1 || tileHeight < 1 || mapWidth < 1 || mapHeight < 1){
+            throw new IllegalArgumentException("Sizes must be at least one.");
+        }
+        if(tileset.getWidth() < tileWidth || tileset.getHeight() < tileHeight){
+            throw new IllegalArgumentException("Tileset is smaller than one tile.");
+        }
+        this.tileset = tileset;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.mapWidth = mapWidth;
+        this.mapHeight = mapHeight;
+        this.map = new short[mapWidth * mapHeight];
+        Arrays.fill(map, (short)-1);
+    }
+
+    /**
+     * Get the X position of this layer.
+     * @return The X position of the map's top-left corner.
+     */
+    @Override
+    public int getX()               {return x;}
+
+    /**
+     * Set the X position of this layer.
+     * @param newX The new X position of the map's top-left corner.
+     */
+    @Override
+    public void setX(int newX)
+    {
+        if(newX == x){return;}
+        x = newX;
+        listeners.fire(this);
+    }
+
+    /**
+     * Get the Y position of this layer.
+     * @return The Y position of the map's top-left corner.
+     */
+    @Override
+    public int getY()               {return y;}
+
+    /**
+     * Set the Y position of this layer.
+     * @param newY The new Y position of the map's top-left corner.
+     */
+    @Override
+    public void setY(int newY)
+    {
+        if(newY == y){return;}
+        y = newY;
+        listeners.fire(this);
+    }
+
+    /**
+     * Scrolls the layer.
+     * <p>This is the same as setting the position to (-scrollX, -scrollY); the
+     * pixel at (scrollX, scrollY) on the map ends up in the top-left corner of
+     * the screen.
+     * @param scrollX The X coordinate of the map to show at the left edge.
+     * @param scrollY The Y coordinate of the map to show at the top edge.
+     */
+    public void setScroll(int scrollX, int scrollY)
+    {
+        if(x == -scrollX && y == -scrollY){return;}
+        x = -scrollX;
+        y = -scrollY;
+        listeners.fire(this);
+    }
+
+    /**
+     * Get the tileset.
+     * @return The image containing every tile.
+     */
+    @Override
+    public BufferedImage getImage() {return tileset;}
+
+    /**
+     * Set the tileset.
+     * The new tileset is cut into tiles of the same size as the old one. If
+     * the image provided is null, nothing changes.
+     * @param newImage The new tileset.
+     */
+    @Override
+    public void setImage(BufferedImage newImage)
+    {
+        if(newImage != null && newImage != tileset)
+        {
+            tileset = newImage;
+            listeners.fire(this);
+        }
+    }
+
+    /**
+     * Adds a listener, to be told when this layer moves or its map changes.
+     * @param listener The listener to add.
+     * @return True.
+     * @throws NullPointerException The listener is null.
+     */
+    @Override
+    public boolean addPaintableListener(PaintableListener listener)
+    {
+        listeners.add(listener);
+        return true;
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener The listener to remove.
+     */
+    @Override
+    public void removePaintableListener(PaintableListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Get the width of a tile.
+     * @return The width of a tile, in pixels.
+     */
+    public int getTileWidth(){return tileWidth;}
+
+    /**
+     * Get the height of a tile.
+     * @return The height of a tile, in pixels.
+     */
+    public int getTileHeight(){return tileHeight;}
+
+    /**
+     * Get the width of the map.
+     * @return The width of the map, in tiles.
+     */
+    public int getMapWidth(){return mapWidth;}
+
+    /**
+     * Get the height of the map.
+     * @return The height of the map, in tiles.
+     */
+    public int getMapHeight(){return mapHeight;}
+
+    /**
+     * Get the width of the whole layer.
+     * @return The width of the map, in pixels.
+     */
+    public int getPixelWidth(){return mapWidth * tileWidth;}
+
+    /**
+     * Get the height of the whole layer.
+     * @return The height of the map, in pixels.
+     */
+    public int getPixelHeight(){return mapHeight * tileHeight;}
+
+    /**
+     * Get the width of the whole layer.
+     * @return The width of the map, in pixels.
+     */
+    @Override
+    public int getWidth(){return getPixelWidth();}
+
+    /**
+     * Get the height of the whole layer.
+     * @return The height of the map, in pixels.
+     */
+    @Override
+    public int getHeight(){return getPixelHeight();}
+
+    /**
+     * Checks if this layer draws itself, which it does, tile by tile.
+     * @return True.
+     */
+    @Override
+    public boolean drawsItself(){return true;}
+
+    /**
+     * Draws the map onto part of a frame.
+     * <p>Only the tiles within the clip are looked at. Each row of the clip is
+     * walked one tile at a time, so the map is read once per tile per row.
+     * When wrapped, the map repeats endlessly.
+     * @param frame The frame being drawn on.
+     * @param x0 The left edge of the clip, inclusive.
+     * @param y0 The top edge of the clip, inclusive.
+     * @param x1 The right edge of the clip, exclusive.
+     * @param y1 The bottom edge of the clip, exclusive.
+     * @param tileset The tileset, with its transparent color removed.
+     * @param drawX The X position of the map's top-left corner on the frame.
+     * @param drawY The Y position of the map's top-left corner on the frame.
+     * @param wrapped True if the map repeats endlessly.
+     */
+    @Override
+    public void drawOnto(IntRaster frame, int x0, int y0, int x1, int y1,
+            IntRaster tileset, int drawX, int drawY, boolean wrapped)
+    {
+        final int pixelWidth = getPixelWidth();
+        final int pixelHeight = getPixelHeight();
+        final int tilesPerRow = tileset.getWidth() / tileWidth;
+        final int tileCount = tilesPerRow * (tileset.getHeight() / tileHeight);
+        final int[] dstData = frame.getData();
+        final int[] srcData = tileset.getData();
+        if(!wrapped)
+        {
+            x0 = Math.max(x0, drawX);
+            y0 = Math.max(y0, drawY);
+            x1 = Math.min(x1, drawX + pixelWidth);
+            y1 = Math.min(y1, drawY + pixelHeight);
+        }
+        for(int yy = y0; yy < y1; yy++)
+        {
+            int mapY = Math.floorMod(yy - drawY, pixelHeight);
+            int mapRow = (mapY / tileHeight) * mapWidth;
+            int inTileY = mapY % tileHeight;
+            int mapX = Math.floorMod(x0 - drawX, pixelWidth);
+            int d = frame.indexOf(x0, yy);
+            int remaining = x1 - x0;
+            while(remaining > 0)
+            {
+                int inTileX = mapX % tileWidth;
+                int length = Math.min(tileWidth - inTileX, remaining);
+                int tile = map[mapRow + mapX / tileWidth];
+                if(tile >= 0 && tile < tileCount)
+                {
+                    int s = tileset.indexOf((tile % tilesPerRow) * tileWidth + inTileX,
+                            (tile / tilesPerRow) * tileHeight + inTileY);
+                    for(int xx = 0; xx < length; xx++)
+                    {
+                        int paintRGB = srcData[s + xx];
+                        int alpha = paintRGB >>> 24;
+                        if(alpha == 0xFF){
+                            dstData[d + xx] = paintRGB;
+                        }
+                        else if(alpha != 0){
+                            dstData[d + xx] = AlphaBlend.blendTranslucent(dstData[d + xx], paintRGB);
+                        }
+                    }
+                }
+                d += length;
+                remaining -= length;
+                mapX += length;
+                if(mapX == pixelWidth){mapX = 0;}
+            }
+        }
+    }
+
+    /**
+     * Get the tile at a spot on the map.
+     * @param column The column of the spot, in tiles.
+     * @param row The row of the spot, in tiles.
+     * @return The tile number, or -1 if the spot is empty.
+     * @throws ArrayIndexOutOfBoundsException The spot is outside the map.
+     */
+    public int getTile(int column, int row)
+    {
+        checkSpot(column, row);
+        return map[row * mapWidth + column];
+    }
+
+    /**
+     * Set the tile at a spot on the map.
+     * @param column The column of the spot, in tiles.
+     * @param row The row of the spot, in tiles.
+     * @param tile The tile number, or -1 to leave the spot empty.
+     * @throws ArrayIndexOutOfBoundsException The spot is outside the map.
+     * @throws IllegalArgumentException The tile number is less than -1, or
+     * too large to fit in the map.
+     */
+    public void setTile(int column, int row, int tile)
+    {
+        checkSpot(column, row);
+        if(tile < -1 || tile > Short.MAX_VALUE){
+            throw new IllegalArgumentException("Tile must be between -1 and " + Short.MAX_VALUE + ".");
+        }
+        map[row * mapWidth + column] = (short)tile;
+        touch();
+    }
+
+    private void checkSpot(int column, int row)
+    {
+        if(column < 0 || column >= mapWidth || row < 0 || row >= mapHeight){
+            throw new ArrayIndexOutOfBoundsException("Invalid spot specified");
+        }
+    }
+
+    /**
+     * Get the map itself.
+     * <p>The map is stored row by row, so the tile at (column, row) is at index
+     * {@code row * getMapWidth() + column}. Changes to this array change the
+     * map; call touch() afterwards so they get drawn.
+     * @return The array backing the map.
+     */
+    public short[] getMap(){return map;}
+
+    /**
+     * Marks the map as changed.
+     * Only needed after changing the array from getMap() directly.
+     */
+    public void touch()
+    {
+        modCount++;
+        listeners.fire(this);
+    }
+
+    /**
+     * Get the number of times the map has changed.
+     * <p>This only ever increases, so it can be compared against an older
+     * value to see if anything changed in between.
+     * @return The modification count of the map.
+     */
+    @Override
+    public int getModCount(){return modCount;}
+}
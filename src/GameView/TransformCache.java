@@ -0,0 +1,386 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Caches transformed images.
+ * <p>Games tend to rotate and scale the same sprites to the same handful of
+ * angles and sizes over and over. Rather than rebuilding the transformed image
+ * every time, this keeps the results of ImageOp around, so asking for the same
+ * transformation of the same image again is just a lookup.
+ * <p>Results are keyed by the identity of the original image and the affine
+ * matrix. The matrix is rounded to the nearest 1/65536 first, so that the
+ * tiny differences between, say, rotating by 30 degrees once and by 10
+ * degrees three times still find the same result. The rounded matrix is
+ * also the one actually drawn with, so the same key always gives the same
+ * image, no matter which matrix asked for it first. An ImageOp's transparent
+ * color is part of the key too.
+ * <p>Drawing on the original image directly can't be detected; invalidate()
+ * must be called when that happens.
+ * <p>The cache holds on to results up to a memory limit, and throws away the
+ * least recently used results when the limit is passed. Hits, misses and
+ * evictions are counted, to help pick a good limit.
+ * <p>Keys hold on to their original images, so an original stays in memory
+ * for as long as any of its results are cached, even if nothing else uses
+ * it. Only the results count towards the memory limit. Call invalidate()
+ * or clear() to let go of originals that are done with sooner.
+ * <p>Results are drawn outside the cache's lock, so threads looking up other
+ * results never wait on a slow transformation. If several threads ask for
+ * the same missing result at once, only the first one draws it, and the
+ * rest wait for it.
+ * @author Justis
+ */
+public class TransformCache
+{
+    private static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+    private static final double QUANTUM = 1 << 16;
+
+    private static TransformCache instance = null;
+
+    private final Map<Key, BufferedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //Results being drawn right now, for whoever else asks for them meanwhile.
+    private final Map<Key, CompletableFuture<BufferedImage>> drawing = new HashMap<>();
+    private long capacity;
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /*
+    Images are compared by identity, since BufferedImage doesn't define
+    equals() and two different images could hold the same pixels.
+    */
+    private static class Key
+    {
+        private final BufferedImage image;
+        private final long a, b, c, d, e, f;
+        private final boolean unclipped;
+        private final boolean mipmapping;
+        private final boolean keyed;
+        private final int transparentRGB;
+
+        private Key(BufferedImage image, Affine affine, boolean unclipped, boolean mipmapping,
+                boolean keyed, int transparentRGB)
+        {
+            this.image = image;
+            this.a = quantize(affine.getA());
+            this.b = quantize(affine.getB());
+            this.c = quantize(affine.getC());
+            this.d = quantize(affine.getD());
+            this.e = quantize(affine.getE());
+            this.f = quantize(affine.getF());
+            this.unclipped = unclipped;
+            this.mipmapping = mipmapping;
+            this.keyed = keyed;
+            //Without a transparent color, the color doesn't matter.
+            this.transparentRGB = keyed ? transparentRGB : 0;
+        }
+
+        private Affine toAffine()
+        {
+            return new Affine(a / QUANTUM, b / QUANTUM, c / QUANTUM,
+                    d / QUANTUM, e / QUANTUM, f / QUANTUM);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if(o instanceof Key)
+            {
+                Key other = (Key)o;
+                return image == other.image
+                        && a == other.a && b == other.b && c == other.c
+                        && d == other.d && e == other.e && f == other.f
+                        && unclipped == other.unclipped && mipmapping == other.mipmapping
+                        && keyed == other.keyed && transparentRGB == other.transparentRGB;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            long hash = a;
+            hash = hash * 31 + b;
+            hash = hash * 31 + c;
+            hash = hash * 31 + d;
+            hash = hash * 31 + e;
+            hash = hash * 31 + f;
+            hash = hash * 8 + (unclipped ? 4 : 0) + (mipmapping ? 2 : 0) + (keyed ? 1 : 0);
+            hash = hash * 31 + transparentRGB;
+            return System.identityHashCode(image) * 31 + Long.hashCode(hash);
+        }
+    }
+
+    private static long quantize(double value)
+    {
+        return Math.round(value * QUANTUM);
+    }
+
+    /**
+     * Creates a TransformCache.
+     * @param capacity The maximum number of bytes of images to keep.
+     */
+    public TransformCache(long capacity)
+    {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Get the shared TransformCache.
+     * <p>This is the cache used by ImageOp.applyCached(). It holds up to 32 MB
+     * of images.
+     * @return The shared TransformCache.
+     */
+    public static synchronized TransformCache getInstance()
+    {
+        if(instance == null)
+        {
+            instance = new TransformCache(DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    /**
+     * Set the memory limit of this cache.
+     * If the cache is currently over the new limit, old results are thrown
+     * away immediately.
+     * @param newCapacity The maximum number of bytes of images to keep.
+     * @throws IllegalArgumentException The capacity is negative.
+     */
+    public synchronized void setCapacity(long newCapacity)
+    {
+        if(newCapacity < 0){
+            throw new IllegalArgumentException("Capacity can't be negative.");
+        }
+        capacity = newCapacity;
+        trim();
+    }
+
+    /**
+     * Get the number of bytes of images currently held.
+     * @return The size of the cache, in bytes.
+     */
+    public synchronized long getSize(){return size;}
+
+    /**
+     * Get the number of times a result was found in the cache.
+     * @return The number of hits.
+     */
+    public synchronized long getHits(){return hits;}
+
+    /**
+     * Get the number of times a result had to be drawn.
+     * @return The number of misses.
+     */
+    public synchronized long getMisses(){return misses;}
+
+    /**
+     * Get the number of results thrown away to stay under the memory limit.
+     * Results thrown away by invalidate() or clear() aren't counted.
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictions(){return evictions;}
+
+    /**
+     * Sets the hit, miss and eviction counts back to zero.
+     */
+    public synchronized void resetStatistics()
+    {
+        hits = misses = evictions = 0;
+    }
+
+    /**
+     * Get a transformed image, clipped to the size of the original.
+     * <p>This is the same as new ImageOp(image).multiply(affine).apply(),
+     * using the rounded matrix. The image returned is shared, and must not
+     * be drawn on.
+     * @param image The original image.
+     * @param affine The transformation.
+     * @return The transformed image.
+     * @throws NullPointerException The image or matrix is null.
+     */
+    public BufferedImage apply(BufferedImage image, Affine affine)
+    {
+        return get(image, affine, false, false, false, 0);
+    }
+
+    /**
+     * Get a transformed image, at whatever size it ends up.
+     * <p>This is the same as new ImageOp(image).multiply(affine).applyUnclipped(),
+     * using the rounded matrix. The image returned is shared, and must not
+     * be drawn on.
+     * @param image The original image.
+     * @param affine The transformation.
+     * @return The transformed image, unclipped.
+     * @throws NullPointerException The image or matrix is null.
+     */
+    public BufferedImage applyUnclipped(BufferedImage image, Affine affine)
+    {
+        return get(image, affine, true, false, false, 0);
+    }
+
+    /*
+    Looks the result up under the lock, and draws it outside the lock if it's
+    missing.
+    */
+    BufferedImage get(BufferedImage image, Affine affine, boolean unclipped, boolean mipmapping,
+            boolean keyed, int transparentRGB)
+    {
+        if(image == null){
+            throw new NullPointerException("Image can't be null.");
+        }
+        if(affine == null){
+            throw new NullPointerException("Matrix can't be null.");
+        }
+        Key key = new Key(image, affine, unclipped, mipmapping, keyed, transparentRGB);
+        CompletableFuture<BufferedImage> future;
+        CompletableFuture<BufferedImage> mine = null;
+        synchronized(this)
+        {
+            BufferedImage result = entries.get(key);
+            if(result != null)
+            {
+                hits++;
+                return result;
+            }
+            future = drawing.get(key);
+            if(future != null)
+            {
+                //Someone else is already drawing it, which still saves a drawing.
+                hits++;
+            }
+            else
+            {
+                misses++;
+                mine = new CompletableFuture<>();
+                drawing.put(key, mine);
+            }
+        }
+        if(mine == null){return await(future);}
+        return draw(key, mine);
+    }
+    
+    /*
+    Draws a missing result, stores it unless its image was invalidated in the
+    meantime, and hands it to anyone waiting for it.
+    */
+    private BufferedImage draw(Key key, CompletableFuture<BufferedImage> future)
+    {
+        BufferedImage result;
+        try
+        {
+            ImageOp op = new ImageOp(key.image).multiply(key.toAffine()).setMipmapping(key.mipmapping);
+            if(key.keyed)
+            {
+                op.setTransparentRGB(new Color(key.transparentRGB, true));
+            }
+            result = key.unclipped ? op.applyUnclipped() : op.apply();
+        }
+        catch(RuntimeException | Error ex)
+        {
+            synchronized(this)
+            {
+                drawing.remove(key, future);
+            }
+            future.completeExceptionally(ex);
+            throw ex;
+        }
+        synchronized(this)
+        {
+            //If it's no longer listed, it was invalidated while being drawn.
+            if(drawing.remove(key, future))
+            {
+                entries.put(key, result);
+                size += bytes(result);
+                trim();
+            }
+        }
+        future.complete(result);
+        return result;
+    }
+    
+    /*
+    Waits for another thread to finish drawing a result, and throws whatever
+    it threw, if it failed.
+    */
+    private static BufferedImage await(CompletableFuture<BufferedImage> future)
+    {
+        try
+        {
+            return future.join();
+        }
+        catch(CompletionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException){throw (RuntimeException)cause;}
+            if(cause instanceof Error){throw (Error)cause;}
+            throw ex;
+        }
+    }
+    
+    /**
+     * Throws away all results for an image.
+     * This must be called after drawing on an image directly, or the old
+     * results would continue to be used.
+     * @param image The image that was changed.
+     */
+    public synchronized void invalidate(BufferedImage image)
+    {
+        Iterator<Map.Entry<Key, BufferedImage>> iter = entries.entrySet().iterator();
+        while(iter.hasNext())
+        {
+            Map.Entry<Key, BufferedImage> entry = iter.next();
+            if(entry.getKey().image == image)
+            {
+                size -= bytes(entry.getValue());
+                iter.remove();
+            }
+        }
+        //Anything still being drawn from the old pixels is drawn again when asked for.
+        drawing.keySet().removeIf(key -> key.image == image);
+    }
+
+    /**
+     * Throws away all results.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        drawing.clear();
+        size = 0;
+    }
+
+    /*
+    Throws away the least recently used results until the cache fits. The
+    result just added is kept even if it alone is too big, since it's about
+    to be used.
+    */
+    private void trim()
+    {
+        Iterator<BufferedImage> iter = entries.values().iterator();
+        while(size > capacity && entries.size() > 1)
+        {
+            size -= bytes(iter.next());
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    private static long bytes(BufferedImage image)
+    {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+}
@@ -7,17 +7,19 @@ package gameengine;
 
 import GameController.KeyController;
 import GameModel.AbstractGame;
+import GameModel.GameLoop;
 import Examples.ExampleGame;
 import Examples.Mode7Mode;
 import GameView.GameMode.Mode0;
-import GameView.GameView;
+import GameView.GameCanvas;
 import java.awt.Dimension;
+import java.util.concurrent.TimeUnit;
 import javax.swing.ButtonGroup;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
+import javax.swing.JPopupMenu;
 import javax.swing.JRadioButtonMenuItem;
-import javax.swing.Timer;
 
 /**
  * How to make a game!
@@ -28,14 +30,19 @@ import javax.swing.Timer;
  * has passed. During the GameModel's execution, it needs to add and remove
  * sprites and backgrounds through the ViewMode. An alternative would be
  * to combine these two classes. Your choice.
- * 3. Create a GameView. This is a JComponent that can be put in a JFrame
- * to display the game. It connects to the ViewMode.
+ * 3. Create a GameCanvas. This can be put in a JFrame to display the game,
+ * pushing each frame to the screen as soon as it's drawn. It connects to the
+ * ViewMode. GameView does the same through Swing painting, if you'd rather.
+ * 4. Create a GameLoop. This runs the GameModel at a steady rate on its own
+ * thread, and draws the frames there too, so the window only has to show the
+ * latest one.
  * @author Justis
  */
 public class GameEngine {
 
-    private static GameView gameWindow;
+    private static GameCanvas gameWindow;
     private static JFrame frame;
+    private static GameLoop loop;
     
     public static final int DEFAULT_SIZE = 3; //Change the default size at your whim!
     
@@ -44,6 +51,8 @@ public class GameEngine {
      */
     public static void main(String[] args)
     {
+        //The canvas is heavyweight, so menus must be too, or they'd be drawn under it.
+        JPopupMenu.setDefaultLightWeightPopupEnabled(false);
         frame = new JFrame();
         createGame(frame);
         createToolbar(frame);
@@ -53,7 +62,7 @@ public class GameEngine {
         frame.addKeyListener(KeyController.getInstance());
         frame.setVisible(true);
         frame.setResizable(false);
-        new Timer(40, i -> gameWindow.repaint()).start();
+        loop.start();
     }
     
     //Create a toolbar.
@@ -90,8 +99,15 @@ public class GameEngine {
     {
         Mode0 mode = new Mode0();
         AbstractGame game = new ExampleGame(mode);
-        gameWindow = new GameView(mode);
+        //The window only shows finished frames; the loop draws them.
+        gameWindow = new GameCanvas(mode::getCompletedFrame);
         frame.add(gameWindow);
         game.startGame();
+        mode.setGame(null); //The loop runs the game now, not the frame drawing.
+        loop = new GameLoop(game, 40, TimeUnit.MILLISECONDS);
+        loop.setRenderer(alpha -> {
+            mode.renderFrame();
+            gameWindow.present();
+        });
     }
 }
@@ -0,0 +1,217 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the order tasks are run in, and how they're added and removed.
+ * @author Justis
+ */
+public class AbstractGameTest
+{
+    private static class Game extends AbstractGame
+    {
+        @Override
+        public void startGame(){}
+    }
+
+    /*
+    Writes its label into a shared list each time it runs, and finishes
+    once it's run a set number of times, or never if that's zero.
+    */
+    private static class Logger implements GameTask
+    {
+        private final List<String> log;
+        private final String label;
+        private final int runs;
+        private int ran = 0;
+
+        private Logger(List<String> log, String label, int runs)
+        {
+            this.log = log;
+            this.label = label;
+            this.runs = runs;
+        }
+
+        private Logger(List<String> log, String label){this(log, label, 0);}
+
+        @Override
+        public boolean onFrame(AbstractGame game)
+        {
+            log.add(label);
+            return ++ran == runs;
+        }
+    }
+
+    @Test
+    public void runsByPriorityThenNewestFirst()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        game.addTask(new Logger(log, "b1"), 2);
+        game.addTask(new Logger(log, "a1"), 1);
+        game.addTask("named", new Logger(log, "b2"), 2);
+        game.addTask(new Logger(log, "nan"), Double.NaN);
+        game.addTask(new Logger(log, "a2"), 1);
+        game.addTask(new Logger(log, "low"), -5);
+        game.onFrame();
+        assertEquals(Arrays.asList("low", "a2", "a1", "b2", "b1", "nan"), log);
+    }
+
+    @Test
+    public void boundStopsHigherPriorities()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        game.addTask(new Logger(log, "one"), 1);
+        game.addTask(new Logger(log, "two"), 2);
+        game.addTask(new Logger(log, "nan"), Double.NaN);
+        game.setTaskBound(1);
+        game.onFrame();
+        assertEquals(Arrays.asList("one"), log);
+        log.clear();
+        game.setTaskBound(Double.NEGATIVE_INFINITY);
+        game.onFrame();
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void removesByHandle()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        List<AbstractGame.TaskHandle<Logger>> handles = new ArrayList<>();
+        for(int index = 0; index < 5; index++){
+            handles.add(game.addTask(new Logger(log, "t" + index), 0));
+        }
+        //From the middle, the front and the back of the bucket.
+        game.removeTask(handles.get(2));
+        handles.get(4).remove();
+        game.removeTask(handles.get(0));
+        assertEquals(2, game.getTaskCount());
+        assertFalse(handles.get(2).isActive());
+        assertTrue(handles.get(1).isActive());
+        game.onFrame();
+        assertEquals(Arrays.asList("t3", "t1"), log);
+        //Removing twice does nothing.
+        game.removeTask(handles.get(2));
+        assertEquals(2, game.getTaskCount());
+        //Neither does removing a handle from another game.
+        Game other = new Game();
+        other.removeTask(handles.get(1));
+        assertTrue(handles.get(1).isActive());
+    }
+
+    @Test
+    public void removingTheNextTaskSkipsIt()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        AbstractGame.TaskHandle<Logger> last = game.addTask(new Logger(log, "last"), 0);
+        game.addTask(g -> {log.add("first"); g.removeTask(last); return false;}, 0);
+        game.onFrame();
+        assertEquals(Arrays.asList("first"), log);
+        assertEquals(1, game.getTaskCount());
+    }
+
+    @Test
+    public void finishedTasksFreeTheirNames()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        AbstractGame.TaskHandle<Logger> handle = game.addTask("once", new Logger(log, "once", 1), 0);
+        game.addTask("twice", new Logger(log, "twice", 2), 0);
+        assertSame(handle, game.getTaskHandle("once"));
+        game.onFrame();
+        assertNull(game.getTask("once"));
+        assertNull(game.getTaskHandle("once"));
+        assertFalse(handle.isActive());
+        assertNotNull(game.getTask("twice"));
+        game.onFrame();
+        assertNull(game.getTask("twice"));
+        assertEquals(0, game.getTaskCount());
+        //Setting a freed name does nothing.
+        game.setTaskEnabled("once", true);
+        game.removeTask("once");
+        assertEquals(0, game.getTaskCount());
+    }
+
+    @Test
+    public void reusedNamesPointAtTheNewTask()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        AbstractGame.TaskHandle<Logger> old = game.addTask("name", new Logger(log, "old"), 0);
+        Logger replacement = new Logger(log, "new");
+        game.addTask("name", replacement, 1);
+        assertSame(replacement, game.getTask("name"));
+        game.onFrame();
+        //The old task still runs; it just can't be reached by name.
+        assertEquals(Arrays.asList("old", "new"), log);
+        assertEquals(2, game.getTaskCount());
+        game.setTaskEnabled("name", false);
+        log.clear();
+        game.onFrame();
+        assertEquals(Arrays.asList("old"), log);
+        //Removing the old one doesn't take the name with it.
+        old.remove();
+        assertSame(replacement, game.getTask("name"));
+        game.removeTask("name");
+        assertEquals(0, game.getTaskCount());
+    }
+
+    @Test
+    public void scheduledTasksJoinAfterTheFrame()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        game.addTask(g -> {
+            if(log.isEmpty()){g.scheduleTask("later", new Logger(log, "later"), 1);}
+            log.add("adder");
+            return false;
+        }, 0);
+        game.onFrame();
+        assertEquals(Arrays.asList("adder"), log);
+        assertNotNull(game.getTask("later"));
+        game.onFrame();
+        assertEquals(Arrays.asList("adder", "adder", "later"), log);
+    }
+
+    @Test
+    public void disabledTasksAreSkipped()
+    {
+        Game game = new Game();
+        List<String> log = new ArrayList<>();
+        AbstractGame.TaskHandle<Logger> handle = game.addTask(new Logger(log, "t"), 0);
+        handle.setEnabled(false);
+        game.onFrame();
+        assertTrue(log.isEmpty());
+        assertEquals(1, game.getTaskCount());
+        handle.setEnabled(true);
+        game.onFrame();
+        assertEquals(Arrays.asList("t"), log);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void unnamedNullTaskThrows()
+    {
+        new Game().addTask(null, 0);
+    }
+
+    @Test
+    public void namedNullTaskIsIgnored()
+    {
+        Game game = new Game();
+        assertNull(game.addTask("name", null, 0));
+        assertNull(game.addTask(null, g -> false, 0));
+        assertEquals(0, game.getTaskCount());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.Timer;
+
+/**
+ * Compares how steadily a GameLoop and a Swing Timer call onFrame().
+ * <p>Both run a game with a little work per frame, at a 16 ms step, for a
+ * few seconds. For each, the average and worst error of the time between
+ * frames is shown, along with drift: how far behind the ideal schedule the
+ * last frame ran. Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class GameLoopJitterBenchmark
+{
+    private static final int STEP_MILLIS = 16;
+    private static final int FRAMES = 250;
+
+    private static class Recorder implements GameModel
+    {
+        private final long[] times = new long[FRAMES];
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int count = 0;
+        private double sink;
+
+        @Override
+        public void startGame(){}
+
+        @Override
+        public void onFrame()
+        {
+            if(count == FRAMES){return;}
+            times[count++] = System.nanoTime();
+            for(int step = 0; step < 20000; step++){sink += Math.sqrt(step);}
+            if(count == FRAMES){done.countDown();}
+        }
+
+        private void report(String name)
+        {
+            long step = TimeUnit.MILLISECONDS.toNanos(STEP_MILLIS);
+            double total = 0;
+            long worst = 0;
+            for(int index = 1; index < FRAMES; index++)
+            {
+                long error = Math.abs(times[index] - times[index - 1] - step);
+                total += error;
+                worst = Math.max(worst, error);
+            }
+            long drift = times[FRAMES - 1] - times[0] - (FRAMES - 1) * step;
+            System.out.printf("%-10s interval error mean %.2f ms, max %.2f ms, drift %.1f ms%n",
+                    name, total / (FRAMES - 1) / 1e6, worst / 1e6, drift / 1e6);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        Recorder timed = new Recorder();
+        Timer timer = new Timer(STEP_MILLIS, event -> timed.onFrame());
+        timer.start();
+        timed.done.await();
+        timer.stop();
+        timed.report("Timer");
+
+        Recorder looped = new Recorder();
+        GameLoop loop = new GameLoop(looped, STEP_MILLIS, TimeUnit.MILLISECONDS);
+        loop.start();
+        looped.done.await();
+        loop.stop();
+        looped.report("GameLoop");
+        System.out.printf("GameLoop average lateness %.3f ms, worst %.3f ms%n",
+                loop.getAverageJitter() / 1e6, loop.getMaxJitter() / 1e6);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a GameLoop starts, stops, and survives a game that throws.
+ * @author Justis
+ */
+public class GameLoopTest
+{
+    private static class Counter implements GameModel
+    {
+        private final AtomicInteger frames = new AtomicInteger();
+        private volatile int throwOn = -1;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void startGame(){}
+
+        @Override
+        public void onFrame()
+        {
+            int frame = frames.incrementAndGet();
+            if(frame == throwOn)
+            {
+                done.countDown();
+                throw new IllegalStateException("Frame " + frame);
+            }
+        }
+    }
+
+    private static void waitUntilStopped(GameLoop loop) throws InterruptedException
+    {
+        for(int tries = 0; tries < 200 && loop.isRunning(); tries++){
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void runsStepsUntilStopped() throws InterruptedException
+    {
+        Counter game = new Counter();
+        GameLoop loop = new GameLoop(game, 1, TimeUnit.MILLISECONDS);
+        loop.start();
+        assertTrue(loop.isRunning());
+        Thread.sleep(50);
+        loop.stop();
+        assertFalse(loop.isRunning());
+        int frames = game.frames.get();
+        assertTrue(frames > 0);
+        Thread.sleep(20);
+        assertEquals(frames, game.frames.get());
+    }
+
+    @Test
+    public void exceptionStopsTheLoop() throws InterruptedException
+    {
+        Counter game = new Counter();
+        game.throwOn = 3;
+        GameLoop loop = new GameLoop(game, 1, TimeUnit.MILLISECONDS);
+        Thread.UncaughtExceptionHandler old = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, ex) -> {});
+        try
+        {
+            loop.start();
+            assertTrue(game.done.await(5, TimeUnit.SECONDS));
+            waitUntilStopped(loop);
+            assertFalse(loop.isRunning());
+            assertEquals(3, game.frames.get());
+            //Stopping a dead loop does nothing, and it can be started again.
+            loop.stop();
+            loop.start();
+            assertTrue(loop.isRunning());
+            Thread.sleep(20);
+            loop.stop();
+            assertTrue(game.frames.get() > 3);
+        }
+        finally
+        {
+            Thread.setDefaultUncaughtExceptionHandler(old);
+        }
+    }
+
+    @Test
+    public void stopFromTheLoopThread() throws InterruptedException
+    {
+        CountDownLatch stopped = new CountDownLatch(1);
+        GameLoop[] loop = new GameLoop[1];
+        loop[0] = new GameLoop(new GameModel()
+        {
+            @Override
+            public void startGame(){}
+
+            @Override
+            public void onFrame()
+            {
+                try{
+                    loop[0].stop();
+                }
+                catch(InterruptedException ex){
+                    throw new IllegalStateException(ex);
+                }
+                stopped.countDown();
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        loop[0].start();
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertFalse(loop[0].isRunning());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroStep()
+    {
+        new GameLoop(new Counter(), 0);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times a frame of 10,000 CPU-bound parallel-safe tasks, run one after
+ * another, then on pools of 1 thread up to one per core.
+ * <p>Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class ParallelTaskBenchmark
+{
+    private static final int TASKS = 10000;
+    private static final int WORK = 200;
+    private static final int FRAMES = 30;
+
+    private static class Game extends AbstractGame
+    {
+        @Override
+        public void startGame(){}
+    }
+
+    /*
+    Some arithmetic that can't be skipped, touching only its own state.
+    */
+    private static class Work implements GameTask
+    {
+        private double state;
+
+        private Work(int seed){state = seed;}
+
+        @Override
+        public boolean onFrame(AbstractGame game)
+        {
+            double value = state;
+            for(int step = 0; step < WORK; step++){
+                value = Math.sin(value) * 1.0001 + 0.5;
+            }
+            state = value;
+            return false;
+        }
+    }
+
+    /*
+    With no pool, the tasks aren't marked parallel-safe at all.
+    */
+    private static double time(ForkJoinPool pool)
+    {
+        Game game = new Game();
+        if(pool != null){game.setTaskPool(pool);}
+        for(int index = 0; index < TASKS; index++){
+            game.addTask(new Work(index), index % 4).setParallelSafe(pool != null);
+        }
+        for(int frame = 0; frame < 5; frame++){game.onFrame();}
+        long best = Long.MAX_VALUE;
+        for(int frame = 0; frame < FRAMES; frame++)
+        {
+            long start = System.nanoTime();
+            game.onFrame();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String[] args)
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        double serial = time(null);
+        System.out.printf("%d tasks, %d cores%n", TASKS, cores);
+        System.out.printf("sequential: %.1f ms/frame%n", serial);
+        for(int threads = 1; threads <= cores; threads *= 2)
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            double parallel = time(pool);
+            pool.shutdown();
+            System.out.printf("%2d threads: %.1f ms/frame, %.2fx%n", threads, parallel, serial / parallel);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that parallel-safe tasks give the same outcome however many
+ * threads run them, and the same as running them one after another.
+ * @author Justis
+ */
+public class ParallelTaskTest
+{
+    private static final int FRAMES = 40;
+    private static final int WORKERS = 24;
+    private static final int SLEEPERS = 8;
+
+    private ForkJoinPool single;
+    private ForkJoinPool quad;
+
+    private static class Game extends AbstractGame
+    {
+        private long frame = 0;
+
+        @Override
+        public void startGame(){}
+
+        @Override
+        public void onFrame()
+        {
+            frame++;
+            super.onFrame();
+        }
+    }
+
+    /*
+    Writes down the frames it runs on, and changes the task pool in ways
+    that depend only on its own state. Workers only remove or disable
+    sleepers, which are always in a later priority.
+    */
+    private static class Worker implements GameTask
+    {
+        private final Game game;
+        private final String id;
+        private final boolean parallel;
+        private final List<Long> frames = new ArrayList<>();
+        private final List<Worker> children = new ArrayList<>();
+        private AbstractGame.TaskHandle<Worker> handle;
+        private int count = 0;
+        //Set for the last frame, when it only writes down its place in the pool.
+        private List<String> order = null;
+
+        private Worker(Game game, String id, boolean parallel)
+        {
+            this.game = game;
+            this.id = id;
+            this.parallel = parallel;
+        }
+
+        private Worker child()
+        {
+            Worker child = new Worker(game, id + "." + children.size(), parallel);
+            children.add(child);
+            return child;
+        }
+
+        @Override
+        public boolean onFrame(AbstractGame caller)
+        {
+            if(order != null)
+            {
+                order.add(id);
+                return false;
+            }
+            frames.add(game.frame);
+            int step = (id.hashCode() * 31 + count++) & 15;
+            int priority = step % 2;
+            String sleeper = "s" + ((id.hashCode() + count) & (SLEEPERS - 1));
+            switch(step)
+            {
+                case 0: case 1:
+                    Worker added = child();
+                    added.handle = caller.addTask(added, priority).setParallelSafe(parallel);
+                    break;
+                case 2: case 3:
+                    Worker later = child();
+                    later.handle = caller.runAfter(1 + count % 70, later, priority).setParallelSafe(parallel);
+                    break;
+                case 4:
+                    Worker repeated = child();
+                    repeated.handle = caller.runEvery(1 + count % 5, repeated, priority).setParallelSafe(parallel);
+                    break;
+                case 5:
+                    Worker scheduled = child();
+                    scheduled.handle = caller.scheduleTask(scheduled, priority).setParallelSafe(parallel);
+                    break;
+                case 6:
+                    caller.setTaskEnabled(sleeper, false);
+                    break;
+                case 7:
+                    caller.setTaskEnabled(sleeper, true);
+                    break;
+                case 8:
+                    caller.removeTask(sleeper);
+                    break;
+                case 9: case 10:
+                    return true;
+                default:
+            }
+            return false;
+        }
+    }
+
+    /*
+    Everything that happened in one run: when each task ran, and the order
+    of the pool at the end.
+    */
+    private static class Outcome
+    {
+        private final List<String> runs = new ArrayList<>();
+        private final List<String> order = new ArrayList<>();
+        private int count;
+    }
+
+    private static void collect(Worker worker, List<Worker> all)
+    {
+        all.add(worker);
+        for(Worker child : worker.children){collect(child, all);}
+    }
+
+    /*
+    Runs the workload, then one more frame with nothing parallel-safe, in
+    which each task writes down its place in the pool.
+    */
+    private static Outcome run(ForkJoinPool pool)
+    {
+        boolean parallel = pool != null;
+        Game game = new Game();
+        if(parallel){game.setTaskPool(pool);}
+        List<Worker> roots = new ArrayList<>();
+        for(int index = 0; index < WORKERS; index++)
+        {
+            Worker worker = new Worker(game, "w" + index, parallel);
+            worker.handle = game.addTask(worker, index % 2).setParallelSafe(parallel);
+            roots.add(worker);
+        }
+        for(int index = 0; index < SLEEPERS; index++)
+        {
+            Worker sleeper = new Worker(game, "s" + index, parallel)
+            {
+                @Override
+                public boolean onFrame(AbstractGame caller)
+                {
+                    if(super.order != null){return super.onFrame(caller);}
+                    super.frames.add(super.game.frame);
+                    return false;
+                }
+            };
+            sleeper.handle = game.addTask(sleeper.id, sleeper, 2).setParallelSafe(parallel);
+            roots.add(sleeper);
+        }
+        for(int frame = 0; frame < FRAMES; frame++){game.onFrame();}
+        Outcome outcome = new Outcome();
+        outcome.count = game.getTaskCount();
+        List<Worker> all = new ArrayList<>();
+        for(Worker root : roots){collect(root, all);}
+        for(Worker worker : all)
+        {
+            outcome.runs.add(worker.id + " " + worker.frames);
+            worker.handle.setParallelSafe(false);
+            worker.order = outcome.order;
+        }
+        game.onFrame();
+        return outcome;
+    }
+
+    @Before
+    public void setUp()
+    {
+        single = new ForkJoinPool(1);
+        quad = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        single.shutdown();
+        quad.shutdown();
+    }
+
+    @Test
+    public void sameOutcomeOnAnyPool()
+    {
+        Outcome sequential = run(null);
+        Outcome one = run(single);
+        Outcome four = run(quad);
+        assertTrue(sequential.count > WORKERS);
+        assertEquals(sequential.runs, one.runs);
+        assertEquals(sequential.runs, four.runs);
+        assertEquals(sequential.count, one.count);
+        assertEquals(sequential.count, four.count);
+        assertEquals(sequential.order, one.order);
+        assertEquals(sequential.order, four.order);
+    }
+
+    /*
+    Runs a batch in which one task throws on the first frame, and gives back
+    the task count after each step.
+    */
+    private static List<Integer> throwing(ForkJoinPool pool)
+    {
+        Game game = new Game();
+        game.setTaskPool(pool);
+        List<Integer> counts = new ArrayList<>();
+        boolean[] after = {false};
+        game.addTask(g -> {after[0] = true; return false;}, 1);
+        for(int index = 0; index < 8; index++)
+        {
+            final int which = index;
+            game.addTask(g -> {
+                //The newest task is first in the batch, so the rest are still running when it throws.
+                if(which == 7 && ((Game)g).frame == 1){
+                    throw new IllegalStateException("Thrown on purpose.");
+                }
+                try{Thread.sleep(1);}catch(InterruptedException e){}
+                g.addTask(other -> true, 0);
+                return false;
+            }, 0).setParallelSafe(true);
+        }
+        counts.add(game.getTaskCount());
+        try
+        {
+            game.onFrame();
+            fail("The exception wasn't passed on.");
+        }
+        catch(RuntimeException e){}
+        //Nothing the batch held back was added, and nothing after it ran.
+        assertFalse(after[0]);
+        counts.add(game.getTaskCount());
+        //Nothing is held back on this thread any more.
+        game.addTask(g -> false, 5);
+        counts.add(game.getTaskCount());
+        game.onFrame();
+        assertTrue(after[0]);
+        counts.add(game.getTaskCount());
+        return counts;
+    }
+
+    @Test
+    public void throwingTaskLeavesThePoolAsItWas()
+    {
+        List<Integer> expected = Arrays.asList(9, 9, 10, 18);
+        //Tasks left running after the exception only show up now and then.
+        for(int round = 0; round < 60; round++)
+        {
+            assertEquals("Round " + round, expected, throwing(single));
+            assertEquals("Round " + round, expected, throwing(quad));
+        }
+    }
+}
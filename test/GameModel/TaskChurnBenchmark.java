@@ -0,0 +1,73 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.Random;
+
+/**
+ * Spawns 100,000 short-lived named tasks, 100 a frame over 1000 frames, and
+ * times the frames. Each task lives for up to a second of frames, then
+ * finishes, like a particle or a hit effect. Once the last one is done,
+ * the game should have no tasks left over.
+ * <p>Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class TaskChurnBenchmark
+{
+    private static final int FRAMES = 1000;
+    private static final int PER_FRAME = 100;
+    private static final int MAX_LIFE = 60;
+
+    private static class Game extends AbstractGame
+    {
+        @Override
+        public void startGame(){}
+    }
+
+    /*
+    Counts its frames, and finishes once it has lived long enough.
+    */
+    private static class Effect implements GameTask
+    {
+        private final int life;
+        private int age = 0;
+
+        private Effect(int life){this.life = life;}
+
+        @Override
+        public boolean onFrame(AbstractGame game)
+        {
+            return ++age > life;
+        }
+    }
+
+    private static void run(long seed)
+    {
+        Game game = new Game();
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        for(int frame = 0; frame < FRAMES; frame++)
+        {
+            for(int index = 0; index < PER_FRAME; index++)
+            {
+                game.scheduleTask("effect" + frame + "_" + index,
+                        new Effect(random.nextInt(MAX_LIFE)), random.nextInt(10));
+            }
+            game.onFrame();
+        }
+        double perFrame = (System.nanoTime() - start) / (FRAMES * 1e6);
+        int peak = game.getTaskCount();
+        for(int frame = 0; frame <= MAX_LIFE + 1; frame++){game.onFrame();}
+        System.out.printf("%.3f ms/frame, %d live at the end, %d left after they all finish%n",
+                perFrame, peak, game.getTaskCount());
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.printf("%d tasks, %d per frame%n", FRAMES * PER_FRAME, PER_FRAME);
+        for(int round = 0; round < 3; round++){run(round);}
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the frames that WaitTasks and timed tasks run on.
+ * <p>WaitTasks are compared against one called directly every frame, the way
+ * AbstractGame has always polled them. runAfter() and runEvery() are checked
+ * across the timing wheel's levels, which roll over at 64 and 4096 frames.
+ * @author Justis
+ */
+public class TimedTaskTest
+{
+    private static class Game extends AbstractGame
+    {
+        private long frame = 0;
+
+        @Override
+        public void startGame(){}
+
+        @Override
+        public void onFrame()
+        {
+            frame++;
+            super.onFrame();
+        }
+    }
+
+    /*
+    Writes down the frames it runs on.
+    */
+    private static class Recorder implements GameTask
+    {
+        private final Game game;
+        private final List<Long> frames = new ArrayList<>();
+
+        private Recorder(Game game){this.game = game;}
+
+        @Override
+        public boolean onFrame(AbstractGame caller)
+        {
+            frames.add(game.frame);
+            return false;
+        }
+    }
+
+    /*
+    The frames a WaitTask runs on when it's called on each of the given
+    frames, the way the task pool polls it.
+    */
+    private static List<Long> polled(long wait, boolean[] called)
+    {
+        List<Long> frames = new ArrayList<>();
+        long[] now = {0};
+        WaitTask task = new WaitTask(game -> {frames.add(now[0]); return false;}, wait);
+        for(int frame = 1; frame < called.length; frame++)
+        {
+            now[0] = frame;
+            if(called[frame]){task.onFrame(null);}
+        }
+        return frames;
+    }
+
+    private static boolean[] always(int frames)
+    {
+        boolean[] called = new boolean[frames + 1];
+        Arrays.fill(called, true);
+        return called;
+    }
+
+    @Test
+    public void waitTasksRunOnTheirOldFrames()
+    {
+        final int frames = 400;
+        for(long wait : new long[]{-5, -1, 0, 1, 2, 63, 64, 65, 100})
+        {
+            Game game = new Game();
+            Recorder recorder = new Recorder(game);
+            game.addTask(new WaitTask(recorder, wait), 0);
+            for(int frame = 0; frame < frames; frame++){game.onFrame();}
+            assertEquals("Wait " + wait, polled(wait, always(frames)), recorder.frames);
+        }
+    }
+
+    @Test
+    public void waitTasksOnlyCountFramesTheyRun()
+    {
+        final int frames = 300;
+        for(long wait : new long[]{-1, 0, 5, 64})
+        {
+            Game game = new Game();
+            Recorder recorder = new Recorder(game);
+            game.addTask(new WaitTask(recorder, wait), 5);
+            boolean[] called = new boolean[frames + 1];
+            for(int frame = 1; frame <= frames; frame++)
+            {
+                //Cut the WaitTask off for a stretch of frames, every so often.
+                boolean cut = (frame / 37) % 2 == 1;
+                game.setTaskBound(cut ? 1 : Double.NaN);
+                called[frame] = !cut;
+                game.onFrame();
+            }
+            assertEquals("Wait " + wait, polled(wait, called), recorder.frames);
+        }
+    }
+
+    @Test
+    public void waitTasksAddedMidFrameStartAsBefore()
+    {
+        for(long wait : new long[]{-1, 0, 3})
+        {
+            Game game = new Game();
+            Recorder recorder = new Recorder(game);
+            //Runs first, and adds the WaitTask after itself, so it's polled this frame.
+            game.addTask(g -> {g.addTask(new WaitTask(recorder, wait), 1); return true;}, 0);
+            for(int frame = 0; frame < 40; frame++){game.onFrame();}
+            assertEquals("Wait " + wait, polled(wait, always(40)), recorder.frames);
+        }
+    }
+
+    @Test
+    public void runAfterCrossesWheelLevels()
+    {
+        for(long delay : new long[]{1, 63, 64, 65, 4095, 4096, 4097, 5000})
+        {
+            Game game = new Game();
+            //Start part way around the wheel, so slots don't line up with zero.
+            for(int frame = 0; frame < 100; frame++){game.onFrame();}
+            Recorder recorder = new Recorder(game);
+            AbstractGame.TaskHandle<Recorder> handle = game.runAfter(delay, recorder, 0);
+            for(long frame = 0; frame < delay + 70; frame++){game.onFrame();}
+            List<Long> expected = new ArrayList<>();
+            expected.add(100 + delay);
+            assertEquals("Delay " + delay, expected, recorder.frames);
+            assertFalse(handle.isActive());
+            assertEquals(0, game.getTaskCount());
+        }
+    }
+
+    @Test
+    public void runEveryCrossesWheelLevels()
+    {
+        for(long period : new long[]{1, 63, 64, 65, 4096})
+        {
+            Game game = new Game();
+            for(int frame = 0; frame < 37; frame++){game.onFrame();}
+            Recorder recorder = new Recorder(game);
+            game.runEvery(period, recorder, 0);
+            for(long frame = 0; frame < period * 3 + 10; frame++){game.onFrame();}
+            List<Long> expected = new ArrayList<>();
+            for(long run = 1; run <= 3; run++){expected.add(37 + run * period);}
+            if(period == 1)
+            {
+                for(long run = 4; run <= 13; run++){expected.add(37 + run);}
+            }
+            assertEquals("Period " + period, expected, recorder.frames);
+        }
+    }
+
+    @Test
+    public void disablingPausesTheTimer()
+    {
+        Game game = new Game();
+        Recorder recorder = new Recorder(game);
+        AbstractGame.TaskHandle<Recorder> handle = game.runEvery(10, recorder, 0);
+        for(int frame = 0; frame < 5; frame++){game.onFrame();}
+        handle.setEnabled(false);
+        for(int frame = 0; frame < 100; frame++){game.onFrame();}
+        assertTrue(recorder.frames.isEmpty());
+        handle.setEnabled(true);
+        for(int frame = 0; frame < 20; frame++){game.onFrame();}
+        //5 frames were left when it was paused at frame 5, so it runs at 110, then 120.
+        List<Long> expected = new ArrayList<>();
+        expected.add(110L);
+        expected.add(120L);
+        assertEquals(expected, recorder.frames);
+    }
+
+    @Test
+    public void timersCrossingLevelsByName()
+    {
+        Game game = new Game();
+        Recorder recorder = new Recorder(game);
+        game.runAfter("later", 4100, recorder, 0);
+        assertSame(recorder, game.getTask("later"));
+        for(int frame = 0; frame < 4100; frame++){game.onFrame();}
+        assertEquals(1, recorder.frames.size());
+        assertEquals(4100L, (long)recorder.frames.get(0));
+        assertNull(game.getTask("later"));
+    }
+}
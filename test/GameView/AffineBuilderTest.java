@@ -0,0 +1,113 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that AffineBuilder and Affine give the same matrices as multiplying
+ * double[][] matrices through MatrixFunction.multiplyAffine().
+ * @author Justis
+ */
+public class AffineBuilderTest
+{
+    private static void assertMatrix(String message, double[][] expected, double[][] actual)
+    {
+        for(int row = 0; row < 2; row++)
+        {
+            assertArrayEquals(message + ", row " + row, expected[row], actual[row], 0.0);
+        }
+    }
+
+    @Test
+    public void chainsMatchMultiplyAffine()
+    {
+        Random random = new Random(12);
+        for(int round = 0; round < 1000; round++)
+        {
+            double[][] expected = MatrixFunction.neutralAffine();
+            AffineBuilder builder = new AffineBuilder();
+            Affine affine = Affine.IDENTITY;
+            for(int step = 0; step < 6; step++)
+            {
+                double x = random.nextDouble() * 8 - 4;
+                double y = random.nextDouble() * 8 - 4;
+                double[][] op;
+                switch(random.nextInt(5))
+                {
+                    case 0:
+                        op = MatrixFunction.translateAffine(x * 50, y * 50);
+                        builder.translate(x * 50, y * 50);
+                        break;
+                    case 1:
+                        op = MatrixFunction.scaleAffine(x, y);
+                        builder.scale(x, y);
+                        break;
+                    case 2:
+                        op = MatrixFunction.rotateAffine(x);
+                        builder.rotate(x);
+                        break;
+                    case 3:
+                        op = MatrixFunction.shearAffine(x / 8, y / 8);
+                        builder.shear(x / 8, y / 8);
+                        break;
+                    default:
+                        boolean flipX = x > 0, flipY = y > 0;
+                        op = MatrixFunction.reflectAffine(flipX, flipY);
+                        builder.reflect(flipX, flipY);
+                }
+                expected = MatrixFunction.multiplyAffine(expected, op);
+                affine = affine.multiply(Affine.of(op));
+            }
+            assertMatrix("Round " + round, expected, builder.toArray());
+            assertMatrix("Round " + round, expected, builder.build().toArray());
+            assertMatrix("Round " + round, expected, affine.toArray());
+        }
+    }
+
+    @Test
+    public void multiplyMatchesMultiplyAffine()
+    {
+        Random random = new Random(13);
+        for(int round = 0; round < 1000; round++)
+        {
+            double[][] left = MatrixFunction.neutralAffine();
+            double[][] right = MatrixFunction.neutralAffine();
+            for(int row = 0; row < 2; row++)
+            {
+                for(int column = 0; column < 3; column++)
+                {
+                    left[row][column] = random.nextDouble() * 20 - 10;
+                    right[row][column] = random.nextDouble() * 20 - 10;
+                }
+            }
+            double[][] expected = MatrixFunction.multiplyAffine(left, right);
+            assertMatrix("Round " + round, expected, new AffineBuilder().set(left).multiply(Affine.of(right)).toArray());
+            assertMatrix("Round " + round, expected,
+                    new AffineBuilder(Affine.of(left)).multiply(new AffineBuilder().set(right)).toArray());
+            assertMatrix("Round " + round, expected, Affine.of(left).multiply(Affine.of(right)).toArray());
+        }
+    }
+
+    @Test
+    public void resetsToIdentity()
+    {
+        AffineBuilder builder = new AffineBuilder().rotate(1).translate(3, 4);
+        assertFalse(builder.isIdentity());
+        builder.setIdentity();
+        assertTrue(builder.isIdentity());
+        assertEquals(Affine.IDENTITY, builder.build());
+        assertMatrix("Identity", MatrixFunction.neutralAffine(), builder.toArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMatricesThatArentThreeByThree()
+    {
+        new AffineBuilder().set(new double[2][2]);
+    }
+}
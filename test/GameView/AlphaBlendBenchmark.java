@@ -0,0 +1,86 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.util.Random;
+
+/**
+ * Times AlphaBlend against the floating point blend Mode0 used to have.
+ * <p>Two sets of pixels are blended: one like a typical sprite, almost all
+ * fully transparent or fully opaque, and one that is all translucent, where
+ * there are no shortcuts. Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class AlphaBlendBenchmark
+{
+    private static final int PIXELS = 1 << 20;
+    private static final int ROUNDS = 40;
+
+    private static int oldBlend(int bottomColor, int topColor)
+    {
+        double dstA = (bottomColor >>> 24) / 255f, srcA = (topColor >>> 24) / 255f;
+        int dstR = (bottomColor >>> 16 & 0xFF), srcR = (topColor >>> 16 & 0xFF);
+        int dstG = (bottomColor >>> 8  & 0xFF), srcG = (topColor >>> 8  & 0xFF);
+        int dstB = (bottomColor        & 0xFF), srcB = (topColor        & 0xFF);
+        double a = (srcA + dstA * (1 - srcA));
+        if(a == 0){return 0;}
+        int r = (int)((srcR * srcA + dstR * dstA * (1 - srcA)) / a);
+        int g = (int)((srcG * srcA + dstG * dstA * (1 - srcA)) / a);
+        int b = (int)((srcB * srcA + dstB * dstA * (1 - srcA)) / a);
+        return ((int)(a * 255) << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int[] pixels(Random random, int translucentPercent)
+    {
+        int[] pixels = new int[PIXELS];
+        for(int index = 0; index < PIXELS; index++)
+        {
+            int rgb = random.nextInt(1 << 24);
+            int roll = random.nextInt(100);
+            if(roll < translucentPercent){
+                pixels[index] = (1 + random.nextInt(254)) << 24 | rgb;
+            }
+            else{
+                pixels[index] = (random.nextBoolean() ? 0xFF000000 : 0) | rgb;
+            }
+        }
+        return pixels;
+    }
+
+    private static double time(int[] bottom, int[] top, boolean old)
+    {
+        int[] out = new int[PIXELS];
+        long best = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++)
+        {
+            long start = System.nanoTime();
+            if(old){
+                for(int index = 0; index < PIXELS; index++){out[index] = oldBlend(bottom[index], top[index]);}
+            }
+            else{
+                for(int index = 0; index < PIXELS; index++){out[index] = AlphaBlend.blend(bottom[index], top[index]);}
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double)best / PIXELS;
+    }
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(1);
+        int[] bottom = pixels(random, 0);
+        for(int index = 0; index < PIXELS; index++){bottom[index] |= 0xFF000000;}
+        int[][] tops = {pixels(random, 5), pixels(random, 100)};
+        String[] names = {"sprite-like (5% translucent)", "all translucent"};
+        for(int set = 0; set < tops.length; set++)
+        {
+            double old = time(bottom, tops[set], true);
+            double now = time(bottom, tops[set], false);
+            System.out.printf("%-30s old %.2f ns/px, AlphaBlend %.2f ns/px, %.1fx%n",
+                    names[set], old, now, old / now);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks AlphaBlend against the floating point blend Mode0 used to have.
+ * <p>Every channel, alpha included, must come out within 1 of the old
+ * result, and the transparent and opaque shortcuts must be exact.
+ * @author Justis
+ */
+public class AlphaBlendTest
+{
+    private static final int PAIRS = 2000000;
+
+    /*
+    The old Mode0.blend(int, int), kept here as the reference.
+    */
+    private static int oldBlend(int bottomColor, int topColor)
+    {
+        double dstA = (bottomColor >>> 24) / 255f, srcA = (topColor >>> 24) / 255f;
+        int dstR = (bottomColor >>> 16 & 0xFF), srcR = (topColor >>> 16 & 0xFF);
+        int dstG = (bottomColor >>> 8  & 0xFF), srcG = (topColor >>> 8  & 0xFF);
+        int dstB = (bottomColor        & 0xFF), srcB = (topColor        & 0xFF);
+        double a = (srcA + dstA * (1 - srcA));
+        if(a == 0){return 0;}
+        int r = (int)((srcR * srcA + dstR * dstA * (1 - srcA)) / a);
+        int g = (int)((srcG * srcA + dstG * dstA * (1 - srcA)) / a);
+        int b = (int)((srcB * srcA + dstB * dstA * (1 - srcA)) / a);
+        return ((int)(a * 255) << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static void assertClose(int bottom, int top, int expected, int actual)
+    {
+        //Fully transparent results have no meaningful color.
+        if((expected >>> 24) == 0 && (actual >>> 24) == 0){return;}
+        for(int shift = 0; shift < 32; shift += 8)
+        {
+            int e = expected >>> shift & 0xFF;
+            int a = actual >>> shift & 0xFF;
+            if(Math.abs(e - a) > 1)
+            {
+                fail(String.format("%08X over %08X: expected %08X, got %08X",
+                        top, bottom, expected, actual));
+            }
+        }
+    }
+
+    @Test
+    public void randomPairsStayWithinOne()
+    {
+        Random random = new Random(2);
+        for(int index = 0; index < PAIRS; index++)
+        {
+            int bottom = random.nextInt();
+            int top = random.nextInt();
+            assertClose(bottom, top, oldBlend(bottom, top), AlphaBlend.blend(bottom, top));
+        }
+    }
+
+    @Test
+    public void everyAlphaPairStaysWithinOne()
+    {
+        Random random = new Random(3);
+        for(int srcA = 0; srcA < 256; srcA++)
+        {
+            for(int dstA = 0; dstA < 256; dstA++)
+            {
+                int bottom = dstA << 24 | random.nextInt(1 << 24);
+                int top = srcA << 24 | random.nextInt(1 << 24);
+                assertClose(bottom, top, oldBlend(bottom, top), AlphaBlend.blend(bottom, top));
+            }
+        }
+    }
+
+    @Test
+    public void transparentTopLeavesBottom()
+    {
+        assertEquals(0x80123456, AlphaBlend.blend(0x80123456, 0x00FFFFFF));
+        assertEquals(0xFFABCDEF, AlphaBlend.blend(0xFFABCDEF, 0x00000000));
+    }
+
+    @Test
+    public void opaqueTopReplacesBottom()
+    {
+        assertEquals(0xFF123456, AlphaBlend.blend(0x80FFFFFF, 0xFF123456));
+        assertEquals(0xFF000000, AlphaBlend.blend(0xFFFFFFFF, 0xFF000000));
+    }
+
+    @Test
+    public void translucentOverTransparentKeepsTop()
+    {
+        assertEquals(0x7F102030, AlphaBlend.blendTranslucent(0x00FFFFFF, 0x7F102030));
+    }
+
+    @Test
+    public void translucentMatchesBlend()
+    {
+        Random random = new Random(4);
+        for(int index = 0; index < 100000; index++)
+        {
+            int bottom = random.nextInt();
+            int top = (1 + random.nextInt(254)) << 24 | random.nextInt(1 << 24);
+            assertEquals(AlphaBlend.blend(bottom, top), AlphaBlend.blendTranslucent(bottom, top));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ImageOp.applyTo() draws the right pixels into an existing
+ * image: blended or copied, with or without a color key, at an offset, and
+ * inside a clip.
+ * @author Justis
+ */
+public class ApplyToTest
+{
+    private static final int KEY = 0xFF00FF00;
+
+    private static BufferedImage image(Random random, int type, int width, int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for(int y = 0; y < height; y++)
+        {
+            for(int x = 0; x < width; x++)
+            {
+                int kind = random.nextInt(5);
+                image.setRGB(x, y, (kind == 0) ? KEY : (kind == 1) ? 0
+                        : (kind == 2) ? ((1 + random.nextInt(254)) << 24) | (random.nextInt() & 0x00FFFFFF)
+                        : 0xFF000000 | random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /*
+    The reference: each pixel of dest inside the clip is reversed through
+    the matrix with doubles, and drawn through getRGB() and setRGB().
+    */
+    private static void reference(BufferedImage dest, BufferedImage image, Affine matrix, int x, int y,
+            Rectangle clip, boolean blend, boolean keyed)
+    {
+        double a = matrix.getA(), b = matrix.getB(), c = matrix.getC();
+        double d = matrix.getD(), e = matrix.getE(), f = matrix.getF();
+        double xNumConst = (b * f) - (e * c);
+        double yNumConst = (d * c) - (a * f);
+        double denomConst = 1 / ((e * a) - (b * d));
+        Rectangle area = new Rectangle(0, 0, dest.getWidth(), dest.getHeight());
+        if(clip != null){area = area.intersection(clip);}
+        for(int yy = area.y; yy < area.y + area.height; yy++)
+        {
+            for(int xx = area.x; xx < area.x + area.width; xx++)
+            {
+                int u = xx - x;
+                int v = yy - y;
+                double readX = ((e * u) - (b * v) + xNumConst) * denomConst;
+                double readY = ((a * v) - (d * u) + yNumConst) * denomConst;
+                if(readX < 0 || readY < 0 || readX >= image.getWidth() || readY >= image.getHeight()){continue;}
+                int argb = image.getRGB((int)readX, (int)readY);
+                if(keyed && argb == KEY){continue;}
+                dest.setRGB(xx, yy, blend ? AlphaBlend.blend(dest.getRGB(xx, yy), argb) : argb);
+            }
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage image)
+    {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        for(int y = 0; y < image.getHeight(); y++)
+        {
+            for(int x = 0; x < image.getWidth(); x++){copy.setRGB(x, y, image.getRGB(x, y));}
+        }
+        return copy;
+    }
+
+    private static int[] pixels(BufferedImage image)
+    {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static void check(int destType)
+    {
+        Random random = new Random(19 + destType);
+        BufferedImage image = image(random, BufferedImage.TYPE_INT_ARGB, 30, 20);
+        for(int round = 0; round < 200; round++)
+        {
+            boolean blend = random.nextBoolean();
+            boolean keyed = random.nextBoolean();
+            ImageOp op = new ImageOp(image).setBlending(blend);
+            if(keyed){op.setTransparentRGB(new Color(KEY, true));}
+            switch(random.nextInt(3))
+            {
+                case 0:
+                    break;
+                case 1:
+                    op.rotate(random.nextDouble() * 7).scale(0.5 + random.nextDouble() * 2, 0.5 + random.nextDouble() * 2);
+                    break;
+                default:
+                    op.shear(random.nextDouble() - 0.5, random.nextDouble() - 0.5).translate(random.nextInt(20) - 10, 3);
+            }
+            int x = random.nextInt(140) - 40;
+            int y = random.nextInt(100) - 30;
+            Rectangle clip = null;
+            if(random.nextBoolean())
+            {
+                //Clips may hang off any side of dest.
+                clip = new Rectangle(random.nextInt(120) - 20, random.nextInt(80) - 20,
+                        random.nextInt(100), random.nextInt(70));
+            }
+            BufferedImage expected = image(random, destType, 80, 60);
+            BufferedImage actual = copy(expected);
+            op.applyTo(actual, x, y, clip);
+            reference(expected, image, op.getAffine(), x, y, clip, blend, keyed);
+            assertArrayEquals("Round " + round, pixels(expected), pixels(actual));
+        }
+    }
+
+    @Test
+    public void drawsIntoIntArgbImages()
+    {
+        check(BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Test
+    public void drawsIntoOtherImages()
+    {
+        check(BufferedImage.TYPE_4BYTE_ABGR);
+    }
+
+    @Test
+    public void matchesApplyOnABlankImage()
+    {
+        Random random = new Random(20);
+        BufferedImage image = image(random, BufferedImage.TYPE_INT_ARGB, 30, 20);
+        ImageOp op = new ImageOp(image).rotate(0.6).scale(1.4, 0.9);
+        BufferedImage blank = IntRaster.createImage(30, 20);
+        op.applyTo(blank, 0, 0);
+        assertArrayEquals(pixels(op.apply()), pixels(blank));
+    }
+
+    @Test
+    public void emptyClipDrawsNothing()
+    {
+        Random random = new Random(21);
+        BufferedImage image = image(random, BufferedImage.TYPE_INT_ARGB, 30, 20);
+        BufferedImage dest = image(random, BufferedImage.TYPE_INT_ARGB, 40, 40);
+        int[] before = pixels(dest);
+        new ImageOp(image).applyTo(dest, 0, 0, new Rectangle(50, 50, 10, 10));
+        new ImageOp(image).applyTo(dest, 0, 0, new Rectangle(5, 5, 0, 10));
+        assertArrayEquals(before, pixels(dest));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullDestinationThrows()
+    {
+        new ImageOp(IntRaster.createImage(4, 4)).applyTo(null, 0, 0);
+    }
+}
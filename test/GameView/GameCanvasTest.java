@@ -0,0 +1,69 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the parts of GameCanvas that don't need a screen: the constructor,
+ * and present() doing nothing while the canvas isn't on screen.
+ * @author Justis
+ */
+public class GameCanvasTest
+{
+    /*
+    Counts how often the frame is asked for.
+    */
+    private static class CountingMode implements ViewMode
+    {
+        private int frames = 0;
+
+        @Override
+        public BufferedImage getFrame()
+        {
+            frames++;
+            return IntRaster.createImage(240, 160);
+        }
+    }
+
+    @Test
+    public void defaultsToTwoBuffers()
+    {
+        assertEquals(2, new GameCanvas(null).getBufferCount());
+        assertEquals(3, new GameCanvas(null, 3).getBufferCount());
+        assertTrue(new GameCanvas(null).getIgnoreRepaint());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOneBuffer()
+    {
+        new GameCanvas(null, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFourBuffers()
+    {
+        new GameCanvas(null, 4);
+    }
+
+    @Test
+    public void doesNotPresentOffScreen()
+    {
+        CountingMode mode = new CountingMode();
+        GameCanvas canvas = new GameCanvas(mode, 3);
+        assertFalse(canvas.isDisplayable());
+        assertFalse(canvas.present());
+        canvas.changeMode(null);
+        assertFalse(canvas.present());
+        assertEquals(0, mode.frames);
+        assertEquals(0, canvas.getPresentCount());
+        assertEquals(0, canvas.getAverageLatency());
+        assertEquals(0, canvas.getMaxLatency());
+        assertEquals(0, canvas.getLastLatency());
+    }
+}
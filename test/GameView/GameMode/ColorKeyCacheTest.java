@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks what the ColorKeyCache keeps, and that it removes the right color.
+ * @author Justis
+ */
+public class ColorKeyCacheTest
+{
+    private static BufferedImage image(int width, int height)
+    {
+        BufferedImage image = IntRaster.createImage(width, height);
+        for(int y = 0; y < height; y++)
+        {
+            for(int x = 0; x < width; x++)
+            {
+                image.setRGB(x, y, ((x + y) % 3 == 0) ? 0xFFFF00FF : 0xFF000000 | x << 8 | y);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void removesTheTransparentColor()
+    {
+        ColorKeyCache cache = new ColorKeyCache(1 << 20);
+        BufferedImage original = image(16, 16);
+        BufferedImage copy = cache.getImage(original, 0xFFFF00FF);
+        for(int y = 0; y < 16; y++)
+        {
+            for(int x = 0; x < 16; x++)
+            {
+                int expected = ((x + y) % 3 == 0) ? 0 : original.getRGB(x, y);
+                assertEquals(expected, copy.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void keepsSmallCopies()
+    {
+        ColorKeyCache cache = new ColorKeyCache(1 << 20);
+        BufferedImage original = image(16, 16);
+        BufferedImage copy = cache.getImage(original, 0xFFFF00FF);
+        assertSame(copy, cache.getImage(original, 0xFFFF00FF));
+        assertNotSame(copy, cache.getImage(original, 0xFF000000));
+        assertEquals(2 * 16 * 16 * 4, cache.getSize());
+    }
+
+    @Test
+    public void doesNotKeepCopiesOverAQuarterOfTheCapacity()
+    {
+        ColorKeyCache cache = new ColorKeyCache(4 * 64 * 64 * 4 - 1);
+        BufferedImage big = image(64, 64);
+        BufferedImage small = image(8, 8);
+        BufferedImage kept = cache.getImage(small, 0xFFFF00FF);
+        BufferedImage first = cache.getImage(big, 0xFFFF00FF);
+        assertNotSame(first, cache.getImage(big, 0xFFFF00FF));
+        //The big image didn't push the small one out.
+        assertSame(kept, cache.getImage(small, 0xFFFF00FF));
+        assertEquals(8 * 8 * 4, cache.getSize());
+    }
+
+    @Test
+    public void invalidateDropsCopiesAndChangesVersion()
+    {
+        ColorKeyCache cache = new ColorKeyCache(1 << 20);
+        BufferedImage original = image(16, 16);
+        BufferedImage copy = cache.getImage(original, 0xFFFF00FF);
+        int version = cache.getVersion();
+        cache.invalidate(original);
+        assertNotSame(copy, cache.getImage(original, 0xFFFF00FF));
+        assertTrue(cache.getVersion() != version);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed()
+    {
+        ColorKeyCache cache = new ColorKeyCache(4 * 8 * 8 * 4);
+        BufferedImage[] images = new BufferedImage[5];
+        BufferedImage[] copies = new BufferedImage[5];
+        for(int index = 0; index < images.length; index++){
+            images[index] = image(8, 8);
+        }
+        for(int index = 0; index < 4; index++){
+            copies[index] = cache.getImage(images[index], 0);
+        }
+        cache.getImage(images[0], 0);
+        cache.getImage(images[4], 0);
+        assertSame(copies[0], cache.getImage(images[0], 0));
+        assertNotSame(copies[1], cache.getImage(images[1], 0));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.AlphaBlend;
+import GameView.IntRaster;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the Compositor against drawing pixel by pixel through getRGB() and
+ * setRGB(), for opaque, translucent, color-keyed and clipped sprites.
+ * @author Justis
+ */
+public class CompositorTest
+{
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 160;
+    private static final int KEY = 0xFFFF00FF;
+
+    /*
+    A random pixel: transparent, translucent, opaque, or the color key.
+    */
+    private static int pixel(Random random, int kind)
+    {
+        switch(kind)
+        {
+            case 0: return random.nextInt() & 0x00FFFFFF;
+            case 1: return ((1 + random.nextInt(254)) << 24) | (random.nextInt() & 0x00FFFFFF);
+            case 2: return 0xFF000000 | random.nextInt();
+            default: return KEY;
+        }
+    }
+
+    /*
+    An image of the given type. With runs, each row is made of stretches of
+    one kind of pixel, which the Compositor draws through its RowSpans;
+    without, every pixel is picked on its own, and it's drawn pixel by pixel.
+    */
+    private static BufferedImage image(Random random, int type, int width, int height, boolean runs)
+    {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for(int y = 0; y < height; y++)
+        {
+            int kind = 0;
+            int left = 0;
+            for(int x = 0; x < width; x++)
+            {
+                if(!runs || left == 0)
+                {
+                    kind = random.nextInt(4);
+                    left = 4 + random.nextInt(16);
+                }
+                left--;
+                image.setRGB(x, y, pixel(random, kind));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage background(Random random)
+    {
+        BufferedImage frame = IntRaster.createImage(WIDTH, HEIGHT);
+        for(int y = 0; y < HEIGHT; y++)
+        {
+            for(int x = 0; x < WIDTH; x++){
+                frame.setRGB(x, y, pixel(random, random.nextInt(3)));
+            }
+        }
+        return frame;
+    }
+
+    /*
+    The reference: every pixel of the image, keyed, placed and blended one
+    at a time, if it lands in the clip.
+    */
+    private static void reference(BufferedImage frame, BufferedImage image, int drawX, int drawY,
+            int x0, int y0, int x1, int y1)
+    {
+        for(int yy = 0; yy < image.getHeight(); yy++)
+        {
+            for(int xx = 0; xx < image.getWidth(); xx++)
+            {
+                int x = drawX + xx;
+                int y = drawY + yy;
+                if(x < x0 || x >= x1 || y < y0 || y >= y1){continue;}
+                int paintRGB = image.getRGB(xx, yy);
+                if(paintRGB == KEY){paintRGB = 0;}
+                frame.setRGB(x, y, AlphaBlend.blend(frame.getRGB(x, y), paintRGB));
+            }
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage image)
+    {
+        BufferedImage copy = IntRaster.createImage(image.getWidth(), image.getHeight());
+        System.arraycopy(IntRaster.of(image).getData(), 0, IntRaster.of(copy).getData(), 0,
+                image.getWidth() * image.getHeight());
+        return copy;
+    }
+
+    private static void check(int type, boolean runs)
+    {
+        Random random = new Random(type * 31 + (runs ? 1 : 0));
+        ColorKeyCache cache = new ColorKeyCache(1 << 24);
+        boolean spansUsed = false;
+        for(int round = 0; round < 200; round++)
+        {
+            BufferedImage image = image(random, type, 1 + random.nextInt(60), 1 + random.nextInt(60), runs);
+            BufferedImage expected = background(random);
+            BufferedImage actual = copy(expected);
+            int drawX = random.nextInt(WIDTH + 80) - 60;
+            int drawY = random.nextInt(HEIGHT + 80) - 60;
+            //Half the time, the whole frame; otherwise, a random clip.
+            int x0 = 0, y0 = 0, x1 = WIDTH, y1 = HEIGHT;
+            if(random.nextBoolean())
+            {
+                x0 = random.nextInt(WIDTH);
+                y0 = random.nextInt(HEIGHT);
+                x1 = x0 + random.nextInt(WIDTH - x0 + 1);
+                y1 = y0 + random.nextInt(HEIGHT - y0 + 1);
+            }
+            ColorKeyCache.Entry entry = cache.getEntry(image, KEY);
+            RowSpans spans = cache.getSpans(entry);
+            spansUsed |= spans != null;
+            Compositor.draw(IntRaster.of(actual), x0, y0, x1, y1, entry.getRaster(), spans, drawX, drawY, false);
+            reference(expected, image, drawX, drawY, x0, y0, x1, y1);
+            assertArrayEquals("Round " + round, IntRaster.of(expected).getData(), IntRaster.of(actual).getData());
+        }
+        assertEquals(runs, spansUsed);
+    }
+
+    @Test
+    public void matchesIntArgbSources()
+    {
+        check(BufferedImage.TYPE_INT_ARGB, false);
+        check(BufferedImage.TYPE_INT_ARGB, true);
+    }
+
+    @Test
+    public void matches4ByteAbgrSources()
+    {
+        check(BufferedImage.TYPE_4BYTE_ABGR, false);
+        check(BufferedImage.TYPE_4BYTE_ABGR, true);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a DamageRegion covers everything added to it, without overlap.
+ * @author Justis
+ */
+public class DamageRegionTest
+{
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 160;
+
+    /*
+    Counts how many rectangles of the region cover each pixel.
+    */
+    private static int[] coverage(DamageRegion region)
+    {
+        int[] counts = new int[WIDTH * HEIGHT];
+        for(int index = 0; index < region.getCount(); index++)
+        {
+            for(int y = region.getTop(index); y < region.getBottom(index); y++)
+            {
+                for(int x = region.getLeft(index); x < region.getRight(index); x++)
+                {
+                    counts[y * WIDTH + x]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    public void clipsToTheFrame()
+    {
+        DamageRegion region = new DamageRegion(WIDTH, HEIGHT);
+        region.add(-10, -10, 20, 20);
+        region.add(500, 500, 10, 10);
+        assertEquals(1, region.getCount());
+        assertEquals(0, region.getLeft(0));
+        assertEquals(0, region.getTop(0));
+        assertEquals(10, region.getRight(0));
+        assertEquals(10, region.getBottom(0));
+        assertEquals(100, region.getArea());
+    }
+
+    @Test
+    public void mergesOverlappingRectangles()
+    {
+        DamageRegion region = new DamageRegion(WIDTH, HEIGHT);
+        region.add(0, 0, 10, 10);
+        region.add(5, 5, 10, 10);
+        assertEquals(1, region.getCount());
+        assertEquals(225, region.getArea());
+        region.add(2, 2, 3, 3);
+        assertEquals(1, region.getCount());
+    }
+
+    @Test
+    public void coversEverythingWithoutOverlap()
+    {
+        Random random = new Random(7);
+        for(int round = 0; round < 50; round++)
+        {
+            DamageRegion region = new DamageRegion(WIDTH, HEIGHT);
+            boolean[] added = new boolean[WIDTH * HEIGHT];
+            for(int step = 0; step < 40; step++)
+            {
+                int x = random.nextInt(WIDTH + 40) - 20;
+                int y = random.nextInt(HEIGHT + 40) - 20;
+                int w = 1 + random.nextInt(30);
+                int h = 1 + random.nextInt(30);
+                region.add(x, y, w, h);
+                for(int yy = Math.max(y, 0); yy < Math.min(y + h, HEIGHT); yy++)
+                {
+                    for(int xx = Math.max(x, 0); xx < Math.min(x + w, WIDTH); xx++)
+                    {
+                        added[yy * WIDTH + xx] = true;
+                    }
+                }
+            }
+            assertTrue(region.getCount() <= 8);
+            int[] counts = coverage(region);
+            for(int index = 0; index < counts.length; index++)
+            {
+                assertTrue(counts[index] <= 1);
+                if(added[index]){assertEquals(1, counts[index]);}
+            }
+        }
+    }
+
+    @Test
+    public void copiesAnotherRegion()
+    {
+        DamageRegion first = new DamageRegion(WIDTH, HEIGHT);
+        first.add(0, 0, 10, 10);
+        first.add(100, 100, 20, 5);
+        DamageRegion second = new DamageRegion(WIDTH, HEIGHT);
+        second.addAll(first);
+        assertArrayEquals(coverage(first), coverage(second));
+        second.clear();
+        assertTrue(second.isEmpty());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import GameView.Sprite;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times full-screen Mode0 redraws drawn in 1 band up to twice as many bands
+ * as there are cores. Each frame is a translucent background with 200
+ * translucent sprites on top, all redrawn from scratch. The best of five
+ * runs is kept, so the first runs warm up the JIT.
+ * <p>Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class Mode0BandsBenchmark
+{
+    private static final int SPRITES = 200;
+    private static final int FRAMES = 200;
+
+    private static BufferedImage translucent(int width, int height, Random random)
+    {
+        BufferedImage image = IntRaster.createImage(width, height);
+        int[] data = IntRaster.of(image).getData();
+        for(int index = 0; index < data.length; index++){
+            data[index] = 0x80000000 | random.nextInt(0x1000000);
+        }
+        return image;
+    }
+
+    private static double time(int bands, ForkJoinPool pool)
+    {
+        Random random = new Random(1);
+        Mode0 mode = new Mode0();
+        mode.setRenderPool(pool);
+        mode.setRenderBands(bands);
+        mode.addPaintable(new Sprite(0, 0, translucent(240, 160, random)), 0);
+        for(int index = 0; index < SPRITES; index++)
+        {
+            mode.addPaintable(new Sprite(random.nextInt(240), random.nextInt(160),
+                    translucent(32, 32, random)), 1);
+        }
+        long best = Long.MAX_VALUE;
+        for(int run = 0; run < 5; run++)
+        {
+            long start = System.nanoTime();
+            for(int frame = 0; frame < FRAMES; frame++)
+            {
+                mode.invalidate();
+                mode.getFrame();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (FRAMES * 1e6);
+    }
+
+    public static void main(String[] args)
+    {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        System.out.printf("%d cores%n", cores);
+        double serial = time(1, pool);
+        System.out.printf("1 band: %.3f ms/frame%n", serial);
+        for(int bands = 2; bands <= cores * 2; bands *= 2)
+        {
+            double banded = time(bands, pool);
+            System.out.printf("%d bands: %.3f ms/frame (%.2fx)%n", bands, banded, serial / banded);
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.AffineBuilder;
+import GameView.IntRaster;
+import GameView.Sprite;
+import GameView.TileLayer;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that drawing a frame in bands gives exactly the same pixels as
+ * drawing it on one thread.
+ * @author Justis
+ */
+public class Mode0BandsTest
+{
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp()
+    {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    /*
+    A tiled background, with translucent, wrapped and rotated sprites on
+    top. The same seed always builds the same scene.
+    */
+    private static Sprite[] build(Mode0 mode, Random random)
+    {
+        BufferedImage tiles = IntRaster.createImage(32, 32);
+        Arrays.fill(IntRaster.of(tiles).getData(), 0xFF204060);
+        TileLayer layer = new TileLayer(tiles, 8, 8, 32, 32);
+        for(int index = 0; index < 300; index++){
+            layer.setTile(random.nextInt(32), random.nextInt(32), random.nextInt(16));
+        }
+        mode.addPaintable(layer, 0).setWrapped(true);
+        Sprite[] sprites = new Sprite[40];
+        for(int index = 0; index < sprites.length; index++)
+        {
+            BufferedImage image = IntRaster.createImage(24, 24);
+            int[] data = IntRaster.of(image).getData();
+            for(int pixel = 0; pixel < data.length; pixel++){
+                data[pixel] = (pixel % 7 == 0) ? 0 : random.nextInt();
+            }
+            sprites[index] = new Sprite(random.nextInt(240), random.nextInt(160), image);
+            PaintProperties properties = mode.addPaintable(sprites[index], 1 + random.nextInt(3));
+            if(index % 5 == 0){properties.setWrapped(true);}
+            if(index % 4 == 1){
+                properties.setAffine(new AffineBuilder().rotate(index).scale(1.5, 0.75), true);
+            }
+        }
+        return sprites;
+    }
+
+    @Test
+    public void bandsMatchOneThread()
+    {
+        Mode0 serial = new Mode0();
+        Mode0 banded = new Mode0();
+        banded.setRenderPool(pool);
+        banded.setRenderBands(7);
+        Sprite[] serialSprites = build(serial, new Random(11));
+        Sprite[] bandedSprites = build(banded, new Random(11));
+        Random moves = new Random(5);
+        for(int frame = 0; frame < 30; frame++)
+        {
+            for(int step = 0; step < 10; step++)
+            {
+                int index = moves.nextInt(serialSprites.length);
+                int dx = moves.nextInt(61) - 30;
+                int dy = moves.nextInt(61) - 30;
+                serialSprites[index].setX(serialSprites[index].getX() + dx);
+                serialSprites[index].setY(serialSprites[index].getY() + dy);
+                bandedSprites[index].setX(bandedSprites[index].getX() + dx);
+                bandedSprites[index].setY(bandedSprites[index].getY() + dy);
+            }
+            if(frame % 10 == 0)
+            {
+                serial.invalidate();
+                banded.invalidate();
+            }
+            int[] expected = IntRaster.of(serial.getFrame()).getData();
+            int[] actual = IntRaster.of(banded.getFrame()).getData();
+            assertArrayEquals("Frame " + frame, expected, actual);
+        }
+    }
+}
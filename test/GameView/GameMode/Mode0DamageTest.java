@@ -0,0 +1,221 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.FramedSprite;
+import GameView.IntRaster;
+import GameView.Paintable;
+import GameView.Sprite;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that redrawing only what changed gives exactly the same frame as
+ * redrawing everything, as sprites move, hide, change images and change
+ * priorities.
+ * @author Justis
+ */
+public class Mode0DamageTest
+{
+    private static final int SPRITES = 30;
+
+    /*
+    A Paintable that can't report its changes, so Mode0 has to poll it.
+    */
+    private static class Plain implements Paintable
+    {
+        private int x, y;
+        private BufferedImage image;
+
+        private Plain(int x, int y, BufferedImage image)
+        {
+            this.x = x;
+            this.y = y;
+            this.image = image;
+        }
+
+        @Override public int getX(){return x;}
+        @Override public void setX(int newX){x = newX;}
+        @Override public int getY(){return y;}
+        @Override public void setY(int newY){y = newY;}
+        @Override public BufferedImage getImage(){return image;}
+        @Override public void setImage(BufferedImage newImage){image = newImage;}
+    }
+
+    /*
+    A Sprite that moves on its own, without calling fireChanged().
+    */
+    private static class Drifting extends Sprite
+    {
+        private int drift = 0;
+
+        private Drifting(int x, int y, BufferedImage image)
+        {
+            super(x, y, image);
+        }
+
+        @Override public int getX(){return super.getX() + drift;}
+    }
+
+    /*
+    One Mode0 and what's in it.
+    */
+    private static class Scene
+    {
+        private final Mode0 mode = new Mode0();
+        private final List<Paintable> paintables = new ArrayList<>();
+        private final List<PaintProperties> properties = new ArrayList<>();
+
+        private Scene(BufferedImage[] images, long seed)
+        {
+            Random random = new Random(seed);
+            for(int index = 0; index < SPRITES; index++)
+            {
+                BufferedImage image = images[random.nextInt(images.length)];
+                int x = random.nextInt(280) - 20;
+                int y = random.nextInt(200) - 20;
+                Paintable paint = (index % 6 == 5) ? new Plain(x, y, image) : new Sprite(x, y, image);
+                PaintProperties p = mode.addPaintable(paint, random.nextInt(4));
+                if(index % 3 == 0){p.setWrapped(true);}
+                paintables.add(paint);
+                properties.add(p);
+            }
+        }
+    }
+
+    private static BufferedImage[] images(Random random)
+    {
+        BufferedImage[] images = new BufferedImage[6];
+        for(int index = 0; index < images.length; index++)
+        {
+            BufferedImage image = IntRaster.createImage(8 + 6 * index, 10 + 4 * index);
+            int[] data = IntRaster.of(image).getData();
+            for(int pixel = 0; pixel < data.length; pixel++)
+            {
+                int kind = random.nextInt(4);
+                data[pixel] = (kind == 0) ? 0 : (kind == 1) ? (random.nextInt() & 0x7FFFFFFF) : (0xFF000000 | random.nextInt());
+            }
+            images[index] = image;
+        }
+        return images;
+    }
+
+    @Test
+    public void damageMatchesAFullRedraw()
+    {
+        Random random = new Random(21);
+        BufferedImage[] images = images(random);
+        Scene damaged = new Scene(images, 4);
+        Scene full = new Scene(images, 4);
+        for(int frame = 0; frame < 120; frame++)
+        {
+            for(int step = 0; step < 6; step++)
+            {
+                int index = random.nextInt(SPRITES);
+                int action = random.nextInt(7);
+                int a = random.nextInt(61) - 30;
+                int b = random.nextInt(61) - 30;
+                BufferedImage image = images[random.nextInt(images.length)];
+                for(Scene scene : new Scene[]{damaged, full})
+                {
+                    Paintable paint = scene.paintables.get(index);
+                    PaintProperties p = scene.properties.get(index);
+                    switch(action)
+                    {
+                        case 0: case 1:
+                            paint.setX(Math.floorMod(paint.getX() + a + 40, 320) - 40);
+                            paint.setY(Math.floorMod(paint.getY() + b + 40, 240) - 40);
+                            break;
+                        case 2:
+                            p.setVisible(!p.isVisible());
+                            break;
+                        case 3:
+                            paint.setImage(image);
+                            break;
+                        case 4:
+                            p.setPriority(Math.floorMod(a, 4));
+                            break;
+                        case 5:
+                            p.setWrapped(!p.isWrapped());
+                            break;
+                        default:
+                            //Moving far enough to wrap right around.
+                            paint.setX(paint.getX() + 240 * (a > 0 ? 1 : -1));
+                    }
+                }
+            }
+            if(frame % 15 == 7)
+            {
+                //Changing an image's pixels directly, which only markDirty() reports.
+                BufferedImage image = damaged.paintables.get(frame % SPRITES).getImage();
+                int[] data = IntRaster.of(image).getData();
+                for(int pixel = 0; pixel < data.length; pixel += 3){data[pixel] ^= 0x00FFFFFF;}
+                damaged.properties.get(frame % SPRITES).markDirty();
+                for(int index = 0; index < SPRITES; index++)
+                {
+                    if(damaged.paintables.get(index).getImage() == image)
+                    {
+                        damaged.properties.get(index).markDirty();
+                    }
+                }
+            }
+            full.mode.invalidate();
+            int[] expected = IntRaster.of(full.mode.getFrame()).getData();
+            int[] actual = IntRaster.of(damaged.mode.getFrame()).getData();
+            assertArrayEquals("Frame " + frame, expected, actual);
+        }
+    }
+
+    @Test
+    public void invalidateFromAnotherThread() throws InterruptedException
+    {
+        Mode0 mode = new Mode0();
+        BufferedImage image = IntRaster.createImage(16, 16);
+        int[] data = IntRaster.of(image).getData();
+        Arrays.fill(data, 0xFF102030);
+        //The top-left pixel is the color key, unless one is set.
+        data[0] = 0;
+        mode.addPaintable(new Sprite(10, 10, image), 0);
+        //Scribbling over all three recycled frames, which Mode0 can't see.
+        for(int frame = 0; frame < 3; frame++){
+            Arrays.fill(IntRaster.of(mode.getFrame()).getData(), 0xFFFFFFFF);
+        }
+        Thread other = new Thread(mode::invalidate);
+        other.start();
+        other.join();
+        for(int frame = 0; frame < 3; frame++)
+        {
+            BufferedImage drawn = mode.getFrame();
+            assertEquals("Frame " + frame, 0xFF102030, drawn.getRGB(12, 12));
+            assertEquals("Frame " + frame, 0, drawn.getRGB(100, 100));
+        }
+    }
+
+    @Test
+    public void pollsSpritesThatOverrideGetters()
+    {
+        Mode0 mode = new Mode0();
+        BufferedImage image = IntRaster.createImage(16, 16);
+        int[] data = IntRaster.of(image).getData();
+        Arrays.fill(data, 0xFF102030);
+        data[0] = 0;
+        Drifting sprite = new Drifting(10, 10, image);
+        mode.addPaintable(sprite, 0);
+        assertFalse(sprite.addPaintableListener(changed -> {}));
+        assertTrue(new Sprite(0, 0, image).addPaintableListener(changed -> {}));
+        assertTrue(new FramedSprite(0, 0, image, 1).addPaintableListener(changed -> {}));
+        assertEquals(0xFF102030, mode.getFrame().getRGB(12, 12));
+        sprite.drift = 100;
+        BufferedImage drawn = mode.getFrame();
+        assertEquals(0, drawn.getRGB(12, 12));
+        assertEquals(0xFF102030, drawn.getRGB(112, 12));
+    }
+}
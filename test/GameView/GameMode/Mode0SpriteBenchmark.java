@@ -0,0 +1,66 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import GameView.Sprite;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times Mode0 frames with 10,000 sprites spread over a world 100 times the
+ * size of the screen, so about 1% of them are visible. A hundred sprites move
+ * each frame, and the rest stay still.
+ * <p>Each layout is timed without a spatial index, then with one.
+ * <p>Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class Mode0SpriteBenchmark
+{
+    private static final int SPRITES = 10000;
+    private static final int MOVING = 100;
+    private static final int WORLD_WIDTH = 2400;
+    private static final int WORLD_HEIGHT = 1600;
+    private static final int FRAMES = 300;
+
+    private static double time(int cellSize)
+    {
+        Random random = new Random(1);
+        Mode0 mode = new Mode0();
+        mode.setSpatialIndex(cellSize);
+        Sprite[] sprites = new Sprite[SPRITES];
+        for(int index = 0; index < SPRITES; index++)
+        {
+            BufferedImage image = IntRaster.createImage(16, 16);
+            Arrays.fill(IntRaster.of(image).getData(), 0xFF000000 | random.nextInt());
+            sprites[index] = new Sprite(random.nextInt(WORLD_WIDTH), random.nextInt(WORLD_HEIGHT), image);
+            mode.addPaintable(sprites[index], random.nextInt(4));
+        }
+        for(int frame = 0; frame < 20; frame++){mode.getFrame();}
+        long start = System.nanoTime();
+        for(int frame = 0; frame < FRAMES; frame++)
+        {
+            for(int index = 0; index < MOVING; index++)
+            {
+                Sprite sprite = sprites[random.nextInt(SPRITES)];
+                sprite.setX(Math.floorMod(sprite.getX() + random.nextInt(9) - 4, WORLD_WIDTH));
+                sprite.setY(Math.floorMod(sprite.getY() + random.nextInt(9) - 4, WORLD_HEIGHT));
+            }
+            mode.getFrame();
+        }
+        return (System.nanoTime() - start) / (FRAMES * 1e6);
+    }
+
+    public static void main(String[] args)
+    {
+        System.out.printf("%d sprites, %d moving per frame%n", SPRITES, MOVING);
+        System.out.printf("no index:   %.3f ms/frame%n", time(0));
+        System.out.printf("32px cells: %.3f ms/frame%n", time(32));
+        System.out.printf("no index:   %.3f ms/frame%n", time(0));
+        System.out.printf("32px cells: %.3f ms/frame%n", time(32));
+    }
+}
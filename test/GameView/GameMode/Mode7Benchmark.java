@@ -0,0 +1,70 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import Examples.Mode7Mode;
+import GameView.IntRaster;
+import java.awt.image.BufferedImage;
+
+/**
+ * Times Mode7 against the Mode7Mode example, at the GBA's 240x160 and at
+ * four times that size. Mode7 is timed both level and rolled, since a
+ * rolled camera falls back to a divide per pixel.
+ * <p>The best of 50 frames is kept, after 200 frames of warming up.
+ * <p>Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class Mode7Benchmark
+{
+    private static final int WARMUP = 200;
+    private static final int FRAMES = 50;
+
+    public static void main(String[] args)
+    {
+        for(int scale : new int[]{1, 4})
+        {
+            final int width = 240 * scale;
+            final int height = 160 * scale;
+            BufferedImage floor = IntRaster.createImage(width, height);
+            int[] data = IntRaster.of(floor).getData();
+            for(int y = 0; y < height; y++)
+            {
+                for(int x = 0; x < width; x++){data[y * width + x] = 0xFF000000 | (x * y);}
+            }
+            Mode7Mode example = new Mode7Mode(() -> floor);
+            Mode7 mode = new Mode7(width, height);
+            mode.setFloor(floor);
+            mode.setPitch(0.35);
+            mode.setHeight(40);
+            mode.setFarDistance(4000);
+            for(int frame = 0; frame < WARMUP; frame++)
+            {
+                example.getFrame();
+                mode.setYaw(frame * 0.01);
+                mode.getFrame();
+            }
+            long exampleBest = Long.MAX_VALUE, levelBest = Long.MAX_VALUE, rolledBest = Long.MAX_VALUE;
+            for(int frame = 0; frame < FRAMES; frame++)
+            {
+                long start = System.nanoTime();
+                example.getFrame();
+                long exampleDone = System.nanoTime();
+                mode.setYaw(frame * 0.01);
+                mode.setRoll(0);
+                mode.getFrame();
+                long levelDone = System.nanoTime();
+                mode.setRoll(0.2);
+                mode.getFrame();
+                long rolledDone = System.nanoTime();
+                exampleBest = Math.min(exampleBest, exampleDone - start);
+                levelBest = Math.min(levelBest, levelDone - exampleDone);
+                rolledBest = Math.min(rolledBest, rolledDone - levelDone);
+            }
+            System.out.printf("%dx%d: Mode7Mode %.3f ms, Mode7 %.3f ms, Mode7 rolled %.3f ms%n",
+                    width, height, exampleBest / 1e6, levelBest / 1e6, rolledBest / 1e6);
+        }
+    }
+}
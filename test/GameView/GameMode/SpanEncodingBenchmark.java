@@ -0,0 +1,64 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.Sprite;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Times full-screen Mode0 redraws with span encoding on and off, using the
+ * example sheets in Resources/Sprites. The background sheet fills the
+ * screen, and copies of the sprite sheet are scattered on top. As usual,
+ * each image's top-left color is its transparent color.
+ * <p>Run it from the project directory with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class SpanEncodingBenchmark
+{
+    private static final int SPRITES = 40;
+    private static final int FRAMES = 200;
+
+    private static double time(BufferedImage background, BufferedImage sheet, boolean spans)
+    {
+        Random random = new Random(1);
+        Mode0 mode = new Mode0();
+        mode.setSpanEncoding(spans);
+        mode.addPaintable(new Sprite(0, 0, background), 0).setWrapped(true);
+        for(int index = 0; index < SPRITES; index++)
+        {
+            mode.addPaintable(new Sprite(random.nextInt(240) - sheet.getWidth() / 2,
+                    random.nextInt(160) - sheet.getHeight() / 2, sheet), 1);
+        }
+        long best = Long.MAX_VALUE;
+        for(int run = 0; run < 5; run++)
+        {
+            long start = System.nanoTime();
+            for(int frame = 0; frame < FRAMES; frame++)
+            {
+                mode.invalidate();
+                mode.getFrame();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (FRAMES * 1e6);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        BufferedImage background = ImageIO.read(new File("Resources/Sprites/BG0.png"));
+        BufferedImage sheet = ImageIO.read(new File("Resources/Sprites/Spr0.png"));
+        System.out.printf("BG0 %dx%d, Spr0 %dx%d, %d sprites%n", background.getWidth(),
+                background.getHeight(), sheet.getWidth(), sheet.getHeight(), SPRITES);
+        double perPixel = time(background, sheet, false);
+        double spans = time(background, sheet, true);
+        System.out.printf("per pixel: %.3f ms/frame%nspans:     %.3f ms/frame (%.2fx)%n",
+                perPixel, spans, perPixel / spans);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import GameView.Sprite;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the SpatialGrid finds what it should, as things move around.
+ * @author Justis
+ */
+public class SpatialGridTest
+{
+    private static PaintProperties properties()
+    {
+        return new PaintProperties(new Sprite(0, 0, IntRaster.createImage(1, 1)), 0);
+    }
+
+    private static List<PaintProperties> query(SpatialGrid grid, int x, int y, int w, int h)
+    {
+        List<PaintProperties> found = new ArrayList<>();
+        grid.query(x, y, w, h, found);
+        return found;
+    }
+
+    private static boolean containsSame(List<PaintProperties> list, PaintProperties p)
+    {
+        for(PaintProperties item : list)
+        {
+            if(item == p){return true;}
+        }
+        return false;
+    }
+
+    @Test
+    public void findsOnlyNearbyCells()
+    {
+        SpatialGrid grid = new SpatialGrid(16);
+        PaintProperties near = properties();
+        PaintProperties far = properties();
+        grid.update(near, false, 4, 4, 8, 8);
+        grid.update(far, false, 1000, -1000, 8, 8);
+        List<PaintProperties> found = query(grid, 0, 0, 240, 160);
+        assertEquals(1, found.size());
+        assertSame(near, found.get(0));
+    }
+
+    @Test
+    public void keepsTheSamePaintableApart()
+    {
+        //One Paintable added twice gets two PaintProperties, which must stay separate.
+        Sprite sprite = new Sprite(0, 0, IntRaster.createImage(8, 8));
+        PaintProperties first = new PaintProperties(sprite, 0);
+        PaintProperties second = new PaintProperties(sprite, 0);
+        SpatialGrid grid = new SpatialGrid(16);
+        grid.update(first, false, 0, 0, 8, 8);
+        grid.update(second, false, 0, 0, 8, 8);
+        grid.remove(second);
+        List<PaintProperties> found = query(grid, 0, 0, 16, 16);
+        assertEquals(1, found.size());
+        assertSame(first, found.get(0));
+    }
+
+    @Test
+    public void listsLargeAndWrappedEverywhere()
+    {
+        SpatialGrid grid = new SpatialGrid(8);
+        PaintProperties large = properties();
+        PaintProperties wrapped = properties();
+        grid.update(large, false, -4000, -4000, 8000, 8000);
+        grid.update(wrapped, true, 5000, 5000, 8, 8);
+        assertTrue(large.gridEverywhere);
+        List<PaintProperties> found = query(grid, 0, 0, 8, 8);
+        assertEquals(2, found.size());
+        grid.update(large, false, 0, 0, 8, 8);
+        grid.remove(wrapped);
+        assertFalse(large.gridEverywhere);
+        assertTrue(query(grid, 100, 100, 8, 8).isEmpty());
+        assertEquals(1, query(grid, 0, 0, 8, 8).size());
+    }
+
+    @Test
+    public void matchesABruteForceSearch()
+    {
+        Random random = new Random(3);
+        SpatialGrid grid = new SpatialGrid(16);
+        PaintProperties[] items = new PaintProperties[500];
+        int[][] bounds = new int[items.length][];
+        for(int step = 0; step < 20000; step++)
+        {
+            int index = random.nextInt(items.length);
+            if(items[index] == null){items[index] = properties();}
+            if(random.nextInt(10) == 0)
+            {
+                grid.remove(items[index]);
+                bounds[index] = null;
+            }
+            else
+            {
+                int[] b = {random.nextInt(2000) - 1000, random.nextInt(2000) - 1000,
+                        1 + random.nextInt(random.nextInt(8) == 0 ? 200 : 40),
+                        1 + random.nextInt(40)};
+                grid.update(items[index], false, b[0], b[1], b[2], b[3]);
+                bounds[index] = b;
+            }
+        }
+        for(int check = 0; check < 200; check++)
+        {
+            int x = random.nextInt(2000) - 1000;
+            int y = random.nextInt(2000) - 1000;
+            List<PaintProperties> found = query(grid, x, y, 240, 160);
+            for(int index = 0; index < items.length; index++)
+            {
+                int[] b = bounds[index];
+                boolean overlaps = b != null && b[0] < x + 240 && x < b[0] + b[2]
+                        && b[1] < y + 160 && y < b[1] + b[3];
+                if(overlaps){assertTrue(containsSame(found, items[index]));}
+            }
+            for(PaintProperties p : found)
+            {
+                int index = 0;
+                while(items[index] != p){index++;}
+                assertNotNull(bounds[index]);
+            }
+        }
+    }
+
+    @Test
+    public void freesEmptyCells()
+    {
+        Random random = new Random(4);
+        SpatialGrid grid = new SpatialGrid(16);
+        PaintProperties[] items = new PaintProperties[200];
+        int[][] bounds = new int[items.length][];
+        for(int index = 0; index < items.length; index++){items[index] = properties();}
+        for(int step = 0; step < 50000; step++)
+        {
+            //Wandering across a world far larger than the table ever gets.
+            int index = random.nextInt(items.length);
+            int[] b = {random.nextInt(100000) - 50000, random.nextInt(100000) - 50000,
+                    1 + random.nextInt(40), 1 + random.nextInt(40)};
+            grid.update(items[index], false, b[0], b[1], b[2], b[3]);
+            bounds[index] = b;
+        }
+        Set<Long> cells = new HashSet<>();
+        for(int[] b : bounds)
+        {
+            if(b == null){continue;}
+            for(int cy = Math.floorDiv(b[1], 16); cy <= Math.floorDiv(b[1] + b[3] - 1, 16); cy++)
+                for(int cx = Math.floorDiv(b[0], 16); cx <= Math.floorDiv(b[0] + b[2] - 1, 16); cx++)
+                {
+                    cells.add(((long)cx << 32) | (cy & 0xFFFFFFFFL));
+                }
+        }
+        assertEquals(cells.size(), grid.getCellCount());
+        for(int index = 0; index < items.length; index++)
+        {
+            int[] b = bounds[index];
+            List<PaintProperties> found = query(grid, b[0], b[1], b[2], b[3]);
+            assertTrue(containsSame(found, items[index]));
+        }
+        for(PaintProperties p : items){grid.remove(p);}
+        assertEquals(0, grid.getCellCount());
+        assertTrue(query(grid, -1000, -1000, 2000, 2000).isEmpty());
+    }
+}
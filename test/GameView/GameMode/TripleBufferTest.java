@@ -0,0 +1,117 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.IntRaster;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the frame handed to the consumer is never the one being drawn.
+ * @author Justis
+ */
+public class TripleBufferTest
+{
+    @Test
+    public void frontIsNeverTheBack()
+    {
+        TripleBuffer frames = new TripleBuffer(8, 8);
+        Random random = new Random(2);
+        BufferedImage front = frames.acquireFront();
+        for(int step = 0; step < 10000; step++)
+        {
+            if(random.nextBoolean())
+            {
+                frames.publish();
+            }
+            else
+            {
+                BufferedImage before = frames.getBack();
+                front = frames.acquireFront();
+                //Acquiring never changes what the producer draws on.
+                assertSame(before, frames.getBack());
+            }
+            assertNotSame("Step " + step, front, frames.getBack());
+        }
+    }
+
+    @Test
+    public void acquiresTheLatestFrame()
+    {
+        TripleBuffer frames = new TripleBuffer(4, 4);
+        BufferedImage first = frames.getBack();
+        frames.publish();
+        BufferedImage second = frames.getBack();
+        frames.publish();
+        assertSame(second, frames.acquireFront());
+        //Nothing new, so the same frame again.
+        assertSame(second, frames.acquireFront());
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void tracksDamageForEachFrame()
+    {
+        //With a consumer acquiring every frame, all three are drawn on in turn.
+        TripleBuffer frames = new TripleBuffer(16, 16);
+        for(int frame = 0; frame < 3; frame++)
+        {
+            assertEquals(256, frames.getBackDamage().getArea());
+            frames.getBackDamage().clear();
+            frames.publish();
+            frames.acquireFront();
+        }
+        DamageRegion changed = new DamageRegion(16, 16);
+        changed.add(0, 0, 4, 4);
+        frames.addDamage(changed);
+        for(int frame = 0; frame < 3; frame++)
+        {
+            assertEquals(16, frames.getBackDamage().getArea());
+            frames.getBackDamage().clear();
+            frames.publish();
+            frames.acquireFront();
+        }
+        assertTrue(frames.getBackDamage().isEmpty());
+    }
+
+    @Test
+    public void frontIsLeftAloneAcrossThreads() throws InterruptedException
+    {
+        TripleBuffer frames = new TripleBuffer(32, 32);
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread producer = new Thread(() -> {
+            for(int frame = 1; !done.get(); frame++)
+            {
+                Arrays.fill(IntRaster.of(frames.getBack()).getData(), frame);
+                frames.publish();
+            }
+        });
+        producer.start();
+        try
+        {
+            int last = 0;
+            for(int step = 0; step < 2000; step++)
+            {
+                int[] data = IntRaster.of(frames.acquireFront()).getData();
+                int stamp = data[0];
+                assertTrue(stamp >= last);
+                last = stamp;
+                Thread.yield();
+                //Every pixel still has the stamp of the frame that was acquired.
+                for(int pixel : data){assertEquals(stamp, pixel);}
+            }
+        }
+        finally
+        {
+            done.set(true);
+            producer.join();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView.GameMode;
+
+import GameView.AlphaBlend;
+import GameView.IntRaster;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that drawing a wrapped image as up to four clipped rectangles gives
+ * the same frame as wrapping each pixel with floorMod.
+ * @author Justis
+ */
+public class WrappedDrawTest
+{
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 160;
+
+    private static BufferedImage image(Random random, int width, int height)
+    {
+        BufferedImage image = IntRaster.createImage(width, height);
+        int[] data = IntRaster.of(image).getData();
+        for(int pixel = 0; pixel < data.length; pixel++)
+        {
+            int kind = random.nextInt(3);
+            data[pixel] = (kind == 0) ? 0 : (kind == 1) ? 0x80000000 | (random.nextInt() & 0x00FFFFFF)
+                    : 0xFF000000 | random.nextInt();
+        }
+        return image;
+    }
+
+    private static BufferedImage background(Random random)
+    {
+        BufferedImage frame = IntRaster.createImage(WIDTH, HEIGHT);
+        int[] data = IntRaster.of(frame).getData();
+        for(int pixel = 0; pixel < data.length; pixel++){data[pixel] = 0xFF000000 | random.nextInt();}
+        return frame;
+    }
+
+    /*
+    The reference: each pixel wrapped onto the frame with floorMod. An image
+    larger than the frame would land on itself, so, as documented, only its
+    last frame-length along each axis is drawn.
+    */
+    private static void reference(BufferedImage frame, BufferedImage image, int drawX, int drawY,
+            int x0, int y0, int x1, int y1)
+    {
+        int skipX = Math.max(0, image.getWidth() - WIDTH);
+        int skipY = Math.max(0, image.getHeight() - HEIGHT);
+        for(int yy = skipY; yy < image.getHeight(); yy++)
+        {
+            for(int xx = skipX; xx < image.getWidth(); xx++)
+            {
+                int x = Math.floorMod(drawX + xx, WIDTH);
+                int y = Math.floorMod(drawY + yy, HEIGHT);
+                if(x < x0 || x >= x1 || y < y0 || y >= y1){continue;}
+                frame.setRGB(x, y, AlphaBlend.blend(frame.getRGB(x, y), image.getRGB(xx, yy)));
+            }
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage image)
+    {
+        BufferedImage copy = IntRaster.createImage(image.getWidth(), image.getHeight());
+        System.arraycopy(IntRaster.of(image).getData(), 0, IntRaster.of(copy).getData(), 0,
+                image.getWidth() * image.getHeight());
+        return copy;
+    }
+
+    /*
+    Draws random images at offsets that are negative, or past the frame by
+    several frame-lengths, through draw() or drawAffine().
+    */
+    private static void check(boolean affine)
+    {
+        Random random = new Random(affine ? 9 : 8);
+        for(int round = 0; round < 300; round++)
+        {
+            //Some images are wider or taller than the frame.
+            int width = 1 + random.nextInt(random.nextInt(4) == 0 ? 320 : 60);
+            int height = 1 + random.nextInt(random.nextInt(4) == 0 ? 220 : 60);
+            BufferedImage image = image(random, width, height);
+            BufferedImage expected = background(random);
+            BufferedImage actual = copy(expected);
+            int drawX = random.nextInt(6 * WIDTH) - 3 * WIDTH;
+            int drawY = random.nextInt(6 * HEIGHT) - 3 * HEIGHT;
+            int x0 = 0, y0 = 0, x1 = WIDTH, y1 = HEIGHT;
+            if(random.nextBoolean())
+            {
+                x0 = random.nextInt(WIDTH);
+                y0 = random.nextInt(HEIGHT);
+                x1 = x0 + random.nextInt(WIDTH - x0 + 1);
+                y1 = y0 + random.nextInt(HEIGHT - y0 + 1);
+            }
+            IntRaster src = IntRaster.of(image);
+            if(affine)
+            {
+                //The identity matrix, so each pixel of the box reads the same pixel of the image.
+                Compositor.drawAffine(IntRaster.of(actual), x0, y0, x1, y1, src,
+                        drawX, drawY, width, height, 1, 0, 0, 0, 1, 0, true);
+            }
+            else
+            {
+                Compositor.draw(IntRaster.of(actual), x0, y0, x1, y1, src, RowSpans.encode(src),
+                        drawX, drawY, true);
+            }
+            reference(expected, image, drawX, drawY, x0, y0, x1, y1);
+            assertArrayEquals("Round " + round, IntRaster.of(expected).getData(), IntRaster.of(actual).getData());
+        }
+    }
+
+    @Test
+    public void imagesMatchFloorMod()
+    {
+        check(false);
+    }
+
+    @Test
+    public void affineBoxesMatchFloorMod()
+    {
+        check(true);
+    }
+
+    @Test
+    public void wrapsAroundByWholeFrames()
+    {
+        for(int draw : new int[]{-481, -240, -1, 0, 1, 239, 240, 480, 1000})
+        {
+            int start = Compositor.wrapStart(draw, 16, WIDTH);
+            assertEquals(Math.floorMod(draw, WIDTH), start);
+            assertEquals(start, Compositor.wrapOffset(draw, 16, WIDTH));
+        }
+        //Only the last frame-length of a larger image is shown.
+        assertEquals(Math.floorMod(-5 + 60, WIDTH), Compositor.wrapStart(-5, 300, WIDTH));
+        assertEquals(Compositor.wrapStart(-5, 300, WIDTH) - 60, Compositor.wrapOffset(-5, 300, WIDTH));
+    }
+}
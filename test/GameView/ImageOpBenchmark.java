@@ -0,0 +1,82 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Times ImageOp.apply() against the per-pixel loop it used to have, for a
+ * rotation, a scale and a shear of a 1024x1024 image.
+ * <p>The old loop is copied here as it was: it reverses the matrix for every
+ * pixel in doubles, walks the image column by column, and goes through
+ * getRGB() and setRGB(). Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class ImageOpBenchmark
+{
+    private static final int SIZE = 1024;
+    private static final int ROUNDS = 8;
+
+    private static BufferedImage oldApply(BufferedImage image, Affine affine)
+    {
+        final double a = affine.getA();
+        final double b = affine.getB();
+        final double c = affine.getC();
+        final double d = affine.getD();
+        final double e = affine.getE();
+        final double f = affine.getF();
+        final double xNumConst = (b * f) - (e * c);
+        final double yNumConst = (d * c) - (a * f);
+        final double denomConst = 1 / ((e * a) - (b * d));
+        BufferedImage newImage = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_4BYTE_ABGR);
+        for(int xx = 0; xx < image.getWidth(); xx++)
+            for(int yy = 0; yy < image.getHeight(); yy++)
+            {
+                double readX = ((e * xx) - (b * yy) + xNumConst) * denomConst;
+                double readY = ((a * yy) - (d * xx) + yNumConst) * denomConst;
+                if(readX < 0 || readY < 0
+                    || readX >= image.getWidth() || readY >= image.getHeight()){continue;}
+                newImage.setRGB(xx, yy, image.getRGB((int)readX, (int)readY));
+            }
+        return newImage;
+    }
+
+    private static double time(ImageOp op, BufferedImage image, boolean old)
+    {
+        Affine affine = op.getAffine();
+        long best = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++)
+        {
+            long start = System.nanoTime();
+            if(old){oldApply(image, affine);}
+            else{op.apply();}
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(1);
+        BufferedImage image = IntRaster.createImage(SIZE, SIZE);
+        int[] data = IntRaster.of(image).getData();
+        for(int index = 0; index < data.length; index++){data[index] = random.nextInt();}
+        ImageOp[] ops = {
+            new ImageOp(image).rotateDegrees(SIZE / 2, SIZE / 2, 30),
+            new ImageOp(image).scale(1.7, 0.8),
+            new ImageOp(image).shear(0.3, 0.2)
+        };
+        String[] names = {"rotate 30", "scale 1.7x0.8", "shear 0.3,0.2"};
+        for(int index = 0; index < ops.length; index++)
+        {
+            double old = time(ops[index], image, true);
+            double now = time(ops[index], image, false);
+            System.out.printf("%-14s old %.1f ms, now %.1f ms, %.1fx%n", names[index], old, now, old / now);
+        }
+    }
+}
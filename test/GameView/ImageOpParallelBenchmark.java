@@ -0,0 +1,80 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times ImageOp.applyParallel() on pools of 1 thread up to one per core,
+ * against apply() on the calling thread. The image is 1024x768, and every
+ * line has its own matrix, like a Mode 7 floor.
+ * <p>Each parallel result is also checked against apply(), since they're
+ * meant to be identical.
+ * <p>Run it with main(); it isn't a unit test.
+ * @author Justis
+ */
+public class ImageOpParallelBenchmark
+{
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 768;
+    private static final int ROUNDS = 15;
+
+    private static final MatrixFunction LINES = new MatrixFunction()
+    {
+        @Override
+        public double[][] apply(int index)
+        {
+            AffineBuilder out = new AffineBuilder();
+            apply(index, out);
+            return out.toArray();
+        }
+
+        @Override
+        public void apply(int index, AffineBuilder out)
+        {
+            out.setIdentity().translate(300 - index / 2.0, 1).rotate(0.3).scale(0.5 + index / 500.0, 1);
+        }
+    };
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(3);
+        BufferedImage image = IntRaster.createImage(WIDTH, HEIGHT);
+        int[] data = IntRaster.of(image).getData();
+        for(int index = 0; index < data.length; index++){data[index] = random.nextInt();}
+        ImageOp op = new ImageOp(image).rotateDegrees(9);
+        int[] expected = IntRaster.of(op.apply(LINES)).getData();
+
+        long serial = Long.MAX_VALUE;
+        for(int round = 0; round < ROUNDS; round++)
+        {
+            long start = System.nanoTime();
+            op.apply(LINES);
+            serial = Math.min(serial, System.nanoTime() - start);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d cores%napply():           %.2f ms%n", cores, serial / 1e6);
+        for(int threads = 1; threads <= cores; threads *= 2)
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long best = Long.MAX_VALUE;
+            boolean same = true;
+            for(int round = 0; round < ROUNDS; round++)
+            {
+                long start = System.nanoTime();
+                BufferedImage result = op.applyParallel(LINES, pool);
+                best = Math.min(best, System.nanoTime() - start);
+                same &= Arrays.equals(expected, IntRaster.of(result).getData());
+            }
+            pool.shutdown();
+            System.out.printf("%d thread(s): %8.2f ms, %.2fx%s%n", threads, best / 1e6,
+                    (double)serial / best, same ? "" : ", DIFFERENT OUTPUT");
+        }
+    }
+}
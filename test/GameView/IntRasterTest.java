@@ -0,0 +1,104 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that IntRaster finds the right pixels, for whole images, subimages
+ * and images it has to convert.
+ * @author Justis
+ */
+public class IntRasterTest
+{
+    private static BufferedImage pattern(int width, int height, int type)
+    {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for(int y = 0; y < height; y++)
+        {
+            for(int x = 0; x < width; x++)
+            {
+                image.setRGB(x, y, 0xFF000000 | (x * 7) << 16 | (y * 11) << 8 | (x ^ y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSamePixels(BufferedImage image, IntRaster raster)
+    {
+        assertEquals(image.getWidth(), raster.getWidth());
+        assertEquals(image.getHeight(), raster.getHeight());
+        int[] data = raster.getData();
+        for(int y = 0; y < image.getHeight(); y++)
+        {
+            for(int x = 0; x < image.getWidth(); x++)
+            {
+                assertEquals(image.getRGB(x, y), data[raster.indexOf(x, y)]);
+                assertEquals(raster.getOffset() + y * raster.getStride() + x, raster.indexOf(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void wrapsArgbImagesDirectly()
+    {
+        BufferedImage image = pattern(13, 9, BufferedImage.TYPE_INT_ARGB);
+        assertTrue(IntRaster.isDirect(image));
+        IntRaster raster = IntRaster.of(image);
+        assertSamePixels(image, raster);
+        raster.getData()[raster.indexOf(4, 5)] = 0x80112233;
+        assertEquals(0x80112233, image.getRGB(4, 5));
+    }
+
+    @Test
+    public void wrapsSubimagesWithTheirOffset()
+    {
+        BufferedImage image = pattern(20, 16, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage sub = image.getSubimage(5, 3, 8, 10);
+        assertTrue(IntRaster.isDirect(sub));
+        IntRaster raster = IntRaster.of(sub);
+        assertEquals(20, raster.getStride());
+        assertSamePixels(sub, raster);
+        raster.getData()[raster.indexOf(0, 0)] = 0xFF445566;
+        assertEquals(0xFF445566, image.getRGB(5, 3));
+    }
+
+    @Test
+    public void wrapsNestedSubimages()
+    {
+        BufferedImage image = pattern(32, 32, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage sub = image.getSubimage(4, 6, 20, 20).getSubimage(3, 2, 5, 7);
+        assertSamePixels(sub, IntRaster.of(sub));
+    }
+
+    @Test
+    public void copiesOtherImageTypes()
+    {
+        BufferedImage image = pattern(10, 6, BufferedImage.TYPE_INT_RGB);
+        assertFalse(IntRaster.isDirect(image));
+        IntRaster raster = IntRaster.of(image);
+        assertSamePixels(image, raster);
+        int before = image.getRGB(2, 2);
+        raster.getData()[raster.indexOf(2, 2)] = 0;
+        assertEquals(before, image.getRGB(2, 2));
+    }
+
+    @Test
+    public void createImageIsDirect()
+    {
+        BufferedImage image = IntRaster.createImage(7, 3);
+        assertTrue(IntRaster.isDirect(image));
+        assertEquals(0, image.getRGB(6, 2));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNullImages()
+    {
+        IntRaster.of(null);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that mip levels average colors properly, and that a transparent
+ * color doesn't leave a halo in them.
+ * @author Justis
+ */
+public class MipPyramidTest
+{
+    private static final int KEY = 0xFFFF00FF;
+    private static final int GREEN = 0xFF00FF00;
+
+    /*
+    A green checkerboard of 3x3 squares, on the transparent color.
+    */
+    private static BufferedImage checkerboard()
+    {
+        BufferedImage image = IntRaster.createImage(64, 64);
+        for(int y = 0; y < 64; y++)
+        {
+            for(int x = 0; x < 64; x++)
+            {
+                image.setRGB(x, y, ((x / 3 + y / 3) % 2 == 0) ? GREEN : KEY);
+            }
+        }
+        return image;
+    }
+
+    /*
+    Fails if any pixel that isn't fully transparent has some red or blue,
+    which could only have come from the transparent color.
+    */
+    private static void assertNoHalo(IntRaster raster)
+    {
+        for(int y = 0; y < raster.getHeight(); y++)
+        {
+            for(int x = 0; x < raster.getWidth(); x++)
+            {
+                int argb = raster.getData()[raster.indexOf(x, y)];
+                if((argb >>> 24) != 0){
+                    assertEquals("Pixel (" + x + ", " + y + ")", 0, argb & 0xFF00FF);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void halvesEachLevel()
+    {
+        BufferedImage image = IntRaster.createImage(5, 3);
+        MipPyramid pyramid = MipPyramid.of(image, IntRaster.of(image), false, 0);
+        assertEquals(3, pyramid.getLevelCount());
+        assertEquals(3, pyramid.getLevel(1).getWidth());
+        assertEquals(2, pyramid.getLevel(1).getHeight());
+        assertEquals(1, pyramid.getLevel(3).getWidth());
+        assertEquals(1, pyramid.getLevel(3).getHeight());
+    }
+
+    @Test
+    public void averagesWithoutAKey()
+    {
+        BufferedImage image = IntRaster.createImage(2, 2);
+        image.setRGB(0, 0, 0xFF000000);
+        image.setRGB(1, 0, 0xFFFFFFFF);
+        image.setRGB(0, 1, 0xFF000000);
+        image.setRGB(1, 1, 0xFFFFFFFF);
+        MipPyramid pyramid = MipPyramid.of(image, IntRaster.of(image), false, 0);
+        assertEquals(0xFF808080, pyramid.getLevel(1).getData()[0]);
+    }
+
+    @Test
+    public void removesTheKeyBeforeAveraging()
+    {
+        BufferedImage image = checkerboard();
+        MipPyramid pyramid = MipPyramid.of(image, IntRaster.of(image), true, KEY);
+        for(int level = 1; level <= pyramid.getLevelCount(); level++)
+        {
+            assertNoHalo(pyramid.getLevel(level));
+        }
+        //Half the pixels are green, so the last level is half-transparent green.
+        assertEquals(GREEN & 0xFFFFFF, pyramid.getLevel(pyramid.getLevelCount()).getData()[0] & 0xFFFFFF);
+    }
+
+    @Test
+    public void keepsAPyramidPerKey()
+    {
+        BufferedImage image = checkerboard();
+        IntRaster base = IntRaster.of(image);
+        MipPyramid plain = MipPyramid.of(image, base, false, KEY);
+        MipPyramid keyed = MipPyramid.of(image, base, true, KEY);
+        assertNotSame(plain, keyed);
+        assertSame(keyed, MipPyramid.of(image, base, true, KEY));
+        assertNotSame(keyed, MipPyramid.of(image, base, true, GREEN));
+        MipPyramid.invalidate(image);
+        assertNotSame(keyed, MipPyramid.of(image, base, true, KEY));
+    }
+
+    @Test
+    public void shrunkImagesHaveNoHalo()
+    {
+        BufferedImage shrunk = new ImageOp(checkerboard()).scale(0.25).setMipmapping(true)
+                .setTransparentRGB(new Color(KEY)).apply();
+        assertNoHalo(IntRaster.of(shrunk));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that clipping rows to the source gives the same pixels as stepping
+ * across the whole bounding box, and as working every pixel out with doubles.
+ * @author Justis
+ */
+public class RasterizerTest
+{
+    private static final int FRAC = 32;
+    private static final double ONE = 1L << FRAC;
+    private static final long FRAC_MASK = (1L << FRAC) - 1;
+    private static final long NEAR = 1L << (FRAC - 20);
+    private static final double LIMIT = 1 << 24;
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+    private static final int BACKGROUND = 0x12345678;
+
+    private static int exact(IntRaster src, int xx, int yy, double a, double b, double d, double e,
+            double xNumConst, double yNumConst, double denomConst, int old)
+    {
+        double readX = ((e * xx) - (b * yy) + xNumConst) * denomConst;
+        double readY = ((a * yy) - (d * xx) + yNumConst) * denomConst;
+        if(readX < 0 || readY < 0 || readX >= src.getWidth() || readY >= src.getHeight()){return old;}
+        return src.getData()[src.indexOf((int)readX, (int)readY)];
+    }
+
+    /*
+    The row loop as it was before rows were clipped: every pixel of the row
+    is stepped through, and checked against the image.
+    */
+    private static void fullBox(IntRaster src, int[] dst, int dstIndex, int x, int y, int count,
+            double a, double b, double d, double e, double xNumConst, double yNumConst, double denomConst)
+    {
+        double readX = ((e * x) - (b * y) + xNumConst) * denomConst;
+        double readY = ((a * y) - (d * x) + yNumConst) * denomConst;
+        double stepX = e * denomConst;
+        double stepY = -d * denomConst;
+        double lastX = readX + stepX * count;
+        double lastY = readY + stepY * count;
+        if(!(Math.abs(readX) < LIMIT && Math.abs(readY) < LIMIT
+                && Math.abs(lastX) < LIMIT && Math.abs(lastY) < LIMIT))
+        {
+            for(int xx = 0; xx < count; xx++)
+            {
+                dst[dstIndex + xx] = exact(src, x + xx, y, a, b, d, e, xNumConst, yNumConst, denomConst,
+                        dst[dstIndex + xx]);
+            }
+            return;
+        }
+        long fx = Math.round(readX * ONE);
+        long fy = Math.round(readY * ONE);
+        final long dfx = Math.round(stepX * ONE);
+        final long dfy = Math.round(stepY * ONE);
+        for(int xx = 0; xx < count; xx++, fx += dfx, fy += dfy)
+        {
+            if(((fx + NEAR) & FRAC_MASK) < 2 * NEAR || ((fy + NEAR) & FRAC_MASK) < 2 * NEAR)
+            {
+                dst[dstIndex + xx] = exact(src, x + xx, y, a, b, d, e, xNumConst, yNumConst, denomConst,
+                        dst[dstIndex + xx]);
+                continue;
+            }
+            int ix = (int)(fx >> FRAC);
+            int iy = (int)(fy >> FRAC);
+            if(fx < 0 || fy < 0 || ix >= src.getWidth() || iy >= src.getHeight()){continue;}
+            dst[dstIndex + xx] = src.getData()[src.indexOf(ix, iy)];
+        }
+    }
+
+    private static IntRaster source(Random random)
+    {
+        IntRaster src = IntRaster.of(IntRaster.createImage(37, 23));
+        int[] data = src.getData();
+        for(int pixel = 0; pixel < data.length; pixel++){data[pixel] = 0xFF000000 | random.nextInt();}
+        return src;
+    }
+
+    /*
+    Draws a whole frame three ways, and checks they all agree. The matrix is
+    the forward one, as ImageOp keeps it.
+    */
+    private static void check(String message, IntRaster src, double a, double b, double c, double d, double e, double f)
+    {
+        final double xNumConst = (b * f) - (e * c);
+        final double yNumConst = (d * c) - (a * f);
+        final double denomConst = 1 / ((e * a) - (b * d));
+        int[] clipped = new int[WIDTH * HEIGHT];
+        int[] full = new int[WIDTH * HEIGHT];
+        int[] doubles = new int[WIDTH * HEIGHT];
+        Arrays.fill(clipped, BACKGROUND);
+        Arrays.fill(full, BACKGROUND);
+        Arrays.fill(doubles, BACKGROUND);
+        for(int yy = 0; yy < HEIGHT; yy++)
+        {
+            //Rows start left of the frame, as applyUnclipped's do.
+            int x = -20;
+            int index = yy * WIDTH;
+            Rasterizer.row(src, src, 0, clipped, index, x, yy, WIDTH, a, b, d, e,
+                    xNumConst, yNumConst, denomConst, false, false, 0);
+            fullBox(src, full, index, x, yy, WIDTH, a, b, d, e, xNumConst, yNumConst, denomConst);
+            for(int xx = 0; xx < WIDTH; xx++)
+            {
+                doubles[index + xx] = exact(src, x + xx, yy, a, b, d, e, xNumConst, yNumConst, denomConst,
+                        doubles[index + xx]);
+            }
+        }
+        assertArrayEquals(message, full, clipped);
+        assertArrayEquals(message, doubles, clipped);
+    }
+
+    @Test
+    public void rotatedAndShearedMatchTheFullBox()
+    {
+        Random random = new Random(15);
+        IntRaster src = source(random);
+        for(int round = 0; round < 300; round++)
+        {
+            AffineBuilder matrix = new AffineBuilder()
+                    .translate(random.nextDouble() * 100 - 20, random.nextDouble() * 80 - 20)
+                    .rotate(random.nextDouble() * 2 * Math.PI)
+                    .shear(random.nextDouble() - 0.5, random.nextDouble() - 0.5)
+                    .scale(0.3 + random.nextDouble() * 3, 0.3 + random.nextDouble() * 3);
+            check("Round " + round, src, matrix.getA(), matrix.getB(), matrix.getC(),
+                    matrix.getD(), matrix.getE(), matrix.getF());
+        }
+    }
+
+    @Test
+    public void edgesMatchTheFullBox()
+    {
+        //Matrices that put pixels exactly on, or right next to, the image's edges.
+        IntRaster src = source(new Random(16));
+        double[] offsets = {0, 0.5, -0.5, 1e-7, -1e-7, 1, 17, 36.999999, 37};
+        for(double offset : offsets)
+        {
+            check("Identity " + offset, src, 1, 0, offset, 0, 1, offset);
+            check("Scaled " + offset, src, 2, 0, offset, 0, 0.5, -offset);
+            check("Flipped " + offset, src, -1, 0, 40 + offset, 0, -1, 30 - offset);
+            check("Turned " + offset, src, 0, 1, offset, -1, 0, 40 + offset);
+            check("Diagonal " + offset, src, 1, 1, offset, -1, 1, 20 + offset);
+            check("Thin " + offset, src, 1e-3, 0, offset, 0, 1, 0);
+        }
+    }
+
+    @Test
+    public void farAwayRowsAreSkipped()
+    {
+        IntRaster src = source(new Random(17));
+        check("Far", src, 1, 0, 1e9, 0, 1, 0);
+        check("Steep", src, 1e-9, 1, 0, -1, 1e-9, 30);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that drawing through a ScanlineTable gives exactly the same pixels
+ * as asking the MatrixFunction it recorded on every line.
+ * @author Justis
+ */
+public class ScanlineTableTest
+{
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp()
+    {
+        pool = new ForkJoinPool(3);
+    }
+
+    @After
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    private static BufferedImage image(Random random, int width, int height)
+    {
+        BufferedImage image = IntRaster.createImage(width, height);
+        int[] data = IntRaster.of(image).getData();
+        for(int pixel = 0; pixel < data.length; pixel++)
+        {
+            int kind = random.nextInt(5);
+            data[pixel] = (kind == 0) ? 0xFFFF00FF : (kind == 1) ? 0x60000000 | (random.nextInt() & 0x00FFFFFF)
+                    : 0xFF000000 | random.nextInt();
+        }
+        return image;
+    }
+
+    /*
+    A Mode 7 style floor, built through the AffineBuilder it's handed.
+    */
+    private static MatrixFunction floor(double angle)
+    {
+        return new MatrixFunction()
+        {
+            @Override
+            public double[][] apply(int index){return new AffineBuilder().toArray();}
+
+            @Override
+            public void apply(int index, AffineBuilder out)
+            {
+                double scale = 40.0 / (index + 8);
+                out.translate(32, 20).rotate(angle).scale(scale, scale).translate(-32, -index);
+            }
+        };
+    }
+
+    /*
+    A wavy effect, returning a new array on every line.
+    */
+    private static MatrixFunction wave(double phase)
+    {
+        return index -> MatrixFunction.multiplyAffine(
+                MatrixFunction.translateAffine(8 * Math.sin(index * 0.3 + phase), 0),
+                MatrixFunction.shearAffine(0.2 * Math.cos(index * 0.1), 0));
+    }
+
+    private static ImageOp op(BufferedImage image, int setup)
+    {
+        ImageOp op = new ImageOp(image);
+        switch(setup)
+        {
+            case 0:
+                return op;
+            case 1:
+                return op.rotate(0.4).scale(1.3, 0.8);
+            case 2:
+                return op.setBlending(true).setTransparentRGB(new Color(0xFF00FF));
+            default:
+                return op.setMipmapping(true).shear(0.3, -0.1).translate(-5, 7);
+        }
+    }
+
+    @Test
+    public void tableMatchesMatrixFunction()
+    {
+        Random random = new Random(13);
+        BufferedImage image = image(random, 64, 40);
+        for(MatrixFunction fn : new MatrixFunction[]{floor(0.7), floor(-2.1), wave(0), wave(1.5)})
+        {
+            ScanlineTable table = new ScanlineTable(image.getHeight(), fn);
+            for(int setup = 0; setup < 4; setup++)
+            {
+                ImageOp op = op(image, setup);
+                int[] expected = IntRaster.of(op.apply(fn)).getData();
+                assertArrayEquals("Setup " + setup, expected, IntRaster.of(op.apply(table)).getData());
+                assertArrayEquals("Setup " + setup, expected,
+                        IntRaster.of(op.applyParallel(table, pool)).getData());
+            }
+        }
+    }
+
+    @Test
+    public void applyToMatchesMatrixFunction()
+    {
+        Random random = new Random(14);
+        BufferedImage image = image(random, 64, 40);
+        MatrixFunction fn = floor(0.3);
+        ScanlineTable table = new ScanlineTable(70, fn);
+        Rectangle clip = new Rectangle(5, 3, 80, 60);
+        for(int setup = 0; setup < 4; setup++)
+        {
+            BufferedImage expected = image(random, 100, 70);
+            BufferedImage actual = IntRaster.createImage(100, 70);
+            System.arraycopy(IntRaster.of(expected).getData(), 0, IntRaster.of(actual).getData(), 0, 100 * 70);
+            op(image, setup).applyTo(expected, 10, 10, clip, fn);
+            op(image, setup).applyTo(actual, 10, 10, clip, table);
+            int[] want = IntRaster.of(expected).getData();
+            int[] got = IntRaster.of(actual).getData();
+            //Rows above y have no line in the table, so they aren't drawn from it.
+            for(int row = 10; row < 70; row++)
+            {
+                for(int column = 0; column < 100; column++)
+                {
+                    assertEquals("Setup " + setup + " at " + column + ", " + row,
+                            want[row * 100 + column], got[row * 100 + column]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void updatingLinesMatchesFilling()
+    {
+        ScanlineTable filled = new ScanlineTable(40, floor(1.1));
+        ScanlineTable updated = new ScanlineTable(40, wave(0.5));
+        for(int line = 39; line >= 0; line--){updated.update(line, floor(1.1));}
+        for(int line = 0; line < 40; line++)
+        {
+            assertEquals("Line " + line, filled.getLine(line), updated.getLine(line));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortTables()
+    {
+        new ImageOp(IntRaster.createImage(8, 8)).apply(new ScanlineTable(7));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks TileLayer's map and how it draws itself.
+ * @author Justis
+ */
+public class TileLayerTest
+{
+    private static TileLayer layer()
+    {
+        BufferedImage tileset = IntRaster.createImage(16, 8);
+        for(int x = 0; x < 16; x++)
+        {
+            for(int y = 0; y < 8; y++){
+                tileset.setRGB(x, y, x < 8 ? 0xFFFF0000 : 0xFF0000FF);
+            }
+        }
+        return new TileLayer(tileset, 8, 8, 4, 3);
+    }
+
+    @Test
+    public void setsAndGetsTiles()
+    {
+        TileLayer layer = layer();
+        assertEquals(-1, layer.getTile(2, 1));
+        int before = layer.getModCount();
+        layer.setTile(2, 1, 1);
+        assertEquals(1, layer.getTile(2, 1));
+        assertTrue(layer.getModCount() > before);
+        layer.setTile(2, 1, Short.MAX_VALUE);
+        assertEquals(Short.MAX_VALUE, layer.getTile(2, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTilesTooLargeForTheMap()
+    {
+        layer().setTile(0, 0, Short.MAX_VALUE + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTilesBelowEmpty()
+    {
+        layer().setTile(0, 0, -2);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void rejectsSpotsOutsideTheMap()
+    {
+        layer().setTile(4, 0, 0);
+    }
+
+    @Test
+    public void coversTheWholeMap()
+    {
+        TileLayer layer = layer();
+        assertTrue(layer.drawsItself());
+        assertEquals(32, layer.getWidth());
+        assertEquals(24, layer.getHeight());
+    }
+
+    @Test
+    public void drawsOnlyWithinTheClip()
+    {
+        TileLayer layer = layer();
+        layer.setTile(0, 0, 0);
+        layer.setTile(1, 0, 1);
+        BufferedImage frame = IntRaster.createImage(20, 10);
+        IntRaster raster = IntRaster.of(frame);
+        layer.drawOnto(raster, 4, 0, 12, 10, IntRaster.of(layer.getImage()), 0, 0, false);
+        assertEquals(0, frame.getRGB(3, 0));
+        assertEquals(0xFFFF0000, frame.getRGB(4, 0));
+        assertEquals(0xFF0000FF, frame.getRGB(11, 7));
+        assertEquals(0, frame.getRGB(12, 0));
+        //Row 1 of the map is empty.
+        assertEquals(0, frame.getRGB(5, 8));
+    }
+
+    @Test
+    public void repeatsWhenWrapped()
+    {
+        TileLayer layer = layer();
+        layer.setTile(0, 0, 1);
+        BufferedImage frame = IntRaster.createImage(40, 30);
+        layer.drawOnto(IntRaster.of(frame), 0, 0, 40, 30, IntRaster.of(layer.getImage()), 0, 0, true);
+        assertEquals(0xFF0000FF, frame.getRGB(0, 0));
+        assertEquals(0xFF0000FF, frame.getRGB(33, 25));
+        assertEquals(0, frame.getRGB(9, 0));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package GameView;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the TransformCache draws each result once, even when several
+ * threads ask for it at the same time.
+ * @author Justis
+ */
+public class TransformCacheTest
+{
+    private static final Affine ROTATE = new AffineBuilder().rotate(0.5).build();
+
+    @Test
+    public void reusesResults()
+    {
+        TransformCache cache = new TransformCache(1 << 24);
+        BufferedImage image = IntRaster.createImage(16, 16);
+        BufferedImage first = cache.apply(image, ROTATE);
+        assertSame(first, cache.apply(image, ROTATE));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertNotSame(first, cache.applyUnclipped(image, ROTATE));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void invalidateDrawsAgain()
+    {
+        TransformCache cache = new TransformCache(1 << 24);
+        BufferedImage image = IntRaster.createImage(16, 16);
+        BufferedImage first = cache.apply(image, ROTATE);
+        cache.invalidate(image);
+        assertEquals(0, cache.getSize());
+        assertNotSame(first, cache.apply(image, ROTATE));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void drawsOnceForManyThreads() throws InterruptedException
+    {
+        TransformCache cache = new TransformCache(1 << 26);
+        BufferedImage image = IntRaster.createImage(512, 512);
+        BufferedImage[] results = new BufferedImage[8];
+        Thread[] threads = new Thread[results.length];
+        CountDownLatch start = new CountDownLatch(1);
+        for(int index = 0; index < threads.length; index++)
+        {
+            final int slot = index;
+            threads[index] = new Thread(() -> {
+                try
+                {
+                    start.await();
+                }
+                catch(InterruptedException ex)
+                {
+                    return;
+                }
+                results[slot] = cache.apply(image, ROTATE);
+            });
+            threads[index].start();
+        }
+        start.countDown();
+        for(Thread thread : threads){thread.join();}
+        assertEquals(1, cache.getMisses());
+        assertEquals(threads.length - 1, cache.getHits());
+        for(BufferedImage result : results)
+        {
+            assertSame(results[0], result);
+        }
+    }
+}